@@ -0,0 +1,63 @@
+package com.hiscoreswatch;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Sorting the achievements of a notable player and building the collapsed alert message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlertMessageBenchmark
+{
+	@Param({"maxed", "midlevel"})
+	public String fixture;
+
+	@Param({"1000", "1000000"})
+	public int rankThreshold;
+
+	private List<HiscoresWatchPlugin.PlayerAchievement> unsorted;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		HiscoresSnapshot snapshot = HiscoresParser.parse(new Buffer().write(BenchmarkSupport.loadFixture(fixture)));
+		unsorted = new ArrayList<>(HiscoresWatchPlugin.findAchievements("Benchmark", snapshot, AlertRules.uniform(rankThreshold, true)));
+		Collections.shuffle(unsorted, new Random(0));
+	}
+
+	@Benchmark
+	public String sortAndBuildMessage()
+	{
+		List<HiscoresWatchPlugin.PlayerAchievement> achievements = new ArrayList<>(unsorted);
+		achievements.sort(HiscoresWatchPlugin.ACHIEVEMENT_ORDER);
+		if (achievements.isEmpty())
+		{
+			return "";
+		}
+
+		List<String> achievementStrings = HiscoresWatchPlugin.toDisplayStrings(achievements);
+		return HiscoresWatchPlugin.buildAlertMessage("Benchmark", achievementStrings, HiscoresWatchPlugin.DetectionSource.NEARBY, Color.RED);
+	}
+}
@@ -0,0 +1,194 @@
+package com.hiscoreswatch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import net.runelite.api.Client;
+import net.runelite.api.FriendsChatMember;
+import net.runelite.api.Player;
+import net.runelite.api.clan.ClanChannel;
+import net.runelite.api.clan.ClanChannelMember;
+import net.runelite.api.events.ClanChannelChanged;
+
+/**
+ * Shared fixtures and stand-ins for the benchmarks.
+ */
+final class BenchmarkSupport
+{
+	private BenchmarkSupport()
+	{
+	}
+
+	/**
+	 * Loads an index_lite.ws payload from the fixtures directory, where a captured response can replace a fixture of the
+	 * same name.
+	 *
+	 * @param name The fixture name, without extension.
+	 * @return The raw response bytes.
+	 */
+	static byte[] loadFixture(String name)
+	{
+		try (InputStream in = BenchmarkSupport.class.getResourceAsStream("fixtures/" + name + ".txt"))
+		{
+			if (in == null)
+			{
+				throw new IllegalArgumentException("Unknown fixture: " + name);
+			}
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1)
+			{
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Creates a plugin with the given config and initialized lookup state, without starting the worker.
+	 */
+	static HiscoresWatchPlugin newPlugin(HiscoresWatchConfig config)
+	{
+		HiscoresWatchPlugin plugin = new HiscoresWatchPlugin();
+		inject(plugin, HiscoresWatchConfig.class, config);
+		plugin.resetLookupState();
+		return plugin;
+	}
+
+	/**
+	 * Sets every field of the given type on the target, standing in for Guice's member injection.
+	 */
+	static <T> void inject(Object target, Class<T> type, T value)
+	{
+		try
+		{
+			for (Field field : target.getClass().getDeclaredFields())
+			{
+				if (field.getType() == type)
+				{
+					field.setAccessible(true);
+					field.set(target, value);
+				}
+			}
+		}
+		catch (IllegalAccessException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static List<String> playerNames(String prefix, int count)
+	{
+		List<String> names = new ArrayList<>(count);
+		for (int i = 0; i < count; i++)
+		{
+			names.add(prefix + i);
+		}
+		return names;
+	}
+
+	static ClanChannel clanChannel(List<String> memberNames)
+	{
+		List<ClanChannelMember> members = new ArrayList<>(memberNames.size());
+		for (String name : memberNames)
+		{
+			members.add(clanMember(name));
+		}
+
+		return proxy(ClanChannel.class, (method, args) ->
+			method.equals("getMembers") ? members : null);
+	}
+
+	static ClanChannelMember clanMember(String name)
+	{
+		return proxy(ClanChannelMember.class, (method, args) ->
+			method.equals("getName") ? name : null);
+	}
+
+	/**
+	 * Creates the event of joining a clan channel. The fields of the event besides the channel have changed between
+	 * client versions, so its constructor is looked up at runtime and they are left at their defaults.
+	 */
+	static ClanChannelChanged clanChannelChanged(ClanChannel channel)
+	{
+		Constructor<?> constructor = ClanChannelChanged.class.getConstructors()[0];
+		Class<?>[] types = constructor.getParameterTypes();
+		Object[] args = new Object[types.length];
+		for (int i = 0; i < types.length; i++)
+		{
+			if (types[i] == ClanChannel.class)
+			{
+				args[i] = channel;
+			}
+			else if (types[i] == boolean.class)
+			{
+				args[i] = false;
+			}
+			else if (types[i] == int.class)
+			{
+				args[i] = 0;
+			}
+		}
+
+		try
+		{
+			return (ClanChannelChanged) constructor.newInstance(args);
+		}
+		catch (InstantiationException | IllegalAccessException | InvocationTargetException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static Player player(String name)
+	{
+		return proxy(Player.class, (method, args) ->
+			method.equals("getName") ? name : null);
+	}
+
+	static FriendsChatMember friendsChatMember(String name)
+	{
+		return proxy(FriendsChatMember.class, (method, args) ->
+			method.equals("getName") ? name : null);
+	}
+
+	/**
+	 * A client without a local player that passes the text of every chat message to the given consumer.
+	 */
+	static Client client(Consumer<String> chat)
+	{
+		return proxy(Client.class, (method, args) ->
+		{
+			if (method.equals("addChatMessage"))
+			{
+				chat.accept((String) args[2]);
+			}
+			return null;
+		});
+	}
+
+	private interface Handler
+	{
+		Object invoke(String method, Object[] args);
+	}
+
+	private static <T> T proxy(Class<T> type, Handler handler)
+	{
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+			(proxy, method, args) -> handler.invoke(method.getName(), args)));
+	}
+}
@@ -0,0 +1,65 @@
+package com.hiscoreswatch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The dedup and ignore checks every detected player goes through before being queued.
+ * After the first pass over the names every call is a duplicate, which is the common case in a crowded area.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckPlayerBenchmark
+{
+	@Param({"2000"})
+	public int playerCount;
+
+	@Param({"0", "500"})
+	public int ignoredCount;
+
+	private HiscoresWatchPlugin plugin;
+	private List<String> names;
+	private int next;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		names = BenchmarkSupport.playerNames("Player ", playerCount);
+		final String ignoreList = String.join(",", names.subList(0, Math.min(ignoredCount, playerCount)));
+		plugin = BenchmarkSupport.newPlugin(new HiscoresWatchConfig()
+		{
+			@Override
+			public String ignoreList()
+			{
+				return ignoreList;
+			}
+		});
+		next = 0;
+	}
+
+	@Benchmark
+	public void checkNearbyPlayer()
+	{
+		plugin.checkPlayer(names.get(next), HiscoresWatchPlugin.DetectionSource.NEARBY);
+		if (++next == names.size())
+		{
+			next = 0;
+		}
+	}
+}
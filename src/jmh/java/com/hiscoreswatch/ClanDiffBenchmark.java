@@ -0,0 +1,79 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.runelite.api.clan.ClanChannel;
+import net.runelite.api.clan.ClanChannelMember;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The clan roster tracking run on the client thread.
+ * {@link #memberJoinedOrLeft()} alternates a single join and leave, which is what the client sees most of the time,
+ * while {@link #channelChanged()} alternates between two rosters that differ by that member, which forces a full diff.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClanDiffBenchmark
+{
+	@Param({"100", "500"})
+	public int memberCount;
+
+	private HiscoresWatchPlugin plugin;
+	private ClanChannel before;
+	private ClanChannel after;
+	private ClanChannelMember newMember;
+	private boolean joined;
+
+	@Setup
+	public void setUp()
+	{
+		List<String> members = BenchmarkSupport.playerNames("Clanmate ", memberCount);
+		before = BenchmarkSupport.clanChannel(members);
+
+		List<String> withJoin = new ArrayList<>(members);
+		withJoin.add("New Clanmate");
+		after = BenchmarkSupport.clanChannel(withJoin);
+		newMember = BenchmarkSupport.clanMember("New Clanmate");
+
+		plugin = BenchmarkSupport.newPlugin(new HiscoresWatchConfig()
+		{
+		});
+		plugin.updateClanMembers(before);
+	}
+
+	@Benchmark
+	public void memberJoinedOrLeft()
+	{
+		joined = !joined;
+		if (joined)
+		{
+			plugin.clanMemberJoined(before, newMember);
+		}
+		else
+		{
+			plugin.clanMemberLeft(before, newMember);
+		}
+	}
+
+	@Benchmark
+	public void channelChanged()
+	{
+		joined = !joined;
+		plugin.updateClanMembers(joined ? after : before);
+	}
+}
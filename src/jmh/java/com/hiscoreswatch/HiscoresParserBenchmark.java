@@ -0,0 +1,62 @@
+package com.hiscoreswatch;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing and evaluation of a single index_lite.ws response, as done by processHiscoresData.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HiscoresParserBenchmark
+{
+	@Param({"maxed", "midlevel", "unranked"})
+	public String fixture;
+
+	private byte[] payload;
+	private HiscoresSnapshot snapshot;
+	private final AlertRules rules = AlertRules.uniform(1000, true);
+
+	@Setup
+	public void setUp()
+	{
+		payload = BenchmarkSupport.loadFixture(fixture);
+		snapshot = new HiscoresSnapshot();
+	}
+
+	@Benchmark
+	public HiscoresSnapshot parse() throws IOException
+	{
+		return HiscoresParser.parse(new Buffer().write(payload));
+	}
+
+	@Benchmark
+	public HiscoresSnapshot parseIntoReusedSnapshot() throws IOException
+	{
+		HiscoresParser.parse(new Buffer().write(payload), snapshot);
+		return snapshot;
+	}
+
+	@Benchmark
+	public List<HiscoresWatchPlugin.PlayerAchievement> parseAndEvaluate() throws IOException
+	{
+		return HiscoresWatchPlugin.findAchievements("Benchmark", HiscoresParser.parse(new Buffer().write(payload)), rules);
+	}
+}
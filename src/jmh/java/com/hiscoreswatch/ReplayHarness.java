@@ -0,0 +1,512 @@
+package com.hiscoreswatch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Stream;
+import net.runelite.api.Client;
+import net.runelite.api.events.FriendsChatMemberJoined;
+import net.runelite.api.events.PlayerSpawned;
+import okhttp3.OkHttpClient;
+
+/**
+ * Replays a trace of players spawning, friends chat joins and clan channel changes into the plugin, with every lookup
+ * answered by a local mock of the hiscores server, and reports alert latency, request counts, duplicate lookups and
+ * heap growth.
+ * <p>
+ * Without a trace file a synthetic one is generated at a multiple of the load of the Grand Exchange on a busy world.
+ * Trace files have one event per line, {@code <millis> spawn <name>}, {@code <millis> fc <name>} or
+ * {@code <millis> clan <name>,<name>,...}, timed from the start of the replay. The replay runs in real time, since the
+ * rate limiter does, with a game tick every 600 ms.
+ * <p>
+ * Options are {@code key=value} arguments: {@code load}, {@code duration} in seconds, {@code latency} and
+ * {@code jitter} in milliseconds, {@code errors} and {@code throttles} as the fraction of requests answered with a 503
+ * or a 429, {@code trace} and {@code seed}.
+ */
+public final class ReplayHarness
+{
+	private static final long TICK_MS = 600;
+	/**
+	 * The replay ends once the server has had no request for this long after the last event, or the drain times out.
+	 */
+	private static final long QUIET_MS = 3000;
+	private static final long DRAIN_TIMEOUT_MS = 60_000;
+
+	// The Grand Exchange on a busy world, the baseline the load is a multiple of
+	private static final double GE_SPAWNS_PER_SECOND = 2;
+	private static final double GE_FRIENDS_CHAT_JOINS_PER_MINUTE = 2;
+	private static final double GE_REVISIT_CHANCE = 0.4;
+	private static final int CLAN_SIZE = 50;
+	private static final int MAX_CLAN_SIZE = 500;
+
+	private ReplayHarness()
+	{
+	}
+
+	private enum EventType
+	{
+		SPAWN,
+		FC,
+		CLAN
+	}
+
+	private static final class TraceEvent
+	{
+		final long atMillis;
+		final EventType type;
+		final String name;
+		final List<String> roster;
+
+		TraceEvent(long atMillis, EventType type, String name, List<String> roster)
+		{
+			this.atMillis = atMillis;
+			this.type = type;
+			this.name = name;
+			this.roster = roster;
+		}
+	}
+
+	private static final class Options
+	{
+		double load = 10;
+		long durationSeconds = 120;
+		long latencyMillis = 150;
+		long jitterMillis = 100;
+		double errorRate = 0.01;
+		double throttleRate = 0.02;
+		String trace;
+		long seed = 1;
+
+		static Options parse(String[] args)
+		{
+			Options options = new Options();
+			for (String arg : args)
+			{
+				int separator = arg.indexOf('=');
+				if (separator < 0)
+				{
+					throw new IllegalArgumentException("Expected key=value: " + arg);
+				}
+
+				String value = arg.substring(separator + 1);
+				switch (arg.substring(0, separator))
+				{
+					case "load":
+						options.load = Double.parseDouble(value);
+						break;
+					case "duration":
+						options.durationSeconds = Long.parseLong(value);
+						break;
+					case "latency":
+						options.latencyMillis = Long.parseLong(value);
+						break;
+					case "jitter":
+						options.jitterMillis = Long.parseLong(value);
+						break;
+					case "errors":
+						options.errorRate = Double.parseDouble(value);
+						break;
+					case "throttles":
+						options.throttleRate = Double.parseDouble(value);
+						break;
+					case "trace":
+						options.trace = value;
+						break;
+					case "seed":
+						options.seed = Long.parseLong(value);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option: " + arg);
+				}
+			}
+			return options;
+		}
+	}
+
+	/**
+	 * Answers index_lite.ws lookups from the fixtures after a configurable delay, failing a fraction of them, and
+	 * counts every lookup. Players get the same hiscores every time, picked by the hash of their name.
+	 */
+	private static final class MockHiscores implements HttpHandler
+	{
+		private final Options options;
+		private final byte[] maxed = BenchmarkSupport.loadFixture("maxed");
+		private final byte[] midlevel = BenchmarkSupport.loadFixture("midlevel");
+		private final byte[] unranked = BenchmarkSupport.loadFixture("unranked");
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong duplicates = new AtomicLong();
+		private final AtomicLongArray statusCodes = new AtomicLongArray(600);
+		private final AtomicLong lastRequestMillis = new AtomicLong(System.currentTimeMillis());
+		private final Set<String> players = ConcurrentHashMap.newKeySet();
+		/**
+		 * The lookups already answered with hiscores or a 404, as the game mode endpoint and player name.
+		 */
+		private final Set<String> answered = ConcurrentHashMap.newKeySet();
+
+		MockHiscores(Options options)
+		{
+			this.options = options;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException
+		{
+			try
+			{
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				sleep(options.latencyMillis + (options.jitterMillis > 0 ? random.nextLong(options.jitterMillis + 1) : 0));
+
+				final String path = exchange.getRequestURI().getPath();
+				final String query = exchange.getRequestURI().getQuery();
+				if (!path.endsWith("/index_lite.ws") || query == null || !query.startsWith("player="))
+				{
+					// Ranking pages are not served, the top rank index skips the categories it cannot crawl
+					respond(exchange, 404, null);
+					return;
+				}
+
+				final String endpoint = path.substring(1, path.indexOf('/', 1));
+				final String player = query.substring("player=".length());
+				final String lookup = endpoint + '/' + player;
+				requests.incrementAndGet();
+				lastRequestMillis.set(System.currentTimeMillis());
+				players.add(player);
+				if (answered.contains(lookup))
+				{
+					duplicates.incrementAndGet();
+				}
+
+				final double failure = random.nextDouble();
+				if (failure < options.errorRate)
+				{
+					respond(exchange, 503, null);
+					return;
+				}
+				if (failure < options.errorRate + options.throttleRate)
+				{
+					exchange.getResponseHeaders().set("Retry-After", "1");
+					respond(exchange, 429, null);
+					return;
+				}
+
+				final byte[] body = payload(endpoint, player);
+				answered.add(lookup);
+				respond(exchange, body == null ? 404 : 200, body);
+			}
+			finally
+			{
+				exchange.close();
+			}
+		}
+
+		private byte[] payload(String endpoint, String player)
+		{
+			final int bucket = Math.floorMod(player.hashCode(), 100);
+			if (endpoint.equals("m=" + GameMode.NORMAL.getEndpoint()))
+			{
+				return bucket < 2 ? maxed : bucket < 60 ? midlevel : bucket < 90 ? unranked : null;
+			}
+			// One in ten players is an ironman, and none have deadman or leagues hiscores
+			return endpoint.equals("m=" + GameMode.IRONMAN.getEndpoint()) && bucket >= 10 && bucket < 20 ? midlevel : null;
+		}
+
+		private void respond(HttpExchange exchange, int code, byte[] body) throws IOException
+		{
+			statusCodes.incrementAndGet(code);
+			exchange.sendResponseHeaders(code, body == null ? -1 : body.length);
+			if (body != null)
+			{
+				try (OutputStream out = exchange.getResponseBody())
+				{
+					out.write(body);
+				}
+			}
+		}
+
+		long millisSinceLastRequest(long nowMillis)
+		{
+			return nowMillis - lastRequestMillis.get();
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		final Options options = Options.parse(args);
+		final List<TraceEvent> trace = options.trace == null ? synthesize(options) : readTrace(Paths.get(options.trace));
+		trace.sort(Comparator.comparingLong(e -> e.atMillis));
+
+		final MockHiscores hiscores = new MockHiscores(options);
+		final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		final ExecutorService serverThreads = Executors.newCachedThreadPool();
+		server.createContext("/", hiscores);
+		server.setExecutor(serverThreads);
+		server.start();
+		final String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/m=" + GameMode.NORMAL.getEndpoint() + "/";
+
+		final Path dataDirectory = Files.createTempDirectory("hiscoreswatch-replay");
+		final OkHttpClient okHttpClient = new OkHttpClient();
+		final AtomicLong chatLines = new AtomicLong();
+		final HiscoresWatchPlugin plugin = BenchmarkSupport.newPlugin(new HiscoresWatchConfig()
+		{
+			@Override
+			public String hiscoresBaseUrl()
+			{
+				return baseUrl;
+			}
+		});
+		BenchmarkSupport.inject(plugin, Client.class, BenchmarkSupport.client(message -> chatLines.incrementAndGet()));
+		BenchmarkSupport.inject(plugin, OkHttpClient.class, okHttpClient);
+		plugin.setDataDirectory(dataDirectory.toFile());
+
+		final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		memory.gc();
+		final long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		long heapPeak = heapBefore;
+
+		System.out.println("Replaying " + trace.size() + " events against " + baseUrl);
+		plugin.startLookupPipeline();
+		final long start = System.currentTimeMillis();
+		final long lastEventMillis = trace.isEmpty() ? 0 : trace.get(trace.size() - 1).atMillis;
+		int next = 0;
+		long elapsed;
+		for (long tick = 0; ; tick++)
+		{
+			final long tickAt = start + tick * TICK_MS;
+			sleep(tickAt - System.currentTimeMillis());
+			elapsed = tickAt - start;
+
+			while (next < trace.size() && trace.get(next).atMillis <= elapsed)
+			{
+				replay(plugin, trace.get(next++));
+			}
+			// The event carries nothing the plugin reads
+			plugin.onGameTick(null);
+			heapPeak = Math.max(heapPeak, memory.getHeapMemoryUsage().getUsed());
+
+			final long now = System.currentTimeMillis();
+			if (next == trace.size()
+					&& (elapsed - lastEventMillis >= DRAIN_TIMEOUT_MS
+					|| (hiscores.millisSinceLastRequest(now) >= QUIET_MS && plugin.getLookupDispatcher().getInFlightCount() == 0)))
+			{
+				break;
+			}
+		}
+
+		memory.gc();
+		final long heapAfter = memory.getHeapMemoryUsage().getUsed();
+		report(options, trace, hiscores, plugin.getMetrics(), chatLines.get(), elapsed, heapBefore, heapPeak, heapAfter);
+
+		plugin.stopLookupPipeline();
+		server.stop(0);
+		serverThreads.shutdown();
+		okHttpClient.dispatcher().executorService().shutdown();
+		okHttpClient.connectionPool().evictAll();
+		try (Stream<Path> files = Files.walk(dataDirectory))
+		{
+			files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+		}
+	}
+
+	private static void replay(HiscoresWatchPlugin plugin, TraceEvent event)
+	{
+		switch (event.type)
+		{
+			case SPAWN:
+				plugin.onPlayerSpawned(new PlayerSpawned(BenchmarkSupport.player(event.name)));
+				break;
+			case FC:
+				plugin.onFriendsChatMemberJoined(new FriendsChatMemberJoined(BenchmarkSupport.friendsChatMember(event.name)));
+				break;
+			case CLAN:
+				plugin.onClanChannelChanged(BenchmarkSupport.clanChannelChanged(BenchmarkSupport.clanChannel(event.roster)));
+				break;
+		}
+	}
+
+	/**
+	 * Generates players arriving at the Grand Exchange, some of them seen before, friends chat joins, and a clan channel
+	 * joined at the start and rejoined halfway with part of its members changed, all scaled by the load.
+	 */
+	private static List<TraceEvent> synthesize(Options options)
+	{
+		final Random random = new Random(options.seed);
+		final long durationMillis = options.durationSeconds * 1000;
+		final List<TraceEvent> trace = new ArrayList<>();
+		final List<String> seen = new ArrayList<>();
+		int players = 0;
+
+		final double spawnsPerMilli = GE_SPAWNS_PER_SECOND * options.load / 1000;
+		for (long at = nextArrival(random, spawnsPerMilli); at < durationMillis; at += nextArrival(random, spawnsPerMilli))
+		{
+			String name;
+			if (!seen.isEmpty() && random.nextDouble() < GE_REVISIT_CHANCE)
+			{
+				name = seen.get(random.nextInt(seen.size()));
+			}
+			else
+			{
+				name = "Replay " + players++;
+				seen.add(name);
+			}
+			trace.add(new TraceEvent(at, EventType.SPAWN, name, null));
+		}
+
+		final double joinsPerMilli = GE_FRIENDS_CHAT_JOINS_PER_MINUTE * options.load / 60_000;
+		for (long at = nextArrival(random, joinsPerMilli); at < durationMillis; at += nextArrival(random, joinsPerMilli))
+		{
+			trace.add(new TraceEvent(at, EventType.FC, "Replay " + players++, null));
+		}
+
+		final int clanSize = (int) Math.min(MAX_CLAN_SIZE, CLAN_SIZE * options.load);
+		final List<String> roster = new ArrayList<>(clanSize);
+		for (int i = 0; i < clanSize; i++)
+		{
+			roster.add("Replay " + players++);
+		}
+		trace.add(new TraceEvent(0, EventType.CLAN, null, new ArrayList<>(roster)));
+		for (int i = 0; i < clanSize / 5; i++)
+		{
+			roster.set(random.nextInt(clanSize), "Replay " + players++);
+		}
+		trace.add(new TraceEvent(durationMillis / 2, EventType.CLAN, null, roster));
+		return trace;
+	}
+
+	private static long nextArrival(Random random, double eventsPerMilli)
+	{
+		return Math.max(1, Math.round(-Math.log(1 - random.nextDouble()) / eventsPerMilli));
+	}
+
+	private static List<TraceEvent> readTrace(Path file) throws IOException
+	{
+		final List<TraceEvent> trace = new ArrayList<>();
+		for (String line : Files.readAllLines(file, StandardCharsets.UTF_8))
+		{
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#"))
+			{
+				continue;
+			}
+
+			final String[] fields = line.split(" ", 3);
+			if (fields.length < 3)
+			{
+				throw new IOException("Malformed trace line: " + line);
+			}
+
+			final long at = Long.parseLong(fields[0]);
+			switch (fields[1])
+			{
+				case "spawn":
+					trace.add(new TraceEvent(at, EventType.SPAWN, fields[2], null));
+					break;
+				case "fc":
+					trace.add(new TraceEvent(at, EventType.FC, fields[2], null));
+					break;
+				case "clan":
+					trace.add(new TraceEvent(at, EventType.CLAN, null, Arrays.asList(fields[2].split(","))));
+					break;
+				default:
+					throw new IOException("Unknown trace event: " + line);
+			}
+		}
+		return trace;
+	}
+
+	private static void report(Options options, List<TraceEvent> trace, MockHiscores hiscores, HiscoresWatchMetrics metrics,
+		long chatLines, long elapsedMillis, long heapBefore, long heapPeak, long heapAfter)
+	{
+		long spawns = 0;
+		long joins = 0;
+		long channels = 0;
+		final Set<String> names = new HashSet<>();
+		for (TraceEvent event : trace)
+		{
+			switch (event.type)
+			{
+				case SPAWN:
+					spawns++;
+					names.add(event.name);
+					break;
+				case FC:
+					joins++;
+					names.add(event.name);
+					break;
+				case CLAN:
+					channels++;
+					names.addAll(event.roster);
+					break;
+			}
+		}
+
+		final long requests = hiscores.requests.get();
+		final long lookedUp = hiscores.players.size();
+		final long duplicates = hiscores.duplicates.get();
+		final HiscoresWatchMetrics.Histogram alertLatency = metrics.getAlertLatencyMillis();
+		final double seconds = elapsedMillis / 1000.0;
+
+		System.out.println();
+		System.out.printf("Load:          %.1fx, latency %d+%d ms, %.1f%% errors, %.1f%% throttled%n",
+			options.load, options.latencyMillis, options.jitterMillis, options.errorRate * 100, options.throttleRate * 100);
+		System.out.printf("Trace:         %d spawns, %d friends chat joins, %d clan channels, %d players over %.0f s%n",
+			spawns, joins, channels, names.size(), seconds);
+		System.out.printf("Requests:      %d (%.1f/s), %d players looked up, %.2f requests per player%n",
+			requests, requests / seconds, lookedUp, lookedUp == 0 ? 0 : (double) requests / lookedUp);
+		System.out.printf("Duplicates:    %d lookups already answered (%.2f%%)%n",
+			duplicates, requests == 0 ? 0 : duplicates * 100.0 / requests);
+		System.out.printf("Responses:     200: %d, 404: %d, 429: %d, 503: %d%n",
+			hiscores.statusCodes.get(200), hiscores.statusCodes.get(404), hiscores.statusCodes.get(429), hiscores.statusCodes.get(503));
+		System.out.printf("Alerts:        %d players in %d chat lines%n", alertLatency.getCount(), chatLines);
+		System.out.printf("Alert latency: p50 %d ms, p95 %d ms, max %d ms%n",
+			alertLatency.getQuantile(0.5), alertLatency.getQuantile(0.95), alertLatency.getMax());
+		System.out.printf("Heap:          %.1f MB before, %.1f MB peak, %.1f MB after, %+.1f MB retained%n",
+			heapBefore / 1e6, heapPeak / 1e6, heapAfter / 1e6, (heapAfter - heapBefore) / 1e6);
+
+		System.out.println();
+		System.out.println("Plugin metrics:");
+		for (HiscoresWatchMetrics.Line line : metrics.describe(System.currentTimeMillis()))
+		{
+			System.out.println("  " + line.getLabel() + ": " + line.getValue());
+		}
+	}
+
+	private static void sleep(long millis)
+	{
+		if (millis <= 0)
+		{
+			return;
+		}
+
+		try
+		{
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,254 @@
+package com.hiscoreswatch;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A token bucket that adapts its refill rate to how the hiscores server is responding.
+ * The rate is increased additively while responses are fast and healthy, and cut multiplicatively
+ * on slow responses. A 429, 5xx or network failure halves the rate and pauses all requests,
+ * honouring the server's Retry-After header when it sends one.
+ */
+@Slf4j
+class AdaptiveRateLimiter
+{
+	/**
+	 * The state of the limiter, exposed for inspection.
+	 */
+	enum State
+	{
+		/**
+		 * Responses are fast and successful, the rate is being increased.
+		 */
+		HEALTHY,
+		/**
+		 * Responses are successful but slow, the rate is being decreased.
+		 */
+		SLOW,
+		/**
+		 * The server throttled or failed a request, no requests are sent until the backoff ends.
+		 */
+		BACKING_OFF
+	}
+
+	private static final double ADDITIVE_INCREASE = 0.05;
+	private static final double SLOW_DECREASE_FACTOR = 0.9;
+	private static final double THROTTLE_DECREASE_FACTOR = 0.5;
+	private static final long SLOW_RESPONSE_MS = 1500;
+	private static final long BASE_BACKOFF_MS = 2000;
+	private static final long MAX_BACKOFF_MS = 120_000;
+
+	private final double minRate;
+	private final double maxRate;
+	private final double burst;
+	private final LongSupplier nanoClock;
+
+	private double rate;
+	private double tokens;
+	private long lastRefillNanos;
+	private long backoffUntilNanos;
+	private int consecutiveFailures;
+	private State state = State.HEALTHY;
+
+	/**
+	 * @param initialRate The starting rate, in requests per second.
+	 * @param minRate     The lowest rate the limiter will back off to.
+	 * @param maxRate     The highest rate the limiter will ramp up to.
+	 * @param burst       The maximum number of tokens that can be saved up.
+	 */
+	AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double burst)
+	{
+		this(initialRate, minRate, maxRate, burst, System::nanoTime);
+	}
+
+	AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double burst, LongSupplier nanoClock)
+	{
+		this.minRate = minRate;
+		this.maxRate = maxRate;
+		this.burst = burst;
+		this.nanoClock = nanoClock;
+		this.rate = Math.max(minRate, Math.min(maxRate, initialRate));
+		this.tokens = 1;
+		this.lastRefillNanos = nanoClock.getAsLong();
+	}
+
+	/**
+	 * Takes a token if one is available and the limiter is not backing off.
+	 *
+	 * @return True if a request may be sent now.
+	 */
+	synchronized boolean tryAcquire()
+	{
+		final long now = nanoClock.getAsLong();
+		refill(now);
+
+		if (state == State.BACKING_OFF)
+		{
+			if (now - backoffUntilNanos < 0)
+			{
+				return false;
+			}
+
+			setState(State.HEALTHY);
+		}
+
+		if (tokens < 1)
+		{
+			return false;
+		}
+
+		tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * Returns a token taken by {@link #tryAcquire()} for a request that was never sent.
+	 */
+	synchronized void release()
+	{
+		tokens = Math.min(burst, tokens + 1);
+	}
+
+	/**
+	 * Records a response that was not throttled by the server.
+	 *
+	 * @param latencyMillis The time between sending the request and receiving the response headers.
+	 */
+	synchronized void onSuccess(long latencyMillis)
+	{
+		consecutiveFailures = 0;
+		if (state == State.BACKING_OFF)
+		{
+			// A response to a request sent before the backoff started
+			return;
+		}
+
+		if (latencyMillis > SLOW_RESPONSE_MS)
+		{
+			rate = Math.max(minRate, rate * SLOW_DECREASE_FACTOR);
+			setState(State.SLOW);
+		}
+		else
+		{
+			rate = Math.min(maxRate, rate + ADDITIVE_INCREASE);
+			setState(State.HEALTHY);
+		}
+	}
+
+	/**
+	 * Records a throttled or failed request, halving the rate and pausing requests.
+	 *
+	 * @param retryAfterMillis The delay requested by the server, or -1 if it did not send one.
+	 * @param reason           A short description of the failure for logging.
+	 */
+	synchronized void onThrottled(long retryAfterMillis, String reason)
+	{
+		final long now = nanoClock.getAsLong();
+		consecutiveFailures++;
+
+		final long backoffMillis = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(consecutiveFailures - 1, 16));
+		final long delayMillis = Math.max(backoffMillis, retryAfterMillis);
+		final long until = now + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+
+		// Only extend an ongoing backoff, a late failure should not shorten it
+		if (state != State.BACKING_OFF || until - backoffUntilNanos > 0)
+		{
+			backoffUntilNanos = until;
+		}
+
+		rate = Math.max(minRate, rate * THROTTLE_DECREASE_FACTOR);
+		tokens = 0;
+
+		if (state != State.BACKING_OFF)
+		{
+			log.info("Hiscores requests paused for {}ms after {}, rate lowered to {} req/s", delayMillis, reason, String.format("%.2f", rate));
+		}
+		setState(State.BACKING_OFF);
+	}
+
+	synchronized double getRate()
+	{
+		return rate;
+	}
+
+	synchronized State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @return The time left before requests resume, or 0 if the limiter is not backing off.
+	 */
+	synchronized long getBackoffRemainingMillis()
+	{
+		if (state != State.BACKING_OFF)
+		{
+			return 0;
+		}
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(backoffUntilNanos - nanoClock.getAsLong()));
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return String.format("%s at %.2f req/s", state, rate);
+	}
+
+	private void refill(long now)
+	{
+		final long elapsed = now - lastRefillNanos;
+		lastRefillNanos = now;
+		if (elapsed > 0)
+		{
+			tokens = Math.min(burst, tokens + rate * elapsed / TimeUnit.SECONDS.toNanos(1));
+		}
+	}
+
+	private void setState(State newState)
+	{
+		if (state != newState)
+		{
+			log.debug("Hiscores rate limiter {} -> {} at {} req/s", state, newState, String.format("%.2f", rate));
+			state = newState;
+		}
+	}
+
+	/**
+	 * Parses a Retry-After header, which is either a number of seconds or an HTTP date.
+	 *
+	 * @param header      The header value, may be null.
+	 * @param nowMillis   The current wall clock time.
+	 * @return The requested delay in milliseconds, or -1 if the header is absent or invalid.
+	 */
+	static long parseRetryAfterMillis(String header, long nowMillis)
+	{
+		if (header == null || header.isEmpty())
+		{
+			return -1;
+		}
+
+		final String value = header.trim();
+		try
+		{
+			return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(value)));
+		}
+		catch (NumberFormatException e)
+		{
+			// Fall through to the date format
+		}
+
+		try
+		{
+			long dateMillis = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+			return Math.max(0, dateMillis - nowMillis);
+		}
+		catch (DateTimeParseException e)
+		{
+			return -1;
+		}
+	}
+}
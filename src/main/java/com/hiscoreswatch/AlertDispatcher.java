@@ -0,0 +1,174 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Buffers the alerts built on the render stage and sends them to chat once per game tick, so a crowd of notable players
+ * arriving together becomes one line per detection source instead of a line each.
+ * <p>
+ * At most {@link #MAX_LINES_PER_TICK} lines are sent per tick, the sources left over wait for the next tick, and at
+ * most {@link #MAX_LINES_PER_MINUTE} lines per minute. Alerts that arrive while the minute budget is spent, or while
+ * the buffer is full, are dropped and counted, and the count is shown on the next line that is sent.
+ * {@link #offer(Alert)} may be called from any thread, {@link #flush(long, LineSink)} only from the client thread.
+ */
+class AlertDispatcher
+{
+	static final int MAX_LINES_PER_TICK = 2;
+	static final int MAX_LINES_PER_MINUTE = 10;
+	static final int CAPACITY = 128;
+
+	private static final long MINUTE_MS = TimeUnit.MINUTES.toMillis(1);
+
+	/**
+	 * Priority sources first, then each source's players by their most impressive achievement.
+	 */
+	private static final Comparator<Alert> ORDER = Comparator
+			.comparing((Alert a) -> !a.getSource().isPriority())
+			.thenComparing(Alert::getSource)
+			.thenComparing(Alert::getTopAchievement, Comparator.nullsLast(HiscoresWatchPlugin.ACHIEVEMENT_ORDER));
+
+	/**
+	 * The alert of one notable player, ready to be sent.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static final class Alert
+	{
+		private final String playerName;
+		private final HiscoresWatchPlugin.DetectionSource source;
+		/**
+		 * The display strings of the player's achievements, most impressive first.
+		 */
+		private final List<String> achievementStrings;
+		/**
+		 * The chat message of the player on their own, sent when they are the only player of their source in a tick.
+		 */
+		private final String message;
+		/**
+		 * The player's most impressive achievement, or null if they are only alerted for their gains.
+		 */
+		private final HiscoresWatchPlugin.PlayerAchievement topAchievement;
+		/**
+		 * When the player was queued, or -1 if the alert latency should not be recorded.
+		 */
+		private final long enqueuedAtMillis;
+	}
+
+	/**
+	 * Receives the lines to send to chat.
+	 */
+	interface LineSink
+	{
+		/**
+		 * @param source   The source of every alert in the line.
+		 * @param alerts   The alerts to merge into the line, most impressive first. Only valid during the call.
+		 * @param overflow The number of alerts dropped since the last line was sent.
+		 */
+		void send(HiscoresWatchPlugin.DetectionSource source, List<Alert> alerts, int overflow);
+	}
+
+	private final ArrayBlockingQueue<Alert> pending = new ArrayBlockingQueue<>(CAPACITY);
+	private final AtomicInteger unreportedOverflow = new AtomicInteger();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	// Only accessed on the client thread
+	private final List<Alert> batch = new ArrayList<>(CAPACITY);
+	private final List<Alert> line = new ArrayList<>(CAPACITY);
+	private final long[] lineSentAtMillis = new long[MAX_LINES_PER_MINUTE];
+	private int lineCursor;
+
+	/**
+	 * Buffers an alert until the next game tick, or drops it if the buffer is full.
+	 */
+	void offer(Alert alert)
+	{
+		if (!pending.offer(alert))
+		{
+			drop(1);
+		}
+	}
+
+	/**
+	 * Sends the buffered alerts within the chat budgets, one line per detection source.
+	 */
+	void flush(long nowMillis, LineSink sink)
+	{
+		pending.drainTo(batch);
+		if (batch.isEmpty())
+		{
+			return;
+		}
+
+		batch.sort(ORDER);
+		int lines = 0;
+		int kept = 0;
+		int start = 0;
+		final int size = batch.size();
+		while (start < size)
+		{
+			final HiscoresWatchPlugin.DetectionSource source = batch.get(start).getSource();
+			int end = start + 1;
+			while (end < size && batch.get(end).getSource() == source)
+			{
+				end++;
+			}
+
+			if (lines == MAX_LINES_PER_TICK)
+			{
+				// Wait for the next tick, moving the alerts to the front of the batch
+				for (int i = start; i < end; i++)
+				{
+					batch.set(kept++, batch.get(i));
+				}
+			}
+			else if (nowMillis - lineSentAtMillis[lineCursor] < MINUTE_MS)
+			{
+				drop(end - start);
+			}
+			else
+			{
+				for (int i = start; i < end; i++)
+				{
+					line.add(batch.get(i));
+				}
+				sink.send(source, line, unreportedOverflow.getAndSet(0));
+				line.clear();
+				lineSentAtMillis[lineCursor] = nowMillis;
+				lineCursor = (lineCursor + 1) % MAX_LINES_PER_MINUTE;
+				lines++;
+			}
+			start = end;
+		}
+		batch.subList(kept, size).clear();
+	}
+
+	/**
+	 * @return The number of alerts waiting for a game tick.
+	 */
+	int getBufferedCount()
+	{
+		return pending.size();
+	}
+
+	/**
+	 * @return The number of alerts dropped by the chat budgets or a full buffer.
+	 */
+	long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	private void drop(int count)
+	{
+		unreportedOverflow.addAndGet(count);
+		droppedCount.addAndGet(count);
+	}
+}
@@ -0,0 +1,318 @@
+package com.hiscoreswatch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * The alert rules of every hiscores category, compiled from the config into arrays indexed by
+ * {@link Hiscores#ordinal()} so a snapshot is evaluated in one pass without going through the config.
+ * <p>
+ * A category is notable when its rank is at or below its rank threshold, when its score reaches its score threshold,
+ * or, for skills, when it has 200m xp. Each {@link Group} has thresholds of its own, falling back to the global rank
+ * threshold, and single categories can be overridden with lines like {@code Zulrah = rank 100, score 5000} in the
+ * category rules config. Immutable, the rules are compiled again whenever the config changes.
+ */
+@Slf4j
+final class AlertRules
+{
+	/**
+	 * A threshold that never matches.
+	 */
+	static final int OFF = 0;
+
+	private static final Hiscores[] HISCORES = Hiscores.values();
+	private static final int CATEGORY_COUNT = HISCORES.length;
+	private static final Map<String, Hiscores> HISCORES_BY_NAME = new HashMap<>();
+
+	static
+	{
+		for (Hiscores hiscore : HISCORES)
+		{
+			HISCORES_BY_NAME.put(hiscore.getName().toLowerCase(Locale.ROOT), hiscore);
+		}
+	}
+
+	/**
+	 * The groups of categories that share thresholds.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	enum Group
+	{
+		SKILLS("Skills"),
+		CLUES("Clues"),
+		MINIGAMES("Minigames"),
+		BOSSES("Bosses");
+
+		private final String name;
+
+		static Group of(Hiscores hiscore)
+		{
+			if (hiscore.isSkill())
+			{
+				return SKILLS;
+			}
+			if (hiscore.ordinal() >= Hiscores.CLUE_SCROLL_ALL.ordinal() && hiscore.ordinal() <= Hiscores.CLUE_SCROLL_MASTER.ordinal())
+			{
+				return CLUES;
+			}
+			return hiscore.ordinal() >= Hiscores.ABYSSAL_SIRE.ordinal() ? BOSSES : MINIGAMES;
+		}
+	}
+
+	private final int[] rankThresholds = new int[CATEGORY_COUNT];
+	private final int[] scoreThresholds = new int[CATEGORY_COUNT];
+	private final boolean[] maxXpNotable = new boolean[CATEGORY_COUNT];
+	/**
+	 * The highest rank threshold of any category, how deep the top ranks are worth knowing.
+	 */
+	@Getter
+	private int maxRankThreshold;
+
+	private AlertRules()
+	{
+	}
+
+	/**
+	 * @return Rules with the same rank threshold for every category, no score thresholds, and 200m xp notable in every
+	 * skill but Overall if enabled.
+	 */
+	static AlertRules uniform(int rankThreshold, boolean alertFor200m)
+	{
+		final AlertRules rules = new AlertRules();
+		for (Hiscores hiscore : HISCORES)
+		{
+			rules.rankThresholds[hiscore.ordinal()] = rankThreshold;
+			rules.maxXpNotable[hiscore.ordinal()] = alertFor200m && hiscore.isSkill() && hiscore != Hiscores.OVERALL;
+		}
+		rules.updateMaxRankThreshold();
+		return rules;
+	}
+
+	/**
+	 * Compiles the alert rules of the config. Group thresholds of {@link #OFF} fall back to the global rank threshold,
+	 * and malformed category rules are logged and skipped.
+	 */
+	static AlertRules compile(HiscoresWatchConfig config)
+	{
+		final AlertRules rules = uniform(config.rankThreshold(), config.alertFor200mXp());
+		rules.applyGroup(Group.SKILLS, config.skillRankThreshold(), OFF);
+		rules.applyGroup(Group.CLUES, config.clueRankThreshold(), config.clueScoreThreshold());
+		rules.applyGroup(Group.MINIGAMES, config.minigameRankThreshold(), config.minigameScoreThreshold());
+		rules.applyGroup(Group.BOSSES, config.bossRankThreshold(), config.bossKillCountThreshold());
+		rules.applyCategoryRules(config.categoryRules());
+		rules.updateMaxRankThreshold();
+		return rules;
+	}
+
+	int getRankThreshold(int ordinal)
+	{
+		return rankThresholds[ordinal];
+	}
+
+	int getScoreThreshold(int ordinal)
+	{
+		return scoreThresholds[ordinal];
+	}
+
+	boolean isMaxXpNotable(int ordinal)
+	{
+		return maxXpNotable[ordinal];
+	}
+
+	/**
+	 * @return True if a rank of the category is notable.
+	 */
+	boolean isRankNotable(int ordinal, int rank, int score)
+	{
+		return rank > 0 && score > 0 && rank <= rankThresholds[ordinal];
+	}
+
+	/**
+	 * @return True if a score of the category is notable.
+	 */
+	boolean isScoreNotable(int ordinal, int score)
+	{
+		final int threshold = scoreThresholds[ordinal];
+		return threshold != OFF && score >= threshold;
+	}
+
+	/**
+	 * @return True if nothing notable under these rules is unnotable under the other rules, so a player found
+	 * unremarkable under the other rules is also unremarkable under these.
+	 */
+	boolean isNoMoreLenientThan(AlertRules other)
+	{
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			final int score = scoreThresholds[ordinal];
+			final int otherScore = other.scoreThresholds[ordinal];
+			if (rankThresholds[ordinal] > other.rankThresholds[ordinal]
+					|| (score != OFF && (otherScore == OFF || score < otherScore))
+					|| (maxXpNotable[ordinal] && !other.maxXpNotable[ordinal]))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	void write(DataOutput out) throws IOException
+	{
+		out.writeInt(CATEGORY_COUNT);
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			out.writeInt(rankThresholds[ordinal]);
+			out.writeInt(scoreThresholds[ordinal]);
+			out.writeBoolean(maxXpNotable[ordinal]);
+		}
+	}
+
+	/**
+	 * Reads rules written by {@link #write(DataOutput)}.
+	 *
+	 * @return The rules, or null if they were written for a different set of categories.
+	 */
+	static AlertRules read(DataInput in) throws IOException
+	{
+		if (in.readInt() != CATEGORY_COUNT)
+		{
+			return null;
+		}
+
+		final AlertRules rules = new AlertRules();
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			rules.rankThresholds[ordinal] = in.readInt();
+			rules.scoreThresholds[ordinal] = in.readInt();
+			rules.maxXpNotable[ordinal] = in.readBoolean();
+		}
+		rules.updateMaxRankThreshold();
+		return rules;
+	}
+
+	private void applyGroup(Group group, int rankThreshold, int scoreThreshold)
+	{
+		for (Hiscores hiscore : HISCORES)
+		{
+			if (Group.of(hiscore) != group)
+			{
+				continue;
+			}
+
+			if (rankThreshold != OFF)
+			{
+				rankThresholds[hiscore.ordinal()] = rankThreshold;
+			}
+			scoreThresholds[hiscore.ordinal()] = scoreThreshold;
+		}
+	}
+
+	/**
+	 * Applies category rules, one per line: the category name, an equals sign, then comma-separated settings of
+	 * {@code rank <n>}, {@code score <n>} or {@code kc <n>}, {@code 200m} or {@code no 200m}, or {@code off} to never
+	 * alert for the category.
+	 */
+	private void applyCategoryRules(String text)
+	{
+		if (text == null || text.isEmpty())
+		{
+			return;
+		}
+
+		for (String line : text.split("\n"))
+		{
+			line = line.trim();
+			if (line.isEmpty())
+			{
+				continue;
+			}
+
+			final int separator = line.lastIndexOf('=');
+			final Hiscores hiscore = separator < 0 ? null
+					: HISCORES_BY_NAME.get(line.substring(0, separator).trim().toLowerCase(Locale.ROOT));
+			if (hiscore == null)
+			{
+				log.warn("Skipping alert rule for unknown category: {}", line);
+				continue;
+			}
+
+			for (String setting : line.substring(separator + 1).split(","))
+			{
+				if (!applySetting(hiscore, setting.trim().toLowerCase(Locale.ROOT)))
+				{
+					log.warn("Skipping invalid alert rule setting '{}' for {}", setting.trim(), hiscore.getName());
+				}
+			}
+		}
+	}
+
+	private boolean applySetting(Hiscores hiscore, String setting)
+	{
+		final int ordinal = hiscore.ordinal();
+		switch (setting)
+		{
+			case "off":
+				rankThresholds[ordinal] = OFF;
+				scoreThresholds[ordinal] = OFF;
+				maxXpNotable[ordinal] = false;
+				return true;
+			case "200m":
+				maxXpNotable[ordinal] = hiscore.isSkill() && hiscore != Hiscores.OVERALL;
+				return maxXpNotable[ordinal];
+			case "no 200m":
+				maxXpNotable[ordinal] = false;
+				return true;
+		}
+
+		final int space = setting.indexOf(' ');
+		if (space < 0)
+		{
+			return false;
+		}
+
+		final int value;
+		try
+		{
+			value = Integer.parseInt(setting.substring(space + 1).trim());
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+		if (value < 0)
+		{
+			return false;
+		}
+
+		switch (setting.substring(0, space))
+		{
+			case "rank":
+				rankThresholds[ordinal] = value;
+				return true;
+			case "score":
+			case "kc":
+				scoreThresholds[ordinal] = value;
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	private void updateMaxRankThreshold()
+	{
+		int max = OFF;
+		for (int threshold : rankThresholds)
+		{
+			max = Math.max(max, threshold);
+		}
+		maxRankThreshold = max;
+	}
+}
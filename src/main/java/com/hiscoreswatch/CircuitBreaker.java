@@ -0,0 +1,164 @@
+package com.hiscoreswatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stops every hiscores request while the server is down, complementing {@link AdaptiveRateLimiter}, which only slows
+ * down while it is throttling.
+ * <p>
+ * After {@link #FAILURE_THRESHOLD} network failures or 5xx responses in a row the breaker opens and refuses every
+ * request for a cooldown, which doubles every time it opens again, up to {@link #MAX_OPEN_MS}. Once the cooldown ends
+ * the breaker is half-open and lets a single probe request through: a response closes it, a failure opens it again.
+ */
+@Slf4j
+class CircuitBreaker
+{
+	/**
+	 * The state of the breaker, exposed for inspection.
+	 */
+	enum State
+	{
+		/**
+		 * Requests are sent as usual.
+		 */
+		CLOSED,
+		/**
+		 * The server is down, no requests are sent until the cooldown ends.
+		 */
+		OPEN,
+		/**
+		 * The cooldown ended, one probe request is sent to find out whether the server is back.
+		 */
+		HALF_OPEN
+	}
+
+	static final int FAILURE_THRESHOLD = 5;
+	static final long BASE_OPEN_MS = 30_000;
+	static final long MAX_OPEN_MS = 300_000;
+
+	private final LongSupplier nanoClock;
+
+	private State state = State.CLOSED;
+	private int consecutiveFailures;
+	/**
+	 * The number of times the breaker opened since it was last closed.
+	 */
+	private int consecutiveTrips;
+	private long openUntilNanos;
+	private boolean probeInFlight;
+	private long tripCount;
+
+	CircuitBreaker()
+	{
+		this(System::nanoTime);
+	}
+
+	CircuitBreaker(LongSupplier nanoClock)
+	{
+		this.nanoClock = nanoClock;
+	}
+
+	/**
+	 * Takes permission to send a request. While half-open only the probe request is allowed.
+	 *
+	 * @return True if a request may be sent now.
+	 */
+	synchronized boolean tryAcquire()
+	{
+		switch (state)
+		{
+			case OPEN:
+				if (nanoClock.getAsLong() - openUntilNanos < 0)
+				{
+					return false;
+				}
+				setState(State.HALF_OPEN);
+				// Fall through to send the probe
+			case HALF_OPEN:
+				if (probeInFlight)
+				{
+					return false;
+				}
+				probeInFlight = true;
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Returns a permission taken by {@link #tryAcquire()} for a request that was never sent.
+	 */
+	synchronized void release()
+	{
+		probeInFlight = false;
+	}
+
+	/**
+	 * Records a response from the server, closing the breaker if it was probing.
+	 */
+	synchronized void onSuccess()
+	{
+		consecutiveFailures = 0;
+		if (state == State.HALF_OPEN)
+		{
+			log.info("Hiscores lookups resumed, the server is responding again");
+			consecutiveTrips = 0;
+			probeInFlight = false;
+			setState(State.CLOSED);
+		}
+	}
+
+	/**
+	 * Records a network failure or a 5xx response, opening the breaker once they add up or if the probe failed.
+	 */
+	synchronized void onFailure()
+	{
+		consecutiveFailures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= FAILURE_THRESHOLD))
+		{
+			trip();
+		}
+	}
+
+	synchronized State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * @return The number of times the breaker opened.
+	 */
+	synchronized long getTripCount()
+	{
+		return tripCount;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return state.toString();
+	}
+
+	private void trip()
+	{
+		final long openMillis = Math.min(MAX_OPEN_MS, BASE_OPEN_MS << Math.min(consecutiveTrips, 16));
+		openUntilNanos = nanoClock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(openMillis);
+		consecutiveTrips++;
+		tripCount++;
+		probeInFlight = false;
+		log.info("Hiscores lookups paused for {}ms after {} failures in a row", openMillis, consecutiveFailures);
+		setState(State.OPEN);
+	}
+
+	private void setState(State newState)
+	{
+		if (state != newState)
+		{
+			log.debug("Hiscores circuit breaker {} -> {}", state, newState);
+			state = newState;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package com.hiscoreswatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.HashSet;
+import java.util.Set;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * An exclusive claim on a directory for the files kept between sessions, so that clients running side by side on the
+ * same computer never map or rewrite the same file.
+ * <p>
+ * The first client claims the data directory itself, every other client the first free one of the numbered
+ * directories below it, which it keeps using across restarts as long as no other client took it in the meantime. A
+ * claim is an exclusive lock on a file in the directory, held until {@link #release()}; the operating system releases
+ * it when a client dies. Directories claimed by this process are also tracked in memory, since closing a second channel
+ * on a locked file may release the lock held through the first.
+ */
+@Slf4j
+class DataDirectoryLock
+{
+	static final int MAX_CLIENTS = 8;
+
+	private static final String LOCK_FILE = "client.lock";
+	private static final String CLIENT_DIRECTORY_PREFIX = "client-";
+
+	private static final Set<File> claimedInProcess = new HashSet<>();
+
+	/**
+	 * The claimed directory.
+	 */
+	@Getter
+	private final File directory;
+	private final RandomAccessFile file;
+
+	private DataDirectoryLock(File directory, RandomAccessFile file)
+	{
+		this.directory = directory;
+		this.file = file;
+	}
+
+	/**
+	 * Claims the data directory, or the first free client directory below it if another client holds it.
+	 *
+	 * @param dataDirectory The directory of the files kept between sessions.
+	 * @return The claim, to be released once the files in the directory are closed.
+	 * @throws IOException If every directory is claimed, or none can be created.
+	 */
+	static DataDirectoryLock acquire(File dataDirectory) throws IOException
+	{
+		for (int client = 1; client <= MAX_CLIENTS; client++)
+		{
+			final File directory = client == 1 ? dataDirectory : new File(dataDirectory, CLIENT_DIRECTORY_PREFIX + client);
+			final DataDirectoryLock claim = tryAcquire(directory.getAbsoluteFile());
+			if (claim != null)
+			{
+				if (client > 1)
+				{
+					log.debug("{} is used by another client, keeping files in {}", dataDirectory, directory);
+				}
+				return claim;
+			}
+		}
+		throw new IOException("Every data directory in " + dataDirectory + " is used by another client");
+	}
+
+	/**
+	 * Releases the claim. The files in the directory must be closed first.
+	 */
+	void release()
+	{
+		synchronized (claimedInProcess)
+		{
+			try
+			{
+				file.close();
+			}
+			catch (IOException e)
+			{
+				log.warn("Failed to release {}", directory, e);
+			}
+			claimedInProcess.remove(directory);
+		}
+	}
+
+	private static DataDirectoryLock tryAcquire(File directory) throws IOException
+	{
+		synchronized (claimedInProcess)
+		{
+			if (claimedInProcess.contains(directory))
+			{
+				return null;
+			}
+
+			if (!directory.isDirectory() && !directory.mkdirs())
+			{
+				throw new IOException("Unable to create " + directory);
+			}
+
+			final RandomAccessFile file = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+			final FileLock lock;
+			try
+			{
+				lock = file.getChannel().tryLock();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				file.close();
+				throw e;
+			}
+
+			if (lock == null)
+			{
+				file.close();
+				return null;
+			}
+
+			claimedInProcess.add(directory);
+			return new DataDirectoryLock(directory, file);
+		}
+	}
+}
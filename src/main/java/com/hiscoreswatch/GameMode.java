@@ -0,0 +1,46 @@
+package com.hiscoreswatch;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The game modes with hiscores of their own, each served from its own {@code m=} path on the hiscores website.
+ * <p>
+ * A mode is only looked up for players found on the hiscores of its parent: every ironman is also on the main hiscores,
+ * and every hardcore or ultimate ironman is also on the ironman hiscores, so a player missing from the parent cannot be
+ * on the child. Deadman and seasonal progress is separate, but players with no main hiscores are skipped for them too.
+ */
+@Getter
+@RequiredArgsConstructor
+enum GameMode
+{
+	NORMAL("hiscore_oldschool", null, "", true),
+	IRONMAN("hiscore_oldschool_ironman", NORMAL, "Ironman", false),
+	HARDCORE_IRONMAN("hiscore_oldschool_hardcore_ironman", IRONMAN, "Hardcore", false),
+	ULTIMATE_IRONMAN("hiscore_oldschool_ultimate", IRONMAN, "Ultimate", false),
+	DEADMAN("hiscore_oldschool_deadman", NORMAL, "Deadman", true),
+	SEASONAL("hiscore_oldschool_seasonal", NORMAL, "Leagues", true);
+
+	static final GameMode[] VALUES = values();
+	static final int COUNT = VALUES.length;
+
+	/**
+	 * The path segment of the mode's hiscores, replacing the first segment of the configured base URL.
+	 */
+	private final String endpoint;
+	private final GameMode parent;
+	/**
+	 * The suffix shown after achievements in this mode, empty for the main hiscores.
+	 */
+	private final String displayName;
+	/**
+	 * Whether the mode has xp of its own. The ironman hiscores show the same xp as the main hiscores, so 200m xp is only
+	 * reported once.
+	 */
+	private final boolean separateXp;
+
+	int bit()
+	{
+		return 1 << ordinal();
+	}
+}
@@ -0,0 +1,233 @@
+package com.hiscoreswatch;
+
+import java.io.IOException;
+import java.util.Arrays;
+import okio.BufferedSource;
+
+/**
+ * A streaming parser for index_lite.ws responses.
+ * Digits are read straight from the response source into a {@link HiscoresSnapshot}, so no Strings are created per line.
+ * Malformed lines are treated the same way as splitting the response and calling {@link Integer#parseInt(String)}.
+ */
+final class HiscoresParser
+{
+	private static final int FIELD_RANK = 0;
+	private static final int FIELD_SCORE = 1;
+	private static final int FIELD_XP = 2;
+
+	/**
+	 * Maps a line of the response to the ordinal of its {@link Hiscores} entry, or -1 if the line is unused.
+	 */
+	private static final int[] LINE_TO_ORDINAL;
+
+	static
+	{
+		int maxIndex = 0;
+		for (Hiscores hiscore : Hiscores.values())
+		{
+			maxIndex = Math.max(maxIndex, hiscore.getApiIndex());
+		}
+
+		LINE_TO_ORDINAL = new int[maxIndex + 1];
+		Arrays.fill(LINE_TO_ORDINAL, -1);
+		for (Hiscores hiscore : Hiscores.values())
+		{
+			LINE_TO_ORDINAL[hiscore.getApiIndex()] = hiscore.ordinal();
+		}
+	}
+
+	private HiscoresParser()
+	{
+	}
+
+	/**
+	 * Parses a full response into a new snapshot.
+	 *
+	 * @param source The response body source.
+	 * @return The parsed snapshot.
+	 */
+	static HiscoresSnapshot parse(BufferedSource source) throws IOException
+	{
+		HiscoresSnapshot snapshot = new HiscoresSnapshot();
+		parse(source, snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Parses a full response into an existing snapshot, overwriting its previous contents.
+	 *
+	 * @param source   The response body source.
+	 * @param snapshot The snapshot to fill.
+	 */
+	static void parse(BufferedSource source, HiscoresSnapshot snapshot) throws IOException
+	{
+		snapshot.reset();
+
+		int line = 0;
+		int lastNonEmptyLine = -1;
+		int ordinal = ordinalForLine(line);
+		boolean lineEmpty = true;
+
+		// Line state
+		int field = FIELD_RANK;
+		int rank = 0;
+		int score = 0;
+		long xp = 0;
+		byte rowFlags = 0;
+		boolean rankValid = false;
+		boolean xpEmpty = false;
+
+		// Field state, the value is accumulated negatively like Long.parseLong to cover the full range
+		int fieldLength = 0;
+		int digits = 0;
+		boolean negative = false;
+		boolean fieldInvalid = false;
+		long value = 0;
+
+		boolean exhausted = source.exhausted();
+		while (true)
+		{
+			final int b = exhausted ? '\n' : source.readByte();
+
+			if (b == ',' || b == '\n')
+			{
+				if (ordinal >= 0 && field <= FIELD_XP && (b == ',' || field > FIELD_RANK))
+				{
+					// Finish the current field
+					final boolean valid = !fieldInvalid && digits > 0;
+					final long parsed = negative ? value : -value;
+					switch (field)
+					{
+						case FIELD_RANK:
+							rankValid = valid;
+							rank = (int) parsed;
+							break;
+						case FIELD_SCORE:
+							if (rankValid && valid)
+							{
+								rowFlags |= HiscoresSnapshot.FLAG_VALID;
+								score = (int) parsed;
+							}
+							else
+							{
+								// A row that does not parse holds no values, as if Integer.parseInt had thrown
+								rank = 0;
+								rowFlags |= HiscoresSnapshot.FLAG_MALFORMED;
+							}
+							break;
+						case FIELD_XP:
+							if (valid && (rowFlags & HiscoresSnapshot.FLAG_VALID) != 0)
+							{
+								rowFlags |= HiscoresSnapshot.FLAG_XP;
+								xp = parsed;
+							}
+							else if ((rowFlags & HiscoresSnapshot.FLAG_VALID) != 0)
+							{
+								// An empty xp column is dropped by String.split when nothing follows it on the line,
+								// so it is only malformed once a later column turns out not to be empty
+								if (fieldLength > 0)
+								{
+									rowFlags |= HiscoresSnapshot.FLAG_MALFORMED;
+								}
+								else
+								{
+									xpEmpty = true;
+								}
+							}
+							break;
+					}
+				}
+
+				if (b == ',')
+				{
+					lineEmpty = false;
+					field++;
+				}
+				else
+				{
+					// Finish the current line. Lines without a comma are skipped entirely.
+					if (!lineEmpty)
+					{
+						lastNonEmptyLine = line;
+						if (ordinal >= 0 && field > FIELD_RANK)
+						{
+							snapshot.set(ordinal, rank, score, xp, rowFlags);
+						}
+					}
+
+					if (exhausted)
+					{
+						break;
+					}
+
+					line++;
+					ordinal = ordinalForLine(line);
+					lineEmpty = true;
+					field = FIELD_RANK;
+					rank = 0;
+					score = 0;
+					xp = 0;
+					rowFlags = 0;
+					rankValid = false;
+					xpEmpty = false;
+				}
+
+				fieldLength = 0;
+				digits = 0;
+				negative = false;
+				fieldInvalid = false;
+				value = 0;
+			}
+			else
+			{
+				lineEmpty = false;
+				if (ordinal >= 0 && field <= FIELD_XP)
+				{
+					if (fieldLength == 0 && (b == '-' || b == '+'))
+					{
+						negative = b == '-';
+					}
+					else if (b >= '0' && b <= '9' && !fieldInvalid)
+					{
+						final int digit = b - '0';
+						final long limit = field == FIELD_XP
+								? (negative ? Long.MIN_VALUE : -Long.MAX_VALUE)
+								: (negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE);
+						if (value < limit / 10 || value * 10 < limit + digit)
+						{
+							fieldInvalid = true;
+						}
+						else
+						{
+							value = value * 10 - digit;
+							digits++;
+						}
+					}
+					else
+					{
+						fieldInvalid = true;
+					}
+					fieldLength++;
+				}
+				else if (xpEmpty)
+				{
+					rowFlags |= HiscoresSnapshot.FLAG_MALFORMED;
+					xpEmpty = false;
+				}
+			}
+
+			if (!exhausted)
+			{
+				exhausted = source.exhausted();
+			}
+		}
+
+		// String.split returns the whole input as a single line when it contains no line break
+		snapshot.setRowCount(line == 0 ? 1 : lastNonEmptyLine + 1);
+	}
+
+	private static int ordinalForLine(int line)
+	{
+		return line < LINE_TO_ORDINAL.length ? LINE_TO_ORDINAL[line] : -1;
+	}
+}
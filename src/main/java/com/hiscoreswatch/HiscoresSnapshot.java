@@ -0,0 +1,120 @@
+package com.hiscoreswatch;
+
+import java.util.Arrays;
+
+/**
+ * The parsed hiscores values of a single player, stored in primitive arrays indexed by {@link Hiscores#ordinal()}.
+ */
+final class HiscoresSnapshot
+{
+	static final int CATEGORY_COUNT = Hiscores.values().length;
+
+	// Per-category parse state flags
+	static final byte FLAG_VALID = 1;
+	static final byte FLAG_XP = 1 << 1;
+	static final byte FLAG_MALFORMED = 1 << 2;
+
+	private final int[] ranks = new int[CATEGORY_COUNT];
+	private final int[] scores = new int[CATEGORY_COUNT];
+	private final long[] xp = new long[CATEGORY_COUNT];
+	private final byte[] flags = new byte[CATEGORY_COUNT];
+
+	/**
+	 * The number of lines in the response, ignoring trailing empty lines.
+	 */
+	private int rowCount;
+
+	void reset()
+	{
+		Arrays.fill(ranks, 0);
+		Arrays.fill(scores, 0);
+		Arrays.fill(xp, 0);
+		Arrays.fill(flags, (byte) 0);
+		rowCount = 0;
+	}
+
+	int getRowCount()
+	{
+		return rowCount;
+	}
+
+	void setRowCount(int rowCount)
+	{
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * @return True if the response contained a line for the given category.
+	 */
+	boolean isPresent(Hiscores hiscore)
+	{
+		return hiscore.getApiIndex() < rowCount;
+	}
+
+	/**
+	 * @return True if both the rank and the score of the given category were parsed.
+	 */
+	boolean isValid(Hiscores hiscore)
+	{
+		return (flags[hiscore.ordinal()] & FLAG_VALID) != 0;
+	}
+
+	/**
+	 * @return True if the xp column of the given category was parsed.
+	 */
+	boolean hasXp(Hiscores hiscore)
+	{
+		return (flags[hiscore.ordinal()] & FLAG_XP) != 0;
+	}
+
+	/**
+	 * @return True if the line of the given category contained a value that could not be parsed.
+	 */
+	boolean isMalformed(Hiscores hiscore)
+	{
+		return (flags[hiscore.ordinal()] & FLAG_MALFORMED) != 0;
+	}
+
+	int getRank(Hiscores hiscore)
+	{
+		return ranks[hiscore.ordinal()];
+	}
+
+	int getScore(Hiscores hiscore)
+	{
+		return scores[hiscore.ordinal()];
+	}
+
+	long getXp(Hiscores hiscore)
+	{
+		return xp[hiscore.ordinal()];
+	}
+
+	int rankAt(int ordinal)
+	{
+		return ranks[ordinal];
+	}
+
+	int scoreAt(int ordinal)
+	{
+		return scores[ordinal];
+	}
+
+	long xpAt(int ordinal)
+	{
+		return xp[ordinal];
+	}
+
+	byte flagsAt(int ordinal)
+	{
+		return flags[ordinal];
+	}
+
+	void set(int ordinal, int rank, int score, long xpValue, byte rowFlags)
+	{
+		ranks[ordinal] = rank;
+		scores[ordinal] = score;
+		xp[ordinal] = xpValue;
+		flags[ordinal] = rowFlags;
+	}
+}
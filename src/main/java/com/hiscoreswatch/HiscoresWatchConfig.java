@@ -4,11 +4,20 @@ import java.awt.Color;
 import net.runelite.client.config.Config;
 import net.runelite.client.config.ConfigGroup;
 import net.runelite.client.config.ConfigItem;
+import net.runelite.client.config.ConfigSection;
 import net.runelite.client.config.Range;
 
 @ConfigGroup("hiscoreswatch")
 public interface HiscoresWatchConfig extends Config
 {
+	@ConfigSection(
+			name = "Alert Rules",
+			description = "Thresholds for groups of hiscore categories and for single categories.",
+			position = 14,
+			closedByDefault = true
+	)
+	String alertRulesSection = "alertRules";
+
 	@Range(
 			min = 1,
 			max = 10000
@@ -38,7 +47,7 @@ public interface HiscoresWatchConfig extends Config
 	@ConfigItem(
 			keyName = "ignoreList",
 			name = "Ignore List",
-			description = "Comma-separated list of player names to ignore. Not case-sensitive.",
+			description = "Comma-separated list of player names to ignore. Not case-sensitive. Players ignored from the right-click menu are stored separately.",
 			position = 3
 	)
 	default String ignoreList()
@@ -90,4 +99,243 @@ public interface HiscoresWatchConfig extends Config
 	{
 		return true;
 	}
+
+	@Range(
+			min = 1,
+			max = 5
+	)
+	@ConfigItem(
+			keyName = "maxConcurrentLookups",
+			name = "Concurrent Lookups",
+			description = "The maximum number of hiscores lookups that can be waiting for a response at once.",
+			position = 8
+	)
+	default int maxConcurrentLookups()
+	{
+		return 2;
+	}
+
+	@ConfigItem(
+			keyName = "showMetricsOverlay",
+			name = "Show Lookup Metrics",
+			description = "Shows an overlay with the queue depth, lookup latencies and cache hit ratio of the plugin.",
+			position = 9
+	)
+	default boolean showMetricsOverlay()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "buildTopRankIndex",
+			name = "Top Rank Index",
+			description = "Slowly downloads the hiscores ranking tables while no lookups are waiting, so top-ranked players are recognised without looking them up.",
+			position = 10
+	)
+	default boolean buildTopRankIndex()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "checkIronmanHiscores",
+			name = "Check Ironman Hiscores",
+			description = "Also checks the ironman, hardcore and ultimate ironman hiscores of players who are ironmen.",
+			position = 11
+	)
+	default boolean checkIronmanHiscores()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+			keyName = "checkDeadmanHiscores",
+			name = "Check Deadman Hiscores",
+			description = "Also checks the deadman hiscores of players who are on the main hiscores.",
+			position = 12
+	)
+	default boolean checkDeadmanHiscores()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "checkSeasonalHiscores",
+			name = "Check Leagues Hiscores",
+			description = "Also checks the seasonal (leagues) hiscores of players who are on the main hiscores.",
+			position = 13
+	)
+	default boolean checkSeasonalHiscores()
+	{
+		return false;
+	}
+
+	@Range(
+			min = 0,
+			max = 10000
+	)
+	@ConfigItem(
+			keyName = "skillRankThreshold",
+			name = "Skill Rank Threshold",
+			description = "The rank at or below which a skill triggers an alert. 0 uses the Rank Threshold.",
+			position = 15,
+			section = alertRulesSection
+	)
+	default int skillRankThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0,
+			max = 10000
+	)
+	@ConfigItem(
+			keyName = "clueRankThreshold",
+			name = "Clue Rank Threshold",
+			description = "The rank at or below which a clue scroll category triggers an alert. 0 uses the Rank Threshold.",
+			position = 16,
+			section = alertRulesSection
+	)
+	default int clueRankThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0
+	)
+	@ConfigItem(
+			keyName = "clueScoreThreshold",
+			name = "Clue Count Threshold",
+			description = "The number of completed clue scrolls of a tier at which an alert is triggered. 0 disables it.",
+			position = 17,
+			section = alertRulesSection
+	)
+	default int clueScoreThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0,
+			max = 10000
+	)
+	@ConfigItem(
+			keyName = "minigameRankThreshold",
+			name = "Minigame Rank Threshold",
+			description = "The rank at or below which a minigame or activity triggers an alert. 0 uses the Rank Threshold.",
+			position = 18,
+			section = alertRulesSection
+	)
+	default int minigameRankThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0
+	)
+	@ConfigItem(
+			keyName = "minigameScoreThreshold",
+			name = "Minigame Score Threshold",
+			description = "The minigame or activity score at which an alert is triggered. 0 disables it.",
+			position = 19,
+			section = alertRulesSection
+	)
+	default int minigameScoreThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0,
+			max = 10000
+	)
+	@ConfigItem(
+			keyName = "bossRankThreshold",
+			name = "Boss Rank Threshold",
+			description = "The rank at or below which a boss triggers an alert. 0 uses the Rank Threshold.",
+			position = 20,
+			section = alertRulesSection
+	)
+	default int bossRankThreshold()
+	{
+		return 0;
+	}
+
+	@Range(
+			min = 0
+	)
+	@ConfigItem(
+			keyName = "bossKillCountThreshold",
+			name = "Boss Kill Count Threshold",
+			description = "The kill count of a boss at which an alert is triggered. 0 disables it.",
+			position = 21,
+			section = alertRulesSection
+	)
+	default int bossKillCountThreshold()
+	{
+		return 0;
+	}
+
+	@ConfigItem(
+			keyName = "categoryRules",
+			name = "Category Rules",
+			description = "One rule per line overriding a single category, e.g. 'Zulrah = rank 100, kc 20000' or 'Attack = no 200m'. Settings are rank, score or kc, 200m, no 200m and off.",
+			position = 22,
+			section = alertRulesSection
+	)
+	default String categoryRules()
+	{
+		return "";
+	}
+
+	@Range(
+			min = 0
+	)
+	@ConfigItem(
+			keyName = "gainsXpThreshold",
+			name = "Gains Alert XP",
+			description = "Alerts when a player you have seen before gained at least this much overall XP since you last saw them. 0 disables it.",
+			position = 23,
+			section = alertRulesSection
+	)
+	default int gainsXpThreshold()
+	{
+		return 0;
+	}
+
+	@ConfigItem(
+			keyName = "shareLookups",
+			name = "Share With Other Clients",
+			description = "Shares lookups and one request budget with the other clients on this computer that have this on, so a player seen by several of them is only looked up once.",
+			position = 24
+	)
+	default boolean shareLookups()
+	{
+		return false;
+	}
+
+	@ConfigItem(
+			keyName = "highlightNotablePlayers",
+			name = "Highlight Notable Players",
+			description = "Outlines the notable players in the scene and labels them with their most impressive achievement.",
+			position = 25
+	)
+	default boolean highlightNotablePlayers()
+	{
+		return true;
+	}
+
+	@ConfigItem(
+			keyName = "hiscoresBaseUrl",
+			name = "Hiscores URL",
+			description = "The base URL of the hiscores website, only changed for testing against a local server.",
+			hidden = true
+	)
+	default String hiscoresBaseUrl()
+	{
+		return "https://secure.runescape.com/m=hiscore_oldschool/";
+	}
 }
@@ -0,0 +1,338 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import lombok.Getter;
+import lombok.Value;
+
+/**
+ * A registry of counters, histograms and gauges describing the lookup pipeline.
+ * Recording only ever touches atomics, so it never locks or allocates and is safe from any thread.
+ * Gauges are read on demand, when the metrics are displayed or dumped to the log.
+ */
+class HiscoresWatchMetrics
+{
+	/**
+	 * A labelled value for display.
+	 */
+	@Value
+	static class Line
+	{
+		String label;
+		String value;
+	}
+
+	/**
+	 * A histogram with power-of-two buckets. Bucket {@code i} counts values in {@code [2^(i-1), 2^i)}, bucket 0 counts zero.
+	 */
+	static final class Histogram
+	{
+		private static final int BUCKETS = 40;
+
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong sum = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long value)
+		{
+			final long v = Math.max(0, value);
+			buckets.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(v)));
+			count.incrementAndGet();
+			sum.addAndGet(v);
+
+			long current;
+			while (v > (current = max.get()) && !max.compareAndSet(current, v))
+			{
+				// Retry until the maximum is at least this value
+			}
+		}
+
+		long getCount()
+		{
+			return count.get();
+		}
+
+		long getMax()
+		{
+			return max.get();
+		}
+
+		long getMean()
+		{
+			final long n = count.get();
+			return n == 0 ? 0 : sum.get() / n;
+		}
+
+		/**
+		 * @param quantile The quantile, between 0 and 1.
+		 * @return The upper bound of the bucket holding the quantile, capped at the maximum recorded value.
+		 */
+		long getQuantile(double quantile)
+		{
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				total += buckets.get(i);
+			}
+			if (total == 0)
+			{
+				return 0;
+			}
+
+			final long target = Math.max(1, (long) Math.ceil(quantile * total));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += buckets.get(i);
+				if (seen >= target)
+				{
+					final long upper = i == 0 ? 0 : (1L << i) - 1;
+					return Math.min(upper, max.get());
+				}
+			}
+			return max.get();
+		}
+	}
+
+	/**
+	 * Counts events over the last minute in one second slots.
+	 */
+	static final class RollingCounter
+	{
+		private static final int SLOTS = 60;
+
+		private final AtomicLongArray seconds = new AtomicLongArray(SLOTS);
+		private final AtomicLongArray counts = new AtomicLongArray(SLOTS);
+		private final AtomicLong total = new AtomicLong();
+
+		void record(long nowMillis)
+		{
+			final long second = nowMillis / 1000;
+			final int slot = (int) (second % SLOTS);
+			final long slotSecond = seconds.get(slot);
+			if (slotSecond != second && seconds.compareAndSet(slot, slotSecond, second))
+			{
+				// This thread claimed the slot for the new second, a concurrent increment may be lost which is fine for a rate
+				counts.set(slot, 0);
+			}
+			counts.incrementAndGet(slot);
+			total.incrementAndGet();
+		}
+
+		long getLastMinute(long nowMillis)
+		{
+			final long second = nowMillis / 1000;
+			long sum = 0;
+			for (int slot = 0; slot < SLOTS; slot++)
+			{
+				if (second - seconds.get(slot) < SLOTS)
+				{
+					sum += counts.get(slot);
+				}
+			}
+			return sum;
+		}
+
+		long getTotal()
+		{
+			return total.get();
+		}
+	}
+
+	@Value
+	private static class Gauge
+	{
+		String label;
+		LongSupplier supplier;
+	}
+
+	@Getter
+	private final Histogram httpLatencyMillis = new Histogram();
+	@Getter
+	private final Histogram parseMicros = new Histogram();
+	/**
+	 * The time from a player being queued to their alert being sent.
+	 */
+	@Getter
+	private final Histogram alertLatencyMillis = new Histogram();
+	/**
+	 * The time from a player being queued to their lookup being sent.
+	 */
+	@Getter
+	private final Histogram fetchWaitMillis = new Histogram();
+	@Getter
+	private final RollingCounter requests = new RollingCounter();
+
+	private final AtomicLong cacheHits = new AtomicLong();
+	private final AtomicLong cacheMisses = new AtomicLong();
+	private final AtomicLong storeHits = new AtomicLong();
+	private final AtomicLong sharedHits = new AtomicLong();
+	private final AtomicLong indexHits = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong filterHits = new AtomicLong();
+	private final AtomicLong networkFailures = new AtomicLong();
+	private final AtomicLong retries = new AtomicLong();
+	private final AtomicLongArray statusCodes = new AtomicLongArray(600);
+
+	private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+	private final List<Supplier<PipelineStage>> stages = new CopyOnWriteArrayList<>();
+
+	/**
+	 * Registers a value that is read whenever the metrics are displayed.
+	 */
+	void gauge(String label, LongSupplier supplier)
+	{
+		gauges.add(new Gauge(label, supplier));
+	}
+
+	/**
+	 * Registers a pipeline stage, whose queue is read whenever the metrics are displayed.
+	 *
+	 * @param stage Supplies the running stage, or null while the plugin is stopped.
+	 */
+	void stage(Supplier<PipelineStage> stage)
+	{
+		stages.add(stage);
+	}
+
+	void recordCacheHit()
+	{
+		cacheHits.incrementAndGet();
+	}
+
+	void recordCacheMiss()
+	{
+		cacheMisses.incrementAndGet();
+	}
+
+	void recordStoreHit()
+	{
+		storeHits.incrementAndGet();
+	}
+
+	void recordSharedHit()
+	{
+		sharedHits.incrementAndGet();
+	}
+
+	void recordIndexHit()
+	{
+		indexHits.incrementAndGet();
+	}
+
+	void recordStaleHit()
+	{
+		staleHits.incrementAndGet();
+	}
+
+	void recordFilterHit()
+	{
+		filterHits.incrementAndGet();
+	}
+
+	void recordRequest(long nowMillis)
+	{
+		requests.record(nowMillis);
+	}
+
+	void recordResponse(int code, long latencyMillis)
+	{
+		if (code >= 0 && code < statusCodes.length())
+		{
+			statusCodes.incrementAndGet(code);
+		}
+		httpLatencyMillis.record(latencyMillis);
+	}
+
+	void recordNetworkFailure()
+	{
+		networkFailures.incrementAndGet();
+	}
+
+	void recordRetry()
+	{
+		retries.incrementAndGet();
+	}
+
+	void recordFetchWait(long waitMillis)
+	{
+		fetchWaitMillis.record(waitMillis);
+	}
+
+	void recordParse(long nanos)
+	{
+		parseMicros.record(nanos / 1000);
+	}
+
+	void recordAlert(long queuedAtMillis, long nowMillis)
+	{
+		alertLatencyMillis.record(nowMillis - queuedAtMillis);
+	}
+
+	long getStatusCount(int code)
+	{
+		return statusCodes.get(code);
+	}
+
+	/**
+	 * @return The number of responses with a status code in {@code [from, to)}.
+	 */
+	long getStatusCount(int from, int to)
+	{
+		long sum = 0;
+		for (int code = from; code < to; code++)
+		{
+			sum += statusCodes.get(code);
+		}
+		return sum;
+	}
+
+	/**
+	 * Describes the current state of every metric, for the overlay and the log dump.
+	 */
+	List<Line> describe(long nowMillis)
+	{
+		List<Line> lines = new ArrayList<>();
+		for (Gauge gauge : gauges)
+		{
+			lines.add(new Line(gauge.getLabel(), Long.toString(gauge.getSupplier().getAsLong())));
+		}
+
+		final long hits = cacheHits.get();
+		final long lookups = hits + cacheMisses.get();
+		lines.add(new Line("Cache hits", hits + " / " + lookups + (lookups == 0 ? "" : " (" + hits * 100 / lookups + "%)")));
+		lines.add(new Line("Store hits", Long.toString(storeHits.get())));
+		lines.add(new Line("Shared hits", Long.toString(sharedHits.get())));
+		lines.add(new Line("Index hits", Long.toString(indexHits.get())));
+		lines.add(new Line("Stale hits", Long.toString(staleHits.get())));
+		lines.add(new Line("Filter hits", Long.toString(filterHits.get())));
+		lines.add(new Line("Requests/min", requests.getLastMinute(nowMillis) + " (" + requests.getTotal() + " total)"));
+		lines.add(new Line("Fetch wait p50/p95", fetchWaitMillis.getQuantile(0.5) + " / " + fetchWaitMillis.getQuantile(0.95) + " ms"));
+		for (Supplier<PipelineStage> supplier : stages)
+		{
+			final PipelineStage stage = supplier.get();
+			if (stage != null)
+			{
+				final Histogram wait = stage.getQueueMicros();
+				lines.add(new Line(Character.toUpperCase(stage.getName().charAt(0)) + stage.getName().substring(1) + " queue",
+						stage.getQueueSize() + " (full " + stage.getSaturatedCount() + "x), wait "
+								+ wait.getQuantile(0.5) + " / " + wait.getQuantile(0.95) + " us"));
+			}
+		}
+		lines.add(new Line("HTTP p50/p95", httpLatencyMillis.getQuantile(0.5) + " / " + httpLatencyMillis.getQuantile(0.95) + " ms"));
+		lines.add(new Line("Parse p50/p95", parseMicros.getQuantile(0.5) + " / " + parseMicros.getQuantile(0.95) + " us"));
+		lines.add(new Line("Alert p50/p95", alertLatencyMillis.getQuantile(0.5) + " / " + alertLatencyMillis.getQuantile(0.95) + " ms"));
+		lines.add(new Line("Errors", "404: " + getStatusCount(404)
+				+ ", 429: " + getStatusCount(429)
+				+ ", 5xx: " + getStatusCount(500, 600)
+				+ ", net: " + networkFailures.get()));
+		lines.add(new Line("Retries", Long.toString(retries.get())));
+		return lines;
+	}
+}
@@ -0,0 +1,64 @@
+package com.hiscoreswatch;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+/**
+ * Shows the lookup metrics of the plugin when enabled in the config.
+ * The lines are rebuilt once a second rather than every frame.
+ */
+class HiscoresWatchMetricsOverlay extends OverlayPanel
+{
+	private static final long REFRESH_INTERVAL_MS = 1000;
+
+	private final HiscoresWatchPlugin plugin;
+	private final HiscoresWatchConfig config;
+
+	private final List<LineComponent> lines = new ArrayList<>();
+	private long lastRefreshMillis;
+
+	@Inject
+	HiscoresWatchMetricsOverlay(HiscoresWatchPlugin plugin, HiscoresWatchConfig config)
+	{
+		super(plugin);
+		this.plugin = plugin;
+		this.config = config;
+		setPosition(OverlayPosition.TOP_LEFT);
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		final HiscoresWatchMetrics metrics = plugin.getMetrics();
+		if (!config.showMetricsOverlay() || metrics == null)
+		{
+			return null;
+		}
+
+		final long now = System.currentTimeMillis();
+		if (now - lastRefreshMillis >= REFRESH_INTERVAL_MS)
+		{
+			lastRefreshMillis = now;
+			lines.clear();
+			for (HiscoresWatchMetrics.Line line : metrics.describe(now))
+			{
+				lines.add(LineComponent.builder()
+						.left(line.getLabel())
+						.right(line.getValue())
+						.build());
+			}
+		}
+
+		panelComponent.getChildren().add(TitleComponent.builder().text("Hiscores Watch").build());
+		panelComponent.getChildren().addAll(lines);
+		panelComponent.setPreferredSize(new Dimension(220, 0));
+		return super.render(graphics);
+	}
+}
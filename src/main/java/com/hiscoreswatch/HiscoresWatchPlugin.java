@@ -1,25 +1,26 @@
 package com.hiscoreswatch;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Provides;
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Deque;
-import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -27,14 +28,25 @@ import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
+import net.runelite.api.GameState;
 import net.runelite.api.MenuAction;
+import net.runelite.api.MenuEntry;
 import net.runelite.api.Player;
 import net.runelite.api.clan.ClanChannel;
+import net.runelite.api.clan.ClanChannelMember;
+import net.runelite.api.coords.WorldPoint;
 import net.runelite.api.events.ClanChannelChanged;
+import net.runelite.api.events.ClanMemberJoined;
+import net.runelite.api.events.ClanMemberLeft;
+import net.runelite.api.events.FriendsChatChanged;
 import net.runelite.api.events.FriendsChatMemberJoined;
+import net.runelite.api.events.GameStateChanged;
+import net.runelite.api.events.GameTick;
 import net.runelite.api.events.MenuEntryAdded;
+import net.runelite.api.events.PlayerDespawned;
 import net.runelite.api.events.PlayerSpawned;
 import net.runelite.client.Notifier;
+import net.runelite.client.RuneLite;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.client.chat.ChatMessageBuilder;
 import net.runelite.client.config.ConfigManager;
@@ -42,7 +54,12 @@ import net.runelite.client.eventbus.Subscribe;
 import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.ui.ClientToolbar;
+import net.runelite.client.ui.NavigationButton;
+import net.runelite.client.ui.overlay.OverlayManager;
 import net.runelite.client.util.ColorUtil;
+import net.runelite.client.util.ImageUtil;
+import net.runelite.client.util.QuantityFormatter;
 import net.runelite.client.util.Text;
 import okhttp3.Call;
 import okhttp3.Callback;
@@ -51,6 +68,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okio.Buffer;
 
 @Slf4j
 @PluginDescriptor(
@@ -61,28 +79,102 @@ import okhttp3.ResponseBody;
 public class HiscoresWatchPlugin extends Plugin
 {
 	// --- Constants ---
-	private static final String HISCORES_API_URL = "https://secure.runescape.com/m=hiscore_oldschool/index_lite.ws?player=";
+	private static final String DEFAULT_HISCORES_BASE_URL = "https://secure.runescape.com/m=hiscore_oldschool/";
 	private static final long MAX_XP = 200_000_000L;
-	private static final int API_REQUEST_DELAY_MS = 500;
+	private static final int WORKER_TICK_MS = 50;
+	private static final double INITIAL_REQUESTS_PER_SECOND = 2;
+	private static final double MIN_REQUESTS_PER_SECOND = 0.25;
+	private static final double MAX_REQUESTS_PER_SECOND = 8;
+	private static final double REQUEST_BURST = 2;
+	private static final long LOOKUP_TIMEOUT_MS = 10_000;
+	private static final long SNAPSHOT_CACHE_SIZE = 20_000;
+	private static final long QUEUE_EXPIRY_INTERVAL_MS = 1000;
+	private static final long SHED_REPORT_INTERVAL_MS = 60_000;
+	private static final long METRICS_LOG_INTERVAL_MS = 300_000;
+	private static final String SNAPSHOT_STORE_FILE = "snapshots.dat";
+	private static final String TOP_RANK_INDEX_FILE = "topranks.dat";
+	private static final long CRAWL_INTERVAL_MS = 5000;
+	private static final String UNREMARKABLE_FILTER_FILE = "unremarkable.dat";
+	private static final long FILTER_SAVE_INTERVAL_MS = 600_000;
+	private static final String PLAYER_HISTORY_FILE = "history.dat";
+	private static final String SHARED_SEGMENT_FILE = "shared.dat";
+	private static final long SHUTDOWN_TIMEOUT_MS = 5000;
+	private static final long SHARED_RETRY_INTERVAL_MS = 300_000;
+	private static final long SHARED_WAIT_INTERVAL_MS = 500;
+	private static final int EVALUATE_THREADS = 2;
+	private static final int EVALUATE_QUEUE_CAPACITY = 128;
+	private static final int RENDER_QUEUE_CAPACITY = 64;
 	private static final int MAX_LISTED_ACHIEVEMENTS = 5;
+	private static final int MAX_SUMMARIZED_PLAYERS = 4;
+	private static final Hiscores[] HISCORES = Hiscores.values();
+
+	/**
+	 * Orders achievements by impressiveness: Overall first, then by rank, with 200m-only entries after the ranked ones
+	 * and score-only entries last.
+	 */
+	static final Comparator<PlayerAchievement> ACHIEVEMENT_ORDER = Comparator
+			.comparing((PlayerAchievement a) -> a.getHiscore() != Hiscores.OVERALL)
+			.thenComparing((PlayerAchievement a) -> a.getRank() == -1 && !a.isHas200mXp())
+			.thenComparingInt(PlayerAchievement::getRank)
+			.thenComparing(Comparator.comparingInt(PlayerAchievement::getScore).reversed())
+			.thenComparing(PlayerAchievement::getMode);
 
 	// Constants for configuration management
 	public static final String CONFIG_GROUP = "hiscoreswatch";
 	private static final String IGNORE_LIST_KEY = "ignoreList";
+	private static final String MAX_CONCURRENT_LOOKUPS_KEY = "maxConcurrentLookups";
+	private static final String CHAT_COLOR_KEY = "chatColor";
+	private static final String HISCORES_BASE_URL_KEY = "hiscoresBaseUrl";
+	private static final String GAINS_XP_THRESHOLD_KEY = "gainsXpThreshold";
+	private static final String SHARE_LOOKUPS_KEY = "shareLookups";
+	private static final String HIGHLIGHT_NOTABLE_PLAYERS_KEY = "highlightNotablePlayers";
+	private static final int MENU_TARGET_CACHE_SIZE = 256;
+	private static final Set<String> ALERT_THRESHOLD_KEYS = ImmutableSet.of("rankThreshold", "alertFor200mXp",
+			"checkIronmanHiscores", "checkDeadmanHiscores", "checkSeasonalHiscores", "skillRankThreshold",
+			"clueRankThreshold", "clueScoreThreshold", "minigameRankThreshold", "minigameScoreThreshold",
+			"bossRankThreshold", "bossKillCountThreshold", "categoryRules");
 
 	/**
 	 * An enum representing the source of a player detection event.
 	 */
 	@Getter
 	@RequiredArgsConstructor
-	private enum DetectionSource
+	enum DetectionSource
 	{
-		NEARBY("is nearby and is notable for: ", false),
-		FRIENDS_CHAT("joined your friends chat and is notable for: ", true),
-		CLAN_CHAT("joined your clan and is notable for: ", true);
+		NEARBY("is nearby and is notable for: ", "are nearby: ", LookupScheduler.Lane.NEARBY, 150, 60_000),
+		FRIENDS_CHAT("joined your friends chat and is notable for: ", "joined your friends chat: ", LookupScheduler.Lane.PRIORITY, 200, 180_000),
+		CLAN_CHAT("joined your clan and is notable for: ", "joined your clan: ", LookupScheduler.Lane.PRIORITY, 500, 180_000),
+		/**
+		 * The members already in a friends chat when it is joined, see {@link #bootstrapRoster}.
+		 */
+		FRIENDS_CHAT_ROSTER("is in your friends chat and is notable for: ", "are in your friends chat: ", LookupScheduler.Lane.BACKGROUND, 600, 900_000),
+		/**
+		 * The members already in a clan channel when it is joined.
+		 */
+		CLAN_ROSTER("is in your clan and is notable for: ", "are in your clan: ", LookupScheduler.Lane.BACKGROUND, 500, 900_000);
 
 		private final String message;
-		private final boolean isPriority;
+		/**
+		 * The message of a summary of several notable players from this source.
+		 */
+		private final String summaryMessage;
+		private final LookupScheduler.Lane lane;
+		/**
+		 * The maximum number of queued lookups from this source before some are shed.
+		 */
+		private final int queueCapacity;
+		/**
+		 * How long a lookup from this source may wait in the queue before it is considered stale and shed.
+		 */
+		private final long queueDeadlineMs;
+
+		/**
+		 * @return True for live joins, which are looked up before anyone else.
+		 */
+		boolean isPriority()
+		{
+			return lane == LookupScheduler.Lane.PRIORITY;
+		}
 	}
 
 	/**
@@ -91,17 +183,23 @@ public class HiscoresWatchPlugin extends Plugin
 	@Getter
 	@Setter
 	@AllArgsConstructor
-	private static class PlayerAchievement
+	static class PlayerAchievement
 	{
 		private Hiscores hiscore;
 		private int rank;
 		private boolean has200mXp;
+		/**
+		 * The score, or -1 if only the rank or 200m XP was notable.
+		 */
+		private int score;
+		private GameMode mode;
 
 		/**
 		 * Converts the achievement object into its final display string.
 		 */
 		public String toDisplayString()
 		{
+			final String modeName = mode.getDisplayName();
 			// If the rank is notable (not -1), build the rank string.
 			if (rank != -1)
 			{
@@ -109,39 +207,232 @@ public class HiscoresWatchPlugin extends Plugin
 				// If they also have 200m XP, append that.
 				if (has200mXp)
 				{
-					return base + " (200m XP)";
+					return base + " (" + (modeName.isEmpty() ? "" : modeName + ", ") + "200m XP)";
 				}
 				// Otherwise, just return the rank string.
-				return base;
+				return modeName.isEmpty() ? base : base + " (" + modeName + ")";
 			}
-			else
+			else if (has200mXp)
 			{
 				// If the rank is -1, it means only the 200m XP was notable.
-				return "200m XP in " + hiscore.getName();
+				String base = "200m XP in " + hiscore.getName();
+				return modeName.isEmpty() ? base : base + " (" + modeName + ")";
+			}
+			else
+			{
+				// Otherwise only the score reached its threshold.
+				String unit = AlertRules.Group.of(hiscore) == AlertRules.Group.BOSSES ? " kc in " : " in ";
+				String base = String.format("%,d", score) + unit + hiscore.getName();
+				return modeName.isEmpty() ? base : base + " (" + modeName + ")";
 			}
 		}
 	}
 
+	/**
+	 * The parts of the ignore menu entry derived from a right-click target, cached so that rebuilding the menu
+	 * does not normalize and colour the same name again.
+	 */
+	@RequiredArgsConstructor
+	private static final class MenuTarget
+	{
+		private final long key;
+		private final String coloredName;
+		private final Consumer<MenuEntry> onClick;
+	}
+
+	/**
+	 * The config values read while evaluating and rendering lookups, copied out of the config proxy whenever they change
+	 * so the pipeline threads do not go through it for every player.
+	 */
+	@RequiredArgsConstructor
+	private static final class AlertSettings
+	{
+		private final AlertRules rules;
+		private final Color chatColor;
+		/**
+		 * The overall xp a player must have gained since last seen to be alerted for it, 0 if gains are not alerted.
+		 */
+		private final int gainsXpThreshold;
+		/**
+		 * The {@link GameMode#bit() bits} of the game modes to check.
+		 */
+		private final int gameModes;
+	}
+
 	/**
 	 * A class to hold a player check request for the processing queue.
 	 * This replaces the Java 16+ 'record' for Java 11 compatibility.
 	 */
 	@RequiredArgsConstructor
 	@Getter
-	private static final class PlayerCheck
+	static final class PlayerCheck
 	{
 		private final String playerName;
+		/**
+		 * The {@link NameCodec} encoding of the player name.
+		 */
+		private final long key;
 		private final DetectionSource source;
+		/**
+		 * The spawned player of a nearby check, used to track their distance. Only accessed on the client thread.
+		 */
+		private final Player player;
+		/**
+		 * When the player was first queued, used to measure the lookup and alert latency.
+		 */
+		private final long enqueuedAtMillis;
+		/**
+		 * When the check was moved to another source, or -1 if it was not. The queue deadline counts from here.
+		 */
+		private long promotedAtMillis = -1;
+		@Setter
+		private int distance = LookupScheduler.UNKNOWN_DISTANCE;
+		/**
+		 * The game mode to look up, the main hiscores unless this check continues the lookup of another mode.
+		 */
+		private GameMode mode = GameMode.NORMAL;
+		/**
+		 * The lookup across game modes this check belongs to, set once the main hiscores are looked up.
+		 */
+		@Setter
+		private ModeLookup lookup;
+		/**
+		 * Whether the player was already alerted from stale hiscores, so the lookup revalidating them does not alert again.
+		 */
+		@Setter
+		private boolean staleAlerted;
+		/**
+		 * The number of times this check was sent again after a transient failure.
+		 */
+		@Setter
+		private int retries;
+
+		/**
+		 * @return A check of the same player in another game mode, continuing the same lookup.
+		 */
+		PlayerCheck forMode(GameMode otherMode, ModeLookup modeLookup)
+		{
+			PlayerCheck check = new PlayerCheck(playerName, key, source, null, enqueuedAtMillis);
+			check.mode = otherMode;
+			check.lookup = modeLookup;
+			check.staleAlerted = staleAlerted;
+			check.promotedAtMillis = promotedAtMillis;
+			return check;
+		}
+
+		/**
+		 * @param nowMillis The current time, from which the deadline of the other source counts.
+		 * @return The same check queued from another source, keeping its progress through the lookup.
+		 */
+		PlayerCheck forSource(DetectionSource otherSource, long nowMillis)
+		{
+			PlayerCheck check = new PlayerCheck(playerName, key, otherSource, null, enqueuedAtMillis);
+			check.promotedAtMillis = nowMillis;
+			check.mode = mode;
+			check.lookup = lookup;
+			check.staleAlerted = staleAlerted;
+			check.retries = retries;
+			return check;
+		}
+
+		/**
+		 * @return The time the queue deadline of the check's source counts from.
+		 */
+		long getDeadlineFromMillis()
+		{
+			return promotedAtMillis >= 0 ? promotedAtMillis : enqueuedAtMillis;
+		}
 	}
 
-	private Cache<String, Boolean> checkedPlayers;
-	private Set<String> ignoredPlayers;
-	private Set<String> clanMembers;
-	private Deque<PlayerCheck> playerCheckQueue;
+	@Getter(AccessLevel.PACKAGE)
+	private SnapshotCache snapshotCache;
+	private volatile PersistentSnapshotStore snapshotStore;
+	private volatile PlayerHistoryLog playerHistory;
+	private volatile TopRankIndex topRankIndex;
+	private volatile UnremarkableFilter unremarkableFilter;
+	/**
+	 * The lookups and request budget shared with the other clients on the machine, or null while not sharing.
+	 * Only opened and closed on the worker thread.
+	 */
+	private volatile SharedLookupSegment sharedSegment;
+	private volatile boolean shareLookups;
+	private volatile HttpUrl hiscoresBaseUrl;
+	/**
+	 * The directory of the files kept between sessions, only changed by the replay harness to keep off the real ones.
+	 */
+	@Setter(AccessLevel.PACKAGE)
+	private File dataDirectory = new File(RuneLite.RUNELITE_DIR, "hiscoreswatch");
+	/**
+	 * This client's claim on a directory below {@link #dataDirectory} for the files it keeps between sessions, or null if
+	 * none could be claimed. Taken on the worker thread and released once it has stopped.
+	 */
+	private volatile DataDirectoryLock dataDirectoryLock;
+	private IgnoreListStore ignoreList;
+	private LongHashSet clanMembers;
+	/**
+	 * The clan channel whose members are tracked in {@link #clanMembers}. Only accessed on the client thread.
+	 */
+	private ClanChannel trackedClanChannel;
+	/**
+	 * The members of a friends chat that was just joined, collected until the next game tick and then checked as one
+	 * roster. Null while no friends chat is being joined. Only accessed on the client thread.
+	 */
+	private List<String> joiningFriendsChatRoster;
+	/**
+	 * The menu entries of recent right-click targets, keyed by the raw target. Only accessed on the client thread.
+	 */
+	private final Map<String, MenuTarget> menuTargets = new LinkedHashMap<String, MenuTarget>(MENU_TARGET_CACHE_SIZE, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MenuTarget> eldest)
+		{
+			return size() > MENU_TARGET_CACHE_SIZE;
+		}
+	};
+	/**
+	 * Set when the alert color changes, so the client thread rebuilds the cached menu targets.
+	 */
+	private volatile boolean menuTargetsStale;
+	private LookupScheduler playerCheckQueue;
+	/**
+	 * The lookups of further game modes for players already being looked up, sent before any new player.
+	 */
+	private final Queue<PlayerCheck> followUpChecks = new ConcurrentLinkedQueue<>();
+	/**
+	 * Players another client is looking up, queued again every {@link #SHARED_WAIT_INTERVAL_MS} to pick up its result.
+	 * Only accessed on the worker thread.
+	 */
+	private final List<PlayerCheck> awaitingSharedLookups = new ArrayList<>();
+	/**
+	 * The lookups waiting to be sent again after a network failure, a 429 or a 5xx.
+	 */
+	private final LookupRetryQueue retryQueue = new LookupRetryQueue();
 
 	// --- API Throttling Components ---
 	private ScheduledExecutorService executor;
-
+	// Only accessed on the worker thread
+	private long lastQueueExpiryMillis;
+	private long lastShedReportMillis;
+	private long reportedShedCount;
+	private long lastMetricsLogMillis;
+	private long lastCrawlMillis;
+	private long lastFilterSaveMillis;
+	private long lastSharedOpenMillis;
+	private long lastSharedWaitMillis;
+	private volatile boolean crawlInFlight;
+	private volatile AlertSettings alertSettings;
+	// --- Lookup pipeline: OkHttp threads fetch, the evaluate stage parses and evaluates, the render stage builds alerts ---
+	private volatile PipelineStage evaluateStage;
+	private volatile PipelineStage renderStage;
+	private volatile AlertDispatcher alertDispatcher;
+	@Getter(AccessLevel.PACKAGE)
+	private AdaptiveRateLimiter rateLimiter;
+	@Getter(AccessLevel.PACKAGE)
+	private CircuitBreaker circuitBreaker;
+	@Getter(AccessLevel.PACKAGE)
+	private LookupDispatcher lookupDispatcher;
+	@Getter(AccessLevel.PACKAGE)
+	private HiscoresWatchMetrics metrics;
 
 	@Inject
 	private Client client;
@@ -161,6 +452,24 @@ public class HiscoresWatchPlugin extends Plugin
 	@Inject
 	private HiscoresWatchConfig config;
 
+	@Inject
+	private OverlayManager overlayManager;
+
+	@Inject
+	private HiscoresWatchMetricsOverlay metricsOverlay;
+
+	@Inject
+	private NotablePlayerOverlay notablePlayerOverlay;
+
+	@Inject
+	private ClientToolbar clientToolbar;
+
+	/**
+	 * The side panel listing the notable players of the session, null while the plugin is stopped.
+	 */
+	private volatile NotablePlayersPanel notablePlayersPanel;
+	private NavigationButton navigationButton;
+
 	@Provides
 	HiscoresWatchConfig provideConfig(ConfigManager configManager)
 	{
@@ -170,19 +479,22 @@ public class HiscoresWatchPlugin extends Plugin
 	@Override
 	protected void startUp() throws Exception
 	{
-		// Initialize collections here to align with the plugin lifecycle
-		clanMembers = new HashSet<>();
-		playerCheckQueue = new ConcurrentLinkedDeque<>();
-
-		checkedPlayers = CacheBuilder.newBuilder()
-				.expireAfterWrite(5, TimeUnit.MINUTES)
+		resetLookupState();
+		ignoreList.loadMenuEntries();
+		startLookupPipeline();
+		overlayManager.add(metricsOverlay);
+		if (config.highlightNotablePlayers())
+		{
+			overlayManager.add(notablePlayerOverlay);
+		}
+		notablePlayersPanel = new NotablePlayersPanel();
+		navigationButton = NavigationButton.builder()
+				.tooltip("Hiscores Watch")
+				.icon(ImageUtil.loadImageResource(getClass(), "panel_icon.png"))
+				.priority(7)
+				.panel(notablePlayersPanel)
 				.build();
-		// Initialize the ignore list on startup
-		updateIgnoredPlayers();
-
-		// --- Start the API Throttling Worker ---
-		executor = Executors.newSingleThreadScheduledExecutor();
-		executor.scheduleAtFixedRate(this::processQueue, 2000, API_REQUEST_DELAY_MS, TimeUnit.MILLISECONDS);
+		clientToolbar.addNavigation(navigationButton);
 
 		log.info("Hiscores Watch started!");
 		clientThread.invoke(() -> client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "Hiscores Watch has started.", null));
@@ -191,391 +503,2131 @@ public class HiscoresWatchPlugin extends Plugin
 	@Override
 	protected void shutDown() throws Exception
 	{
+		overlayManager.remove(metricsOverlay);
+		overlayManager.remove(notablePlayerOverlay);
+		notablePlayerOverlay.clear();
+		clientToolbar.removeNavigation(navigationButton);
+		navigationButton = null;
+		notablePlayersPanel = null;
+		stopLookupPipeline();
+
+		log.info("Hiscores Watch stopped!");
+		clientThread.invoke(() -> client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "Hiscores Watch has stopped.", null));
+		if (snapshotCache != null)
+		{
+			snapshotCache.invalidateAll();
+			snapshotCache = null;
+		}
+		ignoreList = null;
+		menuTargetsStale = true;
+	}
+
+	/**
+	 * Starts the worker, the lookup pipeline and the files kept between sessions. Kept separate from
+	 * {@link #startUp()} so that the replay harness can run the whole lookup path without a client.
+	 */
+	void startLookupPipeline()
+	{
+		// --- Start the API Throttling Worker ---
+		rateLimiter = new AdaptiveRateLimiter(INITIAL_REQUESTS_PER_SECOND, MIN_REQUESTS_PER_SECOND, MAX_REQUESTS_PER_SECOND, REQUEST_BURST);
+		circuitBreaker = new CircuitBreaker();
+		lookupDispatcher = new LookupDispatcher(okHttpClient, LOOKUP_TIMEOUT_MS, config.maxConcurrentLookups(), this::scheduleQueueProcessing);
+		evaluateStage = new PipelineStage("evaluate", EVALUATE_THREADS, EVALUATE_QUEUE_CAPACITY);
+		renderStage = new PipelineStage("render", 1, RENDER_QUEUE_CAPACITY);
+		alertDispatcher = new AlertDispatcher();
+		executor = Executors.newSingleThreadScheduledExecutor();
+		executor.execute(this::claimDataDirectory);
+		executor.execute(this::openSnapshotStore);
+		executor.execute(this::openPlayerHistory);
+		executor.execute(this::openTopRankIndex);
+		executor.execute(this::openUnremarkableFilter);
+		executor.scheduleAtFixedRate(this::processQueue, 2000, WORKER_TICK_MS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Stops everything started by {@link #startLookupPipeline()}, saving and closing the files kept between sessions
+	 * once the worker and the pipeline stages have finished the tasks they were running.
+	 */
+	void stopLookupPipeline()
+	{
+		final ScheduledExecutorService worker = executor;
+		final PipelineStage evaluator = evaluateStage;
+		final PipelineStage renderer = renderStage;
+
 		// --- Stop the API Throttling Worker ---
 		if (executor != null)
 		{
 			executor.shutdown();
 			executor = null;
 		}
-		playerCheckQueue.clear();
-		clanMembers.clear();
-
-		log.info("Hiscores Watch stopped!");
-		clientThread.invoke(() -> client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "Hiscores Watch has stopped.", null));
-		if (checkedPlayers != null)
+		if (lookupDispatcher != null)
+		{
+			lookupDispatcher.cancelAll();
+			lookupDispatcher = null;
+		}
+		if (evaluateStage != null)
+		{
+			evaluateStage.shutdown();
+			evaluateStage = null;
+		}
+		if (renderStage != null)
+		{
+			renderStage.shutdown();
+			renderStage = null;
+		}
+		awaitTermination(worker, evaluator, renderer);
+		alertDispatcher = null;
+		if (snapshotStore != null)
+		{
+			snapshotStore.close();
+			snapshotStore = null;
+		}
+		if (playerHistory != null)
 		{
-			checkedPlayers.invalidateAll();
-			checkedPlayers = null;
+			playerHistory.close();
+			playerHistory = null;
 		}
-		if (ignoredPlayers != null)
+		topRankIndex = null;
+		crawlInFlight = false;
+		if (sharedSegment != null)
 		{
-			ignoredPlayers.clear();
-			ignoredPlayers = null;
+			sharedSegment.close();
+			sharedSegment = null;
 		}
+		lastSharedOpenMillis = 0;
+		if (unremarkableFilter != null)
+		{
+			saveUnremarkableFilter(unremarkableFilter);
+			unremarkableFilter = null;
+		}
+		if (dataDirectoryLock != null)
+		{
+			dataDirectoryLock.release();
+			dataDirectoryLock = null;
+		}
+		playerCheckQueue.clear();
+		followUpChecks.clear();
+		retryQueue.clear();
+		awaitingSharedLookups.clear();
+		clanMembers.clear();
+		trackedClanChannel = null;
+		joiningFriendsChatRoster = null;
 	}
 
-	@Subscribe
-	public void onConfigChanged(ConfigChanged event)
+	/**
+	 * Waits up to {@link #SHUTDOWN_TIMEOUT_MS} in total for the worker and the pipeline stages to finish the tasks left
+	 * after they were shut down, so that none of them writes to a file once it is closed.
+	 */
+	private static void awaitTermination(ScheduledExecutorService worker, PipelineStage... stages)
 	{
-		if (event.getGroup().equals(CONFIG_GROUP))
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+		try
 		{
-			if (event.getKey().equals(IGNORE_LIST_KEY))
+			boolean terminated = worker == null || worker.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			for (PipelineStage stage : stages)
 			{
-				updateIgnoredPlayers();
-				log.debug("Hiscores Watch ignore list has been updated.");
+				terminated &= stage == null || stage.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+			}
+
+			if (!terminated)
+			{
+				log.warn("The lookup pipeline did not stop within {}ms, closing its files anyway", SHUTDOWN_TIMEOUT_MS);
 			}
 		}
+		catch (InterruptedException e)
+		{
+			log.warn("Interrupted while stopping the lookup pipeline, closing its files anyway");
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private void updateIgnoredPlayers()
+	/**
+	 * Opens or closes the shared lookup segment to follow the config. A failed segment is closed and opened again
+	 * after {@link #SHARED_RETRY_INTERVAL_MS}, the client looks players up standalone in the meantime.
+	 */
+	private void updateSharedSegment(long now)
 	{
-		this.ignoredPlayers = getIgnoredPlayerListFromString(config.ignoreList());
-	}
+		final SharedLookupSegment shared = sharedSegment;
+		if (shared != null)
+		{
+			if (!shared.isFailed() && shareLookups)
+			{
+				return;
+			}
 
-	@Subscribe
-	public void onPlayerSpawned(PlayerSpawned event)
-	{
-		if (!config.checkNearbyPlayers())
+			sharedSegment = null;
+			shared.close();
+			// Turning sharing back on opens the segment straight away, a failed segment waits for the retry interval
+			lastSharedOpenMillis = shareLookups ? now : 0;
+		}
+
+		if (!shareLookups || now - lastSharedOpenMillis < SHARED_RETRY_INTERVAL_MS)
 		{
 			return;
 		}
 
-		Player player = event.getPlayer();
-		if (player == client.getLocalPlayer())
+		lastSharedOpenMillis = now;
+		try
 		{
-			return;
+			sharedSegment = SharedLookupSegment.open(new File(dataDirectory, SHARED_SEGMENT_FILE));
+			log.debug("Sharing lookups with the other clients on this computer");
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to open the shared lookup segment, looking players up standalone", e);
 		}
-		checkPlayer(player.getName(), DetectionSource.NEARBY);
 	}
 
-	@Subscribe
-	public void onFriendsChatMemberJoined(FriendsChatMemberJoined event)
+	/**
+	 * Claims a directory for the files this client keeps between sessions, so that clients running side by side never
+	 * write the same file, whether or not they share lookups. Only the shared segment, which every access locks, stays
+	 * in the data directory for all of them. Without a claimed directory, nothing is kept between sessions.
+	 */
+	private void claimDataDirectory()
 	{
-		if (!config.checkFriendsChat())
+		try
 		{
-			return;
+			dataDirectoryLock = DataDirectoryLock.acquire(dataDirectory);
 		}
-
-		String playerName = event.getMember().getName();
-		if (client.getLocalPlayer() != null && playerName.equals(client.getLocalPlayer().getName()))
+		catch (IOException e)
 		{
-			return;
+			log.warn("Unable to claim a data directory, nothing will be kept between sessions", e);
 		}
-		checkPlayer(playerName, DetectionSource.FRIENDS_CHAT);
 	}
 
-	@Subscribe
-	public void onClanChannelChanged(ClanChannelChanged event)
+	/**
+	 * @return The file in the directory claimed by this client, or null if no directory was claimed.
+	 */
+	private File clientFile(String name)
 	{
-		if (!config.checkClanChat())
+		final DataDirectoryLock claim = dataDirectoryLock;
+		return claim == null ? null : new File(claim.getDirectory(), name);
+	}
+
+	/**
+	 * Opens the on-disk snapshot store, falling back to in-memory caching if it cannot be opened.
+	 */
+	private void openSnapshotStore()
+	{
+		final File storeFile = clientFile(SNAPSHOT_STORE_FILE);
+		if (storeFile == null)
 		{
 			return;
 		}
 
-		ClanChannel clanChannel = event.getClanChannel();
-		if (clanChannel == null)
+		try
 		{
-			clanMembers.clear();
-			return;
+			snapshotStore = PersistentSnapshotStore.open(storeFile);
+			log.debug("Opened hiscores store with {} players", snapshotStore.size());
 		}
-
-		// Get the current members from the event
-		Set<String> currentMembers = clanChannel.getMembers().stream()
-				.map(member -> Text.toJagexName(member.getName()))
-				.collect(Collectors.toSet());
-
-		// Use set operations to find who is new
-		Set<String> newMembers = new HashSet<>(currentMembers);
-		newMembers.removeAll(clanMembers);
-
-		// Check the new members
-		for (String newMemberName : newMembers)
+		catch (IOException e)
 		{
-			checkPlayer(newMemberName, DetectionSource.CLAN_CHAT);
+			log.warn("Unable to open the hiscores store, lookups will not be persisted", e);
 		}
-
-		// Update the tracked list for the next event
-		clanMembers.clear();
-		clanMembers.addAll(currentMembers);
 	}
 
-	@Subscribe
-	public void onMenuEntryAdded(MenuEntryAdded event)
+	/**
+	 * Opens the on-disk player history, without which players are not compared with when they were last seen.
+	 */
+	private void openPlayerHistory()
 	{
-		// We only care about right-clicking on other players
-		int type = event.getType();
-		if (type >= MenuAction.PLAYER_FIRST_OPTION.getId() && type <= MenuAction.PLAYER_EIGHTH_OPTION.getId())
+		final File historyFile = clientFile(PLAYER_HISTORY_FILE);
+		if (historyFile == null)
 		{
-			final String targetName = Text.toJagexName(event.getTarget());
-			final boolean isIgnored = ignoredPlayers.contains(targetName.toLowerCase());
+			return;
+		}
 
-			// Add the "Ignore" or "Un-ignore" menu entry
-			client.createMenuEntry(-1)
-					.setOption(isIgnored ? "Un-ignore" : "Ignore")
-					.setTarget(ColorUtil.wrapWithColorTag(targetName, config.chatColor()))
-					.setType(MenuAction.RUNELITE)
-					.onClick(e -> togglePlayerIgnore(targetName, isIgnored));
+		try
+		{
+			playerHistory = PlayerHistoryLog.open(historyFile);
+			log.debug("Opened player history with {} players", playerHistory.size());
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to open the player history, gains since last seen will not be tracked", e);
 		}
 	}
 
 	/**
-	 * Adds a player to the lookup queue if they are not ignored or recently checked.
-	 * FC/CC members are prioritized by being added to the front of the queue.
-	 *
-	 * @param playerName The name of the player to check.
-	 * @param source     The source from which the player was detected.
+	 * Loads the top rank index saved by a previous session, starting an empty one if it cannot be read.
 	 */
-	private void checkPlayer(String playerName, DetectionSource source)
+	private void openTopRankIndex()
 	{
-		if (playerName == null)
+		final File indexFile = clientFile(TOP_RANK_INDEX_FILE);
+		if (indexFile == null)
 		{
+			topRankIndex = new TopRankIndex();
 			return;
 		}
 
-		String sanitizedName = Text.toJagexName(playerName);
-		if (ignoredPlayers.contains(sanitizedName.toLowerCase()))
+		try
 		{
-			return;
+			topRankIndex = TopRankIndex.load(indexFile);
+			log.debug("Loaded top rank index with {} players", topRankIndex.size());
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to load the top rank index, it will be rebuilt", e);
+			topRankIndex = new TopRankIndex();
 		}
+	}
 
-		// Check if we've already processed this player recently
-		if (checkedPlayers.getIfPresent(sanitizedName) != null)
+	private void saveTopRankIndex(TopRankIndex index)
+	{
+		final File indexFile = clientFile(TOP_RANK_INDEX_FILE);
+		if (indexFile == null)
 		{
 			return;
 		}
-		// Add to cache immediately to prevent duplicate queue entries
-		checkedPlayers.put(sanitizedName, true);
-
-		PlayerCheck playerCheck = new PlayerCheck(sanitizedName, source);
 
-		// Prioritize social notifications over nearby players by asking the source
-		if (source.isPriority())
+		try
 		{
-			playerCheckQueue.addFirst(playerCheck);
+			index.save(indexFile);
 		}
-		else
+		catch (IOException e)
 		{
-			playerCheckQueue.addLast(playerCheck);
+			log.warn("Unable to save the top rank index", e);
 		}
 	}
 
 	/**
-	 * Processes one player from the queue, called by the scheduled executor.
+	 * Loads the unremarkable player filter saved by a previous session, rebuilding it if the alert settings were made
+	 * more lenient since. Runs on the worker after the snapshot store has been opened.
 	 */
-	private void processQueue()
+	private void openUnremarkableFilter()
 	{
-		PlayerCheck playerCheck = playerCheckQueue.poll();
-		if (playerCheck != null)
+		final long now = System.currentTimeMillis();
+		final AlertSettings settings = alertSettings;
+		final File filterFile = clientFile(UNREMARKABLE_FILTER_FILE);
+		UnremarkableFilter filter;
+		try
 		{
-			fetchHiscores(playerCheck.getPlayerName(), playerCheck.getSource());
+			filter = filterFile == null
+					? new UnremarkableFilter(settings.rules, settings.gameModes, now)
+					: UnremarkableFilter.load(filterFile, settings.rules, settings.gameModes, now);
 		}
-	}
-
-	private void fetchHiscores(String playerName, DetectionSource source)
-	{
-		log.debug("Attempting to fetch hiscores for: {}", playerName);
-
-		HttpUrl url = HttpUrl.parse(HISCORES_API_URL + playerName);
-		if (url == null)
+		catch (IOException e)
 		{
-			log.error("Failed to create a valid URL for player: {}", playerName);
-			return;
+			log.warn("Unable to load the unremarkable player filter, it will be rebuilt", e);
+			filter = new UnremarkableFilter(settings.rules, settings.gameModes, now);
 		}
 
-		Request request = new Request.Builder().url(url).build();
-
-		okHttpClient.newCall(request).enqueue(new Callback()
+		if (!filter.updateSettings(settings.rules, settings.gameModes, now))
 		{
-			@Override
-			public void onFailure(Call call, IOException e)
-			{
+			rebuildUnremarkableFilter(filter);
+		}
+		log.debug("Loaded unremarkable player filter with {} players", filter.size());
+		unremarkableFilter = filter;
+	}
+
+	/**
+	 * Refills a cleared filter from the lookups still held on disk, evaluated under the current settings.
+	 * Only players found in no game mode but the main one, whose lookup checked every enabled mode that could have
+	 * found them elsewhere, can be judged from their stored main hiscores.
+	 */
+	private void rebuildUnremarkableFilter(UnremarkableFilter filter)
+	{
+		final long now = System.currentTimeMillis();
+		final AlertSettings settings = alertSettings;
+		int requiredModes = 0;
+		for (GameMode mode : GameMode.VALUES)
+		{
+			if (mode.getParent() == GameMode.NORMAL && (settings.gameModes & mode.bit()) != 0)
+			{
+				requiredModes |= mode.bit();
+			}
+		}
+
+		final PersistentSnapshotStore store = snapshotStore;
+		if (store != null)
+		{
+			final HiscoresSnapshot snapshot = new HiscoresSnapshot();
+			for (long key : store.freshKeys())
+			{
+				final SnapshotCache.Status status = store.read(key, snapshot);
+				if (status == SnapshotCache.Status.NOT_FOUND)
+				{
+					filter.add(key, now);
+				}
+				else if (status == SnapshotCache.Status.FOUND
+						&& store.foundModes(key) == GameMode.NORMAL.bit()
+						&& (requiredModes & ~store.checkedModes(key)) == 0
+						&& isUnremarkable(snapshot, settings.rules))
+				{
+					filter.add(key, now);
+				}
+			}
+		}
+		log.debug("Rebuilt the unremarkable player filter with {} players", filter.size());
+	}
+
+	private void saveUnremarkableFilter(UnremarkableFilter filter)
+	{
+		final File filterFile = clientFile(UNREMARKABLE_FILTER_FILE);
+		if (filterFile == null)
+		{
+			return;
+		}
+
+		try
+		{
+			filter.saveIfDirty(filterFile);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to save the unremarkable player filter", e);
+		}
+	}
+
+	/**
+	 * Remembers a player whose lookup found nothing notable, so they are not looked up again for a while.
+	 */
+	private void rememberUnremarkable(long key)
+	{
+		final UnremarkableFilter filter = unremarkableFilter;
+		final AlertSettings settings = alertSettings;
+		if (filter != null && filter.holdsFor(settings.rules, settings.gameModes))
+		{
+			filter.add(key, System.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * Initializes the per-session lookup collections. Kept separate from {@link #startUp()} so that
+	 * the benchmarks can exercise the lookup path without starting the worker.
+	 */
+	void resetLookupState()
+	{
+		// Initialize collections here to align with the plugin lifecycle
+		clanMembers = new LongHashSet();
+		playerCheckQueue = new LookupScheduler(this::onPlayerCheckShed);
+
+		snapshotCache = new SnapshotCache(SNAPSHOT_CACHE_SIZE);
+		updateHiscoresBaseUrl();
+		updateAlertSettings();
+		shareLookups = config.shareLookups();
+		// Initialize the ignore list on startup, players ignored from the menu are loaded by startUp()
+		ignoreList = new IgnoreListStore(configManager, CONFIG_GROUP, IGNORE_LIST_KEY);
+		ignoreList.setTypedNames(config.ignoreList());
+		registerMetrics();
+	}
+
+	/**
+	 * Creates the metrics registry and its gauges, which read the lookup components whenever the metrics are shown.
+	 */
+	private void registerMetrics()
+	{
+		metrics = new HiscoresWatchMetrics();
+		for (DetectionSource source : DetectionSource.values())
+		{
+			metrics.gauge("Queued " + source.name().toLowerCase().replace('_', ' '), () -> playerCheckQueue.size(source));
+		}
+		metrics.gauge("Shed", () -> Arrays.stream(DetectionSource.values()).mapToLong(playerCheckQueue::getShedCount).sum());
+		metrics.gauge("In flight", () ->
+		{
+			LookupDispatcher dispatcher = lookupDispatcher;
+			return dispatcher == null ? 0 : dispatcher.getInFlightCount();
+		});
+		metrics.gauge("Rate limit/min", () ->
+		{
+			AdaptiveRateLimiter limiter = rateLimiter;
+			return limiter == null ? 0 : Math.round(limiter.getRate() * 60);
+		});
+		metrics.gauge("Awaiting retry", retryQueue::size);
+		metrics.gauge("Circuit trips", () ->
+		{
+			CircuitBreaker breaker = circuitBreaker;
+			return breaker == null ? 0 : breaker.getTripCount();
+		});
+		metrics.gauge("Cached players", () ->
+		{
+			SnapshotCache cache = snapshotCache;
+			return cache == null ? 0 : cache.size();
+		});
+		metrics.gauge("Cache evictions", () ->
+		{
+			SnapshotCache cache = snapshotCache;
+			return cache == null ? 0 : cache.getEvictionCount();
+		});
+		metrics.gauge("Indexed players", () ->
+		{
+			TopRankIndex index = topRankIndex;
+			return index == null ? 0 : index.size();
+		});
+		metrics.gauge("History players", () ->
+		{
+			PlayerHistoryLog history = playerHistory;
+			return history == null ? 0 : history.size();
+		});
+		metrics.stage(() -> evaluateStage);
+		metrics.stage(() -> renderStage);
+		metrics.gauge("Alerts buffered", () ->
+		{
+			AlertDispatcher dispatcher = alertDispatcher;
+			return dispatcher == null ? 0 : dispatcher.getBufferedCount();
+		});
+		metrics.gauge("Alerts dropped", () ->
+		{
+			AlertDispatcher dispatcher = alertDispatcher;
+			return dispatcher == null ? 0 : dispatcher.getDroppedCount();
+		});
+		metrics.gauge("Filtered players", () ->
+		{
+			UnremarkableFilter filter = unremarkableFilter;
+			return filter == null ? 0 : filter.size();
+		});
+		metrics.gauge("Filter FP/10k", () ->
+		{
+			UnremarkableFilter filter = unremarkableFilter;
+			return filter == null ? 0 : Math.round(filter.estimateFalsePositiveRate() * 10_000);
+		});
+	}
+
+	/**
+	 * Logs every metric, so they can be reviewed without the overlay.
+	 */
+	private void logMetrics(long nowMillis)
+	{
+		if (!log.isDebugEnabled())
+		{
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("Hiscores Watch metrics:");
+		for (HiscoresWatchMetrics.Line line : metrics.describe(nowMillis))
+		{
+			sb.append("\n  ").append(line.getLabel()).append(": ").append(line.getValue());
+		}
+		log.debug(sb.toString());
+	}
+
+	@Subscribe
+	public void onConfigChanged(ConfigChanged event)
+	{
+		if (event.getGroup().equals(CONFIG_GROUP))
+		{
+			IgnoreListStore ignored = ignoreList;
+			if (ignored != null && ignored.onConfigChanged(event.getKey(), event.getNewValue()))
+			{
+				log.debug("Hiscores Watch ignore list has been updated.");
+			}
+			else if (event.getKey().equals(CHAT_COLOR_KEY))
+			{
+				updateAlertSettings();
+				menuTargetsStale = true;
+			}
+			else if (event.getKey().equals(GAINS_XP_THRESHOLD_KEY))
+			{
+				updateAlertSettings();
+			}
+			else if (event.getKey().equals(HISCORES_BASE_URL_KEY))
+			{
+				updateHiscoresBaseUrl();
+			}
+			else if (event.getKey().equals(HIGHLIGHT_NOTABLE_PLAYERS_KEY))
+			{
+				if (config.highlightNotablePlayers())
+				{
+					overlayManager.add(notablePlayerOverlay);
+				}
+				else
+				{
+					overlayManager.remove(notablePlayerOverlay);
+				}
+			}
+			else if (event.getKey().equals(SHARE_LOOKUPS_KEY))
+			{
+				// The worker opens or closes the shared segment on its next tick
+				shareLookups = config.shareLookups();
+			}
+			else if (event.getKey().equals(MAX_CONCURRENT_LOOKUPS_KEY) && lookupDispatcher != null)
+			{
+				lookupDispatcher.setMaxInFlight(config.maxConcurrentLookups());
+			}
+			else if (ALERT_THRESHOLD_KEYS.contains(event.getKey()))
+			{
+				updateAlertSettings();
+				// Re-evaluate off the calling thread, the cache can hold thousands of snapshots
+				ScheduledExecutorService worker = executor;
+				if (worker != null)
+				{
+					worker.execute(this::reevaluateCachedSnapshots);
+					worker.execute(this::updateUnremarkableFilter);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates every cached snapshot against the current settings and alerts for players that have become notable,
+	 * without any network calls.
+	 */
+	private void reevaluateCachedSnapshots()
+	{
+		final SnapshotCache cache = snapshotCache;
+		if (cache == null)
+		{
+			return;
+		}
+
+		final IgnoreListStore ignored = ignoreList;
+		final AlertRules rules = alertSettings.rules;
+		cache.forEachFound(entry ->
+		{
+			if (entry.isAlerted() || (ignored != null && ignored.isIgnored(NameCodec.encode(entry.getPlayerName()))))
+			{
+				return;
+			}
+
+			List<PlayerAchievement> achievements = findAchievements(entry.getPlayerName(), entry.getSnapshots(), rules);
+			if (!achievements.isEmpty())
+			{
+				entry.markAlerted();
+				sendCollapsedAlert(entry.getPlayerName(), achievements, null, entry.getSource(), -1);
+			}
+		});
+	}
+
+	/**
+	 * Rebuilds the unremarkable player filter if the alert settings became more lenient than its verdicts allow, and
+	 * lets the players it skipped be looked up again when next seen.
+	 */
+	private void updateUnremarkableFilter()
+	{
+		final UnremarkableFilter filter = unremarkableFilter;
+		final AlertSettings settings = alertSettings;
+		if (filter != null && !filter.updateSettings(settings.rules, settings.gameModes, System.currentTimeMillis()))
+		{
+			rebuildUnremarkableFilter(filter);
+			final SnapshotCache cache = snapshotCache;
+			if (cache != null)
+			{
+				cache.invalidateFiltered();
+			}
+		}
+	}
+
+	private void updateAlertSettings()
+	{
+		int gameModes = GameMode.NORMAL.bit();
+		if (config.checkIronmanHiscores())
+		{
+			gameModes |= GameMode.IRONMAN.bit() | GameMode.HARDCORE_IRONMAN.bit() | GameMode.ULTIMATE_IRONMAN.bit();
+		}
+		if (config.checkDeadmanHiscores())
+		{
+			gameModes |= GameMode.DEADMAN.bit();
+		}
+		if (config.checkSeasonalHiscores())
+		{
+			gameModes |= GameMode.SEASONAL.bit();
+		}
+		alertSettings = new AlertSettings(AlertRules.compile(config), config.chatColor(), config.gainsXpThreshold(), gameModes);
+	}
+
+	private void updateHiscoresBaseUrl()
+	{
+		HttpUrl url = HttpUrl.parse(config.hiscoresBaseUrl());
+		if (url == null)
+		{
+			log.warn("Invalid hiscores URL {}, using the default", config.hiscoresBaseUrl());
+			url = HttpUrl.get(DEFAULT_HISCORES_BASE_URL);
+		}
+		hiscoresBaseUrl = url;
+	}
+
+	@Subscribe
+	public void onPlayerSpawned(PlayerSpawned event)
+	{
+		if (!config.checkNearbyPlayers())
+		{
+			return;
+		}
+
+		Player player = event.getPlayer();
+		if (player == client.getLocalPlayer())
+		{
+			return;
+		}
+		checkPlayer(player.getName(), DetectionSource.NEARBY, player);
+	}
+
+	@Subscribe
+	public void onPlayerDespawned(PlayerDespawned event)
+	{
+		String playerName = event.getPlayer().getName();
+		if (playerName == null)
+		{
+			return;
+		}
+
+		// The player has left, so their queued lookup would be wasted
+		cancelNearbyCheck(playerCheckQueue.cancelNearby(lookupKey(Text.toJagexName(playerName))));
+	}
+
+	@Subscribe
+	public void onGameStateChanged(GameStateChanged event)
+	{
+		GameState gameState = event.getGameState();
+		if (gameState == GameState.HOPPING || gameState == GameState.LOGIN_SCREEN)
+		{
+			// Everyone in the scene is about to despawn
+			playerCheckQueue.cancelAllNearby().forEach(this::cancelNearbyCheck);
+		}
+	}
+
+	@Subscribe
+	public void onGameTick(GameTick event)
+	{
+		// Every member already in a joined friends chat has been announced by now
+		if (joiningFriendsChatRoster != null)
+		{
+			bootstrapRoster(joiningFriendsChatRoster, DetectionSource.FRIENDS_CHAT_ROSTER);
+			joiningFriendsChatRoster = null;
+		}
+
+		// Keep the nearby lookups ordered by how far away the players currently are
+		playerCheckQueue.updateDistances(playerCheck -> distanceTo(playerCheck.getPlayer()));
+
+		final AlertDispatcher dispatcher = alertDispatcher;
+		if (dispatcher != null)
+		{
+			dispatcher.flush(System.currentTimeMillis(), this::sendAlertLine);
+		}
+	}
+
+	/**
+	 * Sends one line of buffered alerts to chat, the player's own message if they are alone in the line and a ranked
+	 * summary otherwise. Runs on the client thread.
+	 */
+	private void sendAlertLine(DetectionSource source, List<AlertDispatcher.Alert> alerts, int overflow)
+	{
+		final Color color = alertSettings.chatColor;
+		final String message = alerts.size() == 1
+				? alerts.get(0).getMessage()
+				: buildSummaryMessage(alerts, source, color);
+		client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", overflow > 0 ? message + buildOverflowMessage(overflow, color) : message, null);
+
+		final long now = System.currentTimeMillis();
+		for (int i = 0; i < alerts.size(); i++)
+		{
+			final long enqueuedAtMillis = alerts.get(i).getEnqueuedAtMillis();
+			if (enqueuedAtMillis >= 0)
+			{
+				metrics.recordAlert(enqueuedAtMillis, now);
+			}
+		}
+	}
+
+	/**
+	 * Forgets a check shed from the queue, so the player can be queued again the next time they are seen.
+	 */
+	private void onPlayerCheckShed(PlayerCheck playerCheck)
+	{
+		SnapshotCache cache = snapshotCache;
+		if (cache != null)
+		{
+			cache.invalidatePending(playerCheck.getKey());
+		}
+	}
+
+	/**
+	 * Logs how many lookups were shed since the last report, if any.
+	 */
+	private void reportShedPlayerChecks()
+	{
+		long nearby = playerCheckQueue.getShedCount(DetectionSource.NEARBY);
+		long friendsChat = playerCheckQueue.getShedCount(DetectionSource.FRIENDS_CHAT);
+		long clanChat = playerCheckQueue.getShedCount(DetectionSource.CLAN_CHAT);
+		long rosters = playerCheckQueue.getShedCount(DetectionSource.FRIENDS_CHAT_ROSTER) + playerCheckQueue.getShedCount(DetectionSource.CLAN_ROSTER);
+		long total = nearby + friendsChat + clanChat + rosters;
+		if (total != reportedShedCount)
+		{
+			log.info("Shed {} queued hiscores lookups in the last minute, {} in total (nearby {}, friends chat {}, clan {}, rosters {})",
+					total - reportedShedCount, total, nearby, friendsChat, clanChat, rosters);
+			reportedShedCount = total;
+		}
+	}
+
+	/**
+	 * Forgets a cancelled nearby check, so the player is queued again if they come back.
+	 */
+	private void cancelNearbyCheck(PlayerCheck playerCheck)
+	{
+		if (playerCheck != null)
+		{
+			log.debug("Cancelled lookup for despawned player: {}", playerCheck.getPlayerName());
+			snapshotCache.invalidatePending(playerCheck.getKey());
+		}
+	}
+
+	/**
+	 * @return The distance in tiles between the local player and the given player, or
+	 * {@link LookupScheduler#UNKNOWN_DISTANCE} if it cannot be determined.
+	 */
+	private int distanceTo(Player player)
+	{
+		Player localPlayer = client.getLocalPlayer();
+		if (player == null || localPlayer == null)
+		{
+			return LookupScheduler.UNKNOWN_DISTANCE;
+		}
+
+		WorldPoint location = player.getWorldLocation();
+		WorldPoint localLocation = localPlayer.getWorldLocation();
+		if (location == null || localLocation == null)
+		{
+			return LookupScheduler.UNKNOWN_DISTANCE;
+		}
+		return Math.min(location.distanceTo(localLocation), LookupScheduler.UNKNOWN_DISTANCE);
+	}
+
+	@Subscribe
+	public void onFriendsChatMemberJoined(FriendsChatMemberJoined event)
+	{
+		if (!config.checkFriendsChat())
+		{
+			return;
+		}
+
+		String playerName = event.getMember().getName();
+		if (client.getLocalPlayer() != null && playerName.equals(client.getLocalPlayer().getName()))
+		{
+			return;
+		}
+
+		if (joiningFriendsChatRoster != null)
+		{
+			joiningFriendsChatRoster.add(playerName);
+		}
+		else
+		{
+			checkPlayer(playerName, DetectionSource.FRIENDS_CHAT);
+		}
+	}
+
+	@Subscribe
+	public void onFriendsChatChanged(FriendsChatChanged event)
+	{
+		// The members already in the channel are announced as joins right after, collect them as its roster
+		joiningFriendsChatRoster = event.isJoined() && config.checkFriendsChat() ? new ArrayList<>() : null;
+	}
+
+	@Subscribe
+	public void onClanChannelChanged(ClanChannelChanged event)
+	{
+		if (!config.checkClanChat())
+		{
+			return;
+		}
+
+		updateClanMembers(event.getClanChannel());
+	}
+
+	@Subscribe
+	public void onClanMemberJoined(ClanMemberJoined event)
+	{
+		if (!config.checkClanChat())
+		{
+			return;
+		}
+
+		clanMemberJoined(event.getClanChannel(), event.getClanMember());
+	}
+
+	@Subscribe
+	public void onClanMemberLeft(ClanMemberLeft event)
+	{
+		clanMemberLeft(event.getClanChannel(), event.getClanMember());
+	}
+
+	/**
+	 * Diffs the members of a new clan channel against the tracked members and checks anyone new as its roster.
+	 * This walks the whole roster, so it only runs when the channel itself changes; joins and leaves
+	 * within the channel are tracked one member at a time by {@link #clanMemberJoined} and {@link #clanMemberLeft}.
+	 *
+	 * @param clanChannel The current clan channel, or null if the player left it.
+	 */
+	void updateClanMembers(ClanChannel clanChannel)
+	{
+		trackedClanChannel = clanChannel;
+		if (clanChannel == null)
+		{
+			clanMembers.clear();
+			return;
+		}
+
+		// Build the new roster while checking anyone who was not in the previous one
+		final LongHashSet previousMembers = clanMembers;
+		final List<ClanChannelMember> members = clanChannel.getMembers();
+		final List<String> newMembers = new ArrayList<>(members.size());
+		clanMembers = new LongHashSet(members.size());
+		for (ClanChannelMember member : members)
+		{
+			String memberName = Text.toJagexName(member.getName());
+			long key = lookupKey(memberName);
+			if (key != NameCodec.INVALID && clanMembers.add(key) && !previousMembers.contains(key))
+			{
+				newMembers.add(memberName);
+			}
+		}
+		bootstrapRoster(newMembers, DetectionSource.CLAN_ROSTER);
+	}
+
+	/**
+	 * Tracks a member who joined the tracked clan channel and checks them.
+	 */
+	void clanMemberJoined(ClanChannel clanChannel, ClanChannelMember member)
+	{
+		if (clanChannel != trackedClanChannel)
+		{
+			return;
+		}
+
+		String memberName = Text.toJagexName(member.getName());
+		long key = lookupKey(memberName);
+		if (key != NameCodec.INVALID && clanMembers.add(key))
+		{
+			checkPlayer(memberName, DetectionSource.CLAN_CHAT);
+		}
+	}
+
+	/**
+	 * Stops tracking a member who left the tracked clan channel, so they are checked again if they rejoin.
+	 */
+	void clanMemberLeft(ClanChannel clanChannel, ClanChannelMember member)
+	{
+		if (clanChannel == trackedClanChannel)
+		{
+			clanMembers.remove(lookupKey(Text.toJagexName(member.getName())));
+		}
+	}
+
+	@Subscribe
+	public void onMenuEntryAdded(MenuEntryAdded event)
+	{
+		// We only care about right-clicking on other players
+		int type = event.getType();
+		if (type >= MenuAction.PLAYER_FIRST_OPTION.getId() && type <= MenuAction.PLAYER_EIGHTH_OPTION.getId())
+		{
+			final MenuTarget target = menuTarget(event.getTarget());
+			if (target.key == NameCodec.INVALID || ignoreList == null)
+			{
+				return;
+			}
+
+			// Add the "Ignore" or "Un-ignore" menu entry
+			client.createMenuEntry(-1)
+					.setOption(ignoreList.isIgnored(target.key) ? "Un-ignore" : "Ignore")
+					.setTarget(target.coloredName)
+					.setType(MenuAction.RUNELITE)
+					.onClick(target.onClick);
+		}
+	}
+
+	/**
+	 * @return The cached menu entry parts of a right-click target, created on first use.
+	 */
+	private MenuTarget menuTarget(String rawTarget)
+	{
+		if (menuTargetsStale)
+		{
+			menuTargetsStale = false;
+			menuTargets.clear();
+		}
+
+		MenuTarget target = menuTargets.get(rawTarget);
+		if (target == null)
+		{
+			// The target is the coloured name followed by the combat level, which names cannot contain
+			String targetName = Text.removeTags(rawTarget);
+			int levelStart = targetName.indexOf('(');
+			if (levelStart >= 0)
+			{
+				targetName = targetName.substring(0, levelStart);
+			}
+
+			final String playerName = Text.toJagexName(targetName);
+			final long key = lookupKey(playerName);
+			target = new MenuTarget(key, ColorUtil.wrapWithColorTag(playerName, config.chatColor()), e -> togglePlayerIgnore(playerName, key));
+			menuTargets.put(rawTarget, target);
+		}
+		return target;
+	}
+
+	/**
+	 * Adds a player to the lookup queue if they are not ignored or recently checked.
+	 * FC/CC members are prioritized by being added to the front of the queue.
+	 *
+	 * @param playerName The name of the player to check.
+	 * @param source     The source from which the player was detected.
+	 */
+	void checkPlayer(String playerName, DetectionSource source)
+	{
+		checkPlayer(playerName, source, null);
+	}
+
+	/**
+	 * Adds a player to the lookup queue, tracking the spawned player of a nearby check for distance ordering.
+	 *
+	 * @param playerName The name of the player to check.
+	 * @param source     The source from which the player was detected.
+	 * @param player     The spawned player, or null if the player was not detected nearby.
+	 */
+	private void checkPlayer(String playerName, DetectionSource source, Player player)
+	{
+		final PlayerCheck playerCheck = admitPlayer(playerName, source, player);
+		if (playerCheck == null)
+		{
+			return;
+		}
+
+		// Serve players looked up in a previous session from disk instead of the API
+		final PersistentSnapshotStore store = snapshotStore;
+		final ScheduledExecutorService worker = executor;
+		if (store != null && worker != null && store.isFresh(playerCheck.getKey()))
+		{
+			worker.execute(() -> loadStoredSnapshot(store, playerCheck));
+			return;
+		}
+
+		enqueue(playerCheck);
+	}
+
+	/**
+	 * Checks the members already in a chat channel when it is joined, in a single pass on the worker. They did not just
+	 * join, so they are not worth the budget of live joins: players with stored hiscores are served from disk as usual,
+	 * players seen in an earlier session are alerted right away from their last seen hiscores, and every lookup,
+	 * including the ones revalidating those stale hiscores, waits in the background lane of the queue.
+	 *
+	 * @param playerNames The names of the members.
+	 * @param source      {@link DetectionSource#FRIENDS_CHAT_ROSTER} or {@link DetectionSource#CLAN_ROSTER}.
+	 */
+	void bootstrapRoster(List<String> playerNames, DetectionSource source)
+	{
+		final List<PlayerCheck> playerChecks = new ArrayList<>(playerNames.size());
+		for (String playerName : playerNames)
+		{
+			final PlayerCheck playerCheck = admitPlayer(playerName, source, null);
+			if (playerCheck != null)
+			{
+				playerChecks.add(playerCheck);
+			}
+		}
+
+		final ScheduledExecutorService worker = executor;
+		if (playerChecks.isEmpty())
+		{
+			return;
+		}
+		if (worker == null)
+		{
+			playerChecks.forEach(this::enqueue);
+			return;
+		}
+
+		log.debug("Checking a roster of {} {} members", playerChecks.size(), source);
+		worker.execute(() ->
+		{
+			final PersistentSnapshotStore store = snapshotStore;
+			final PlayerHistoryLog history = playerHistory;
+			final long now = System.currentTimeMillis();
+			for (PlayerCheck playerCheck : playerChecks)
+			{
+				if (store != null && store.isFresh(playerCheck.getKey()))
+				{
+					loadStoredSnapshot(store, playerCheck);
+					continue;
+				}
+
+				if (history != null)
+				{
+					alertFromLastSeen(history, playerCheck, now);
+				}
+				enqueue(playerCheck);
+			}
+		});
+	}
+
+	/**
+	 * Alerts for a roster member from the hiscores they had when last seen, if those were notable, while their lookup
+	 * waits to revalidate them. Runs on the worker thread.
+	 */
+	private void alertFromLastSeen(PlayerHistoryLog history, PlayerCheck playerCheck, long now)
+	{
+		final PlayerHistoryLog.Observation lastSeen = history.lastObservation(playerCheck.getKey());
+		if (lastSeen == null)
+		{
+			return;
+		}
+
+		final HiscoresSnapshot snapshot = new HiscoresSnapshot();
+		lastSeen.copyTo(snapshot);
+		final List<PlayerAchievement> achievements = findAchievements(playerCheck.getPlayerName(), snapshot, alertSettings.rules);
+		metrics.recordStaleHit();
+		if (!achievements.isEmpty())
+		{
+			playerCheck.setStaleAlerted(true);
+			sendCollapsedAlert(playerCheck.getPlayerName(), achievements, "as of " + formatElapsed(now - lastSeen.getObservedAtMillis()) + " ago",
+					playerCheck.getSource(), playerCheck.getEnqueuedAtMillis());
+		}
+	}
+
+	/**
+	 * Runs the checks every detected player goes through before they need a lookup: the ignore list, the cache, the top
+	 * rank index and the unremarkable player filter.
+	 *
+	 * @return The check to look the player up with, or null if they do not need a lookup.
+	 */
+	private PlayerCheck admitPlayer(String playerName, DetectionSource source, Player player)
+	{
+		if (playerName == null)
+		{
+			return null;
+		}
+
+		String sanitizedName = Text.toJagexName(playerName);
+		final long key = lookupKey(sanitizedName);
+		if (key == NameCodec.INVALID || ignoreList.isIgnored(key))
+		{
+			return null;
+		}
+
+		// Check if we've already processed this player recently, and add them to the cache
+		// immediately to prevent duplicate queue entries
+		if (!snapshotCache.markPending(key, sanitizedName, source))
+		{
+			metrics.recordCacheHit();
+			final NotablePlayersPanel panel = notablePlayersPanel;
+			if (panel != null)
+			{
+				// Only moves the player's row if they are listed
+				panel.seen(key, System.currentTimeMillis());
+			}
+			// A nearby player or roster member who joins a chat channel live should not wait behind the others
+			if (source.isPriority())
+			{
+				playerCheckQueue.promote(key, source, System.currentTimeMillis());
+			}
+			return null;
+		}
+		metrics.recordCacheMiss();
+
+		final long now = System.currentTimeMillis();
+
+		// Top-ranked players are recognised from the index without a lookup
+		final TopRankIndex index = topRankIndex;
+		final PipelineStage evaluator = evaluateStage;
+		if (index != null && evaluator != null && config.buildTopRankIndex())
+		{
+			final HiscoresSnapshot indexed = index.match(key, alertSettings.rules, now);
+			if (indexed != null)
+			{
+				metrics.recordIndexHit();
+				final SnapshotCache cache = snapshotCache;
+				evaluator.execute(() -> processHiscoresData(cache.putFound(key, sanitizedName, source, indexed), null, now, false));
+				return null;
+			}
+		}
+
+		// Players who were recently found unremarkable are not looked up again until they age out of the filter
+		final UnremarkableFilter filter = unremarkableFilter;
+		if (filter != null && filter.mightContain(key))
+		{
+			metrics.recordFilterHit();
+			snapshotCache.putFiltered(key, sanitizedName, source);
+			return null;
+		}
+
+		PlayerCheck playerCheck = new PlayerCheck(sanitizedName, key, source, player, now);
+		if (player != null)
+		{
+			playerCheck.setDistance(distanceTo(player));
+		}
+		return playerCheck;
+	}
+
+	private void enqueue(PlayerCheck playerCheck)
+	{
+		// The scheduler prioritizes social notifications over nearby players by asking the source
+		playerCheckQueue.add(playerCheck);
+	}
+
+	/**
+	 * Evaluates a player from the on-disk store as if they had just been looked up, runs on the worker thread.
+	 * Players whose record expired in the meantime are queued for a normal lookup.
+	 */
+	private void loadStoredSnapshot(PersistentSnapshotStore store, PlayerCheck playerCheck)
+	{
+		final SnapshotCache cache = snapshotCache;
+		if (cache == null)
+		{
+			return;
+		}
+
+		final long key = playerCheck.getKey();
+		final HiscoresSnapshot snapshot = new HiscoresSnapshot();
+		final SnapshotCache.Status status = store.read(key, snapshot);
+		if (status == null)
+		{
+			enqueue(playerCheck);
+			return;
+		}
+
+		log.debug("Loaded stored hiscores for: {}", playerCheck.getPlayerName());
+		metrics.recordStoreHit();
+		serveKnownLookup(cache, playerCheck, status, snapshot, store.checkedModes(key) & ~store.foundModes(key));
+	}
+
+	/**
+	 * Serves a player from the lookups shared by the other clients, or claims their lookup for this client. Players
+	 * another client is looking up wait in {@link #awaitingSharedLookups}. Runs on the worker thread.
+	 *
+	 * @return True if the player was served or is waiting for another client, false if this client should look them up.
+	 */
+	private boolean serveSharedLookup(SharedLookupSegment shared, PlayerCheck playerCheck)
+	{
+		final SnapshotCache cache = snapshotCache;
+		final long key = playerCheck.getKey();
+		final HiscoresSnapshot snapshot = new HiscoresSnapshot();
+		final SnapshotCache.Status status = shared.claim(key, snapshot);
+		if (status == null || cache == null)
+		{
+			return false;
+		}
+		if (status == SnapshotCache.Status.PENDING)
+		{
+			awaitingSharedLookups.add(playerCheck);
+			return true;
+		}
+
+		log.debug("Loaded shared hiscores for: {}", playerCheck.getPlayerName());
+		metrics.recordSharedHit();
+		serveKnownLookup(cache, playerCheck, status, snapshot, shared.knownAbsentModes(key));
+		return true;
+	}
+
+	/**
+	 * Evaluates a player from an earlier lookup of their main hiscores as if they had just been looked up. Other game
+	 * modes are not kept, the modes the player was found in or that were not checked are looked up.
+	 *
+	 * @param status           Either {@link SnapshotCache.Status#FOUND} or {@link SnapshotCache.Status#NOT_FOUND}.
+	 * @param knownAbsentModes The {@link GameMode#bit() bits} of the game modes the earlier lookup did not find the player in.
+	 */
+	private void serveKnownLookup(SnapshotCache cache, PlayerCheck playerCheck, SnapshotCache.Status status, HiscoresSnapshot snapshot, int knownAbsentModes)
+	{
+		final long key = playerCheck.getKey();
+		if (status == SnapshotCache.Status.FOUND)
+		{
+			final ModeLookup lookup = new ModeLookup(alertSettings.gameModes, knownAbsentModes, true);
+			playerCheck.setLookup(lookup);
+			if (!enqueueFollowUps(playerCheck, lookup.complete(GameMode.NORMAL, snapshot)))
+			{
+				final SnapshotCache.Entry entry = cache.putFound(key, playerCheck.getPlayerName(), playerCheck.getSource(), snapshot);
+				if (playerCheck.isStaleAlerted())
+				{
+					entry.markAlerted();
+				}
+				evaluate(entry, playerCheck.getEnqueuedAtMillis(), true);
+			}
+		}
+		else
+		{
+			cache.putNotFound(key, playerCheck.getPlayerName(), playerCheck.getSource());
+			rememberUnremarkable(key);
+		}
+	}
+
+	/**
+	 * Runs {@link #processQueue()} on the worker as soon as possible, used when an in-flight lookup completes.
+	 */
+	private void scheduleQueueProcessing()
+	{
+		ScheduledExecutorService worker = executor;
+		if (worker != null && !worker.isShutdown())
+		{
+			worker.execute(this::processQueue);
+		}
+	}
+
+	/**
+	 * Sends as many queued lookups as there are free in-flight slots and the rate limiter allows.
+	 * Only ever runs on the worker thread, either from the periodic tick or when a slot frees up.
+	 */
+	private void processQueue()
+	{
+		LookupDispatcher dispatcher = lookupDispatcher;
+		if (dispatcher == null)
+		{
+			return;
+		}
+
+		final long now = System.currentTimeMillis();
+		if (now - lastQueueExpiryMillis >= QUEUE_EXPIRY_INTERVAL_MS)
+		{
+			lastQueueExpiryMillis = now;
+			playerCheckQueue.expire(now);
+		}
+		if (now - lastShedReportMillis >= SHED_REPORT_INTERVAL_MS)
+		{
+			lastShedReportMillis = now;
+			reportShedPlayerChecks();
+		}
+		if (now - lastMetricsLogMillis >= METRICS_LOG_INTERVAL_MS)
+		{
+			lastMetricsLogMillis = now;
+			logMetrics(now);
+		}
+		final UnremarkableFilter filter = unremarkableFilter;
+		if (filter != null && now - lastFilterSaveMillis >= FILTER_SAVE_INTERVAL_MS)
+		{
+			lastFilterSaveMillis = now;
+			filter.rotateIfDue(now);
+			saveUnremarkableFilter(filter);
+		}
+		updateSharedSegment(now);
+		if (!awaitingSharedLookups.isEmpty() && now - lastSharedWaitMillis >= SHARED_WAIT_INTERVAL_MS)
+		{
+			lastSharedWaitMillis = now;
+			awaitingSharedLookups.forEach(playerCheckQueue::add);
+			awaitingSharedLookups.clear();
+		}
+
+		// Finish the game modes of players already being looked up before starting on new players
+		while (!followUpChecks.isEmpty() && dispatcher.hasFreeSlot() && tryAcquireRequest())
+		{
+			PlayerCheck followUp = followUpChecks.poll();
+			if (followUp == null)
+			{
+				releaseRequest();
+				return;
+			}
+			fetchHiscores(dispatcher, followUp);
+		}
+
+		// Retries are of players already being looked up as well
+		while (retryQueue.hasDue(now) && dispatcher.hasFreeSlot() && tryAcquireRequest())
+		{
+			PlayerCheck retry = retryQueue.pollDue(now);
+			if (retry == null)
+			{
+				releaseRequest();
+				return;
+			}
+			fetchHiscores(dispatcher, retry);
+		}
+
+		final SharedLookupSegment shared = sharedSegment;
+		while (!playerCheckQueue.isEmpty() && dispatcher.hasFreeSlot() && tryAcquireRequest())
+		{
+			PlayerCheck playerCheck = playerCheckQueue.poll(now);
+			if (playerCheck == null)
+			{
+				releaseRequest();
+				return;
+			}
+			if (shared != null && serveSharedLookup(shared, playerCheck))
+			{
+				releaseRequest();
+				continue;
+			}
+			fetchHiscores(dispatcher, playerCheck);
+		}
+
+		crawlTopRanks(dispatcher, now);
+	}
+
+	/**
+	 * Takes a request from the circuit breaker, this client's rate limiter and, while sharing, the budget shared with
+	 * the other clients.
+	 */
+	private boolean tryAcquireRequest()
+	{
+		if (!circuitBreaker.tryAcquire())
+		{
+			return false;
+		}
+		if (!rateLimiter.tryAcquire())
+		{
+			circuitBreaker.release();
+			return false;
+		}
+
+		final SharedLookupSegment shared = sharedSegment;
+		if (shared != null && !shared.tryAcquireRequest(rateLimiter.getRate(), REQUEST_BURST))
+		{
+			rateLimiter.release();
+			circuitBreaker.release();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns a request taken by {@link #tryAcquireRequest()} that was not made.
+	 */
+	private void releaseRequest()
+	{
+		circuitBreaker.release();
+		rateLimiter.release();
+		final SharedLookupSegment shared = sharedSegment;
+		if (shared != null)
+		{
+			shared.releaseRequest(REQUEST_BURST);
+		}
+	}
+
+	/**
+	 * Fetches the next ranking page of the top rank index, at most once every {@link #CRAWL_INTERVAL_MS} and only
+	 * when no lookups are waiting, so the index only ever uses request budget that would otherwise go unused.
+	 */
+	private void crawlTopRanks(LookupDispatcher dispatcher, long now)
+	{
+		final TopRankIndex index = topRankIndex;
+		if (index == null || crawlInFlight || now - lastCrawlMillis < CRAWL_INTERVAL_MS || !playerCheckQueue.isEmpty()
+				|| !followUpChecks.isEmpty() || !dispatcher.hasFreeSlot() || !config.buildTopRankIndex())
+		{
+			return;
+		}
+
+		final TopRankIndex.Page page = index.nextPage(alertSettings.rules, now);
+		if (page == null || !tryAcquireRequest())
+		{
+			return;
+		}
+
+		final HttpUrl url = hiscoresBaseUrl.resolve(page.query());
+		if (url == null)
+		{
+			releaseRequest();
+			index.skipCategory(page, now);
+			return;
+		}
+
+		lastCrawlMillis = now;
+		crawlInFlight = true;
+		log.debug("Fetching ranking page {} of {}", page.getNumber(), page.getHiscore().getName());
+
+		final HiscoresWatchMetrics crawlMetrics = metrics;
+		crawlMetrics.recordRequest(now);
+		dispatcher.dispatch(new Request.Builder().url(url).build(), new Callback()
+		{
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				crawlInFlight = false;
+				log.debug("Network failure when fetching ranking page of {}: {}", page.getHiscore().getName(), e.getMessage());
+				if (!call.isCanceled())
+				{
+					onNetworkFailure(crawlMetrics);
+				}
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) throws IOException
+			{
+				try (ResponseBody responseBody = response.body())
+				{
+					final int code = onHiscoresResponse(crawlMetrics, response);
+					if (code == 429 || code >= 500)
+					{
+						// The same page is retried once the rate limiter allows
+						return;
+					}
+
+					final long completedAt = System.currentTimeMillis();
+					if (!response.isSuccessful() || responseBody == null)
+					{
+						log.debug("Unsuccessful ranking page response for {}. Code: {}", page.getHiscore().getName(), code);
+						index.skipCategory(page, completedAt);
+						return;
+					}
+
+					RankingPageParser.Rows rows = new RankingPageParser.Rows(TopRankIndex.PAGE_SIZE);
+					RankingPageParser.parse(responseBody.string(), rows);
+					if (index.onPageCrawled(page, rows, completedAt))
+					{
+						ScheduledExecutorService worker = executor;
+						if (worker != null)
+						{
+							worker.execute(() -> saveTopRankIndex(index));
+						}
+					}
+				}
+				finally
+				{
+					crawlInFlight = false;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Records a request that got no response in the metrics, the rate limiter and the circuit breaker.
+	 */
+	private void onNetworkFailure(HiscoresWatchMetrics failureMetrics)
+	{
+		failureMetrics.recordNetworkFailure();
+		rateLimiter.onThrottled(-1, "a network failure");
+		circuitBreaker.onFailure();
+	}
+
+	/**
+	 * Records a hiscores response in the metrics and feeds its status and latency to the rate limiter, and whether
+	 * the server is up to the circuit breaker.
+	 *
+	 * @return The status code of the response.
+	 */
+	private int onHiscoresResponse(HiscoresWatchMetrics responseMetrics, Response response)
+	{
+		final int code = response.code();
+		final long latencyMillis = response.receivedResponseAtMillis() - response.sentRequestAtMillis();
+		responseMetrics.recordResponse(code, latencyMillis);
+		if (code >= 500)
+		{
+			circuitBreaker.onFailure();
+		}
+		else
+		{
+			// Even a 429 shows the server is up, throttling is left to the rate limiter
+			circuitBreaker.onSuccess();
+		}
+
+		if (code == 429 || code >= 500)
+		{
+			final long now = System.currentTimeMillis();
+			long retryAfterMillis = AdaptiveRateLimiter.parseRetryAfterMillis(response.header("Retry-After"), now);
+			rateLimiter.onThrottled(retryAfterMillis, "HTTP " + code);
+
+			// The hiscores throttle by address, so every client on the machine backs off together
+			final SharedLookupSegment shared = sharedSegment;
+			if (shared != null)
+			{
+				shared.pause(now + rateLimiter.getBackoffRemainingMillis());
+			}
+		}
+		else
+		{
+			rateLimiter.onSuccess(latencyMillis);
+		}
+		return code;
+	}
+
+	/**
+	 * Looks up the hiscores of a player in the game mode of the check. A lookup of the main hiscores starts the
+	 * lookup across game modes that the other modes continue.
+	 */
+	private void fetchHiscores(LookupDispatcher dispatcher, PlayerCheck playerCheck)
+	{
+		final String playerName = playerCheck.getPlayerName();
+		final long key = playerCheck.getKey();
+		final DetectionSource source = playerCheck.getSource();
+		final GameMode mode = playerCheck.getMode();
+		if (playerCheck.getLookup() == null)
+		{
+			playerCheck.setLookup(new ModeLookup(alertSettings.gameModes, 0, false));
+		}
+
+		log.debug("Attempting to fetch {} hiscores for: {} (rate limiter {}, {} in flight)", mode, playerName, rateLimiter, dispatcher.getInFlightCount());
+
+		HttpUrl url = hiscoresBaseUrl.newBuilder()
+				.setPathSegment(0, "m=" + mode.getEndpoint())
+				.addPathSegment("index_lite.ws")
+				.addQueryParameter("player", playerName)
+				.build();
+
+		Request request = new Request.Builder().url(url).build();
+		final SnapshotCache cache = snapshotCache;
+		final PersistentSnapshotStore store = snapshotStore;
+		final SharedLookupSegment shared = sharedSegment;
+		final HiscoresWatchMetrics lookupMetrics = metrics;
+		final PipelineStage evaluator = evaluateStage;
+
+		final long now = System.currentTimeMillis();
+		lookupMetrics.recordRequest(now);
+		lookupMetrics.recordFetchWait(now - playerCheck.getEnqueuedAtMillis());
+		dispatcher.dispatch(request, new Callback()
+		{
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
 				log.warn("Network failure when fetching hiscores for {}: {}", playerName, e.getMessage());
+				if (!call.isCanceled())
+				{
+					onNetworkFailure(lookupMetrics);
+					retryLookup(playerCheck, cache);
+				}
 			}
 
 			@Override
 			public void onResponse(Call call, Response response) throws IOException
 			{
-				if (!response.isSuccessful())
-				{
-					log.debug("Unsuccessful hiscores response for {}. Code: {}", playerName, response.code());
-					return;
-				}
-
 				try (ResponseBody responseBody = response.body())
 				{
-					if (responseBody != null)
+					final int code = onHiscoresResponse(lookupMetrics, response);
+					if (code == 429 || code >= 500)
+					{
+						// Sent again once the rate limiter and the circuit breaker allow
+						retryLookup(playerCheck, cache);
+						return;
+					}
+
+					if (code == 404 && mode != GameMode.NORMAL)
+					{
+						// The player is not on the hiscores of this game mode
+						evaluator.execute(() -> onModeLookedUp(playerCheck, null));
+						return;
+					}
+
+					if (code == 404)
+					{
+						// The player is not on the hiscores
+						cache.putNotFound(key, playerName, source);
+						rememberUnremarkable(key);
+						if (store != null)
+						{
+							store.write(key, SnapshotCache.Status.NOT_FOUND, null, GameMode.NORMAL.bit(), 0);
+						}
+						if (shared != null)
+						{
+							shared.publish(key, SnapshotCache.Status.NOT_FOUND, null, GameMode.NORMAL.bit(), 0);
+						}
+						return;
+					}
+
+					if (!response.isSuccessful() || responseBody == null)
 					{
-						// Delegate the core logic to a dedicated method
-						processHiscoresData(playerName, responseBody.string(), source);
+						log.debug("Unsuccessful {} hiscores response for {}. Code: {}", mode, playerName, code);
+						onLookupFailed(playerCheck, cache);
+						return;
 					}
+
+					// Only read the body here, parsing and evaluating on the evaluate stage frees the OkHttp thread sooner.
+					// Draining into a buffer moves the segments already read instead of copying them into an array.
+					final Buffer body = new Buffer();
+					body.writeAll(responseBody.source());
+					evaluator.execute(() -> parseHiscores(body, playerCheck, cache, lookupMetrics));
 				}
 			}
 		});
 	}
 
 	/**
-	 * Parses the raw hiscores string and triggers an alert if notable achievements are found.
-	 *
-	 * @param playerName The name of the player.
-	 * @param hiscoresData The raw string data from the hiscores API.
-	 * @param source The source of the player detection.
+	 * Parses a hiscores response and records it in the lookup across game modes, runs on the evaluate stage.
 	 */
-	private void processHiscoresData(String playerName, String hiscoresData, DetectionSource source)
+	private void parseHiscores(Buffer body, PlayerCheck playerCheck, SnapshotCache cache, HiscoresWatchMetrics lookupMetrics)
 	{
+		final HiscoresSnapshot snapshot;
 		try
 		{
-			final String[] stats = hiscoresData.split("\n");
-			final int rankThreshold = config.rankThreshold();
-			final boolean alertFor200m = config.alertFor200mXp();
+			final long parseStart = System.nanoTime();
+			snapshot = HiscoresParser.parse(body);
+			lookupMetrics.recordParse(System.nanoTime() - parseStart);
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to parse hiscores for {}: {}", playerCheck.getPlayerName(), e.getMessage());
+			onLookupFailed(playerCheck, cache);
+			return;
+		}
+
+		onModeLookedUp(playerCheck, snapshot);
+	}
+
+	/**
+	 * Records the answer of one game mode, queueing the modes it leads to, and evaluates the player once every mode
+	 * has answered.
+	 *
+	 * @param snapshot The parsed hiscores, or null if the player is not on the hiscores of the mode.
+	 */
+	private void onModeLookedUp(PlayerCheck playerCheck, HiscoresSnapshot snapshot)
+	{
+		final ModeLookup lookup = playerCheck.getLookup();
+		enqueueFollowUps(playerCheck, lookup.complete(playerCheck.getMode(), snapshot));
+		finishLookup(playerCheck, lookup);
+	}
 
-			final Map<Hiscores, PlayerAchievement> achievementMap = new LinkedHashMap<>();
+	/**
+	 * Sends a lookup that failed transiently again after a delay, or fails it for good once it used all its retries.
+	 */
+	private void retryLookup(PlayerCheck playerCheck, SnapshotCache cache)
+	{
+		if (retryQueue.schedule(playerCheck, System.currentTimeMillis()))
+		{
+			log.debug("Retrying the {} lookup of {} ({} of {})", playerCheck.getMode(), playerCheck.getPlayerName(),
+					playerCheck.getRetries(), LookupRetryQueue.MAX_RETRIES);
+			metrics.recordRetry();
+			return;
+		}
+		onLookupFailed(playerCheck, cache);
+	}
 
-			for (Hiscores hiscore : Hiscores.values())
+	/**
+	 * Handles a lookup that failed for good. A failed main lookup is retried when the player is next seen, while a
+	 * failed lookup of another game mode only leaves that mode out of the alert.
+	 */
+	private void onLookupFailed(PlayerCheck playerCheck, SnapshotCache cache)
+	{
+		final ModeLookup lookup = playerCheck.getLookup();
+		if (playerCheck.getMode() == GameMode.NORMAL)
+		{
+			cache.putError(playerCheck.getKey(), playerCheck.getPlayerName(), playerCheck.getSource());
+			final SharedLookupSegment shared = sharedSegment;
+			if (shared != null)
 			{
-				int apiIndex = hiscore.getApiIndex();
-				if (stats.length <= apiIndex)
-				{
-					log.warn("Hiscores response for {} was too short. Stopping check at {}.", playerName, hiscore.getName());
-					break;
-				}
+				shared.release(playerCheck.getKey());
+			}
+			return;
+		}
 
-				String hiscoreLine = stats[apiIndex];
-				if (hiscoreLine.isEmpty() || !hiscoreLine.contains(","))
-				{
-					continue;
-				}
+		lookup.fail(playerCheck.getMode());
+		final PipelineStage evaluator = evaluateStage;
+		if (evaluator != null)
+		{
+			evaluator.execute(() -> finishLookup(playerCheck, lookup));
+		}
+	}
 
-				try
-				{
-					String[] hiscoreStats = hiscoreLine.split(",");
-					int rank = Integer.parseInt(hiscoreStats[0]);
-					int score = Integer.parseInt(hiscoreStats[1]);
+	/**
+	 * Queues the lookups of further game modes of a player, sent before any new player.
+	 *
+	 * @return True if any were queued.
+	 */
+	private boolean enqueueFollowUps(PlayerCheck playerCheck, List<GameMode> modes)
+	{
+		if (modes.isEmpty())
+		{
+			return false;
+		}
 
-					// Rank Check
-					if (rank > 0 && score > 0 && rank <= rankThreshold)
-					{
-						achievementMap.computeIfAbsent(hiscore, h -> new PlayerAchievement(h, rank, false));
-					}
+		for (GameMode mode : modes)
+		{
+			followUpChecks.add(playerCheck.forMode(mode, playerCheck.getLookup()));
+		}
+		scheduleQueueProcessing();
+		return true;
+	}
 
-					// 200M XP Check
-					if (alertFor200m && hiscore.isSkill() && hiscore != Hiscores.OVERALL && hiscoreStats.length > 2)
-					{
-						long xp = Long.parseLong(hiscoreStats[2]);
-						if (xp >= MAX_XP)
-						{
-							PlayerAchievement achievement = achievementMap.computeIfAbsent(hiscore, h -> new PlayerAchievement(h, -1, false));
-							achievement.setHas200mXp(true);
-						}
-					}
-				}
-				catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+	/**
+	 * Caches, stores and evaluates a player once every game mode of their lookup has answered.
+	 */
+	private void finishLookup(PlayerCheck playerCheck, ModeLookup lookup)
+	{
+		if (!lookup.claimFinish())
+		{
+			return;
+		}
+
+		final SnapshotCache cache = snapshotCache;
+		if (cache == null)
+		{
+			return;
+		}
+
+		final long key = playerCheck.getKey();
+		final HiscoresSnapshot[] snapshots = lookup.getSnapshots();
+		final PersistentSnapshotStore store = snapshotStore;
+		if (store != null && !lookup.isStored())
+		{
+			store.write(key, SnapshotCache.Status.FOUND, snapshots[GameMode.NORMAL.ordinal()], lookup.getCheckedModes(), lookup.getFoundModes());
+		}
+		final SharedLookupSegment shared = sharedSegment;
+		if (shared != null && !lookup.isStored())
+		{
+			shared.publish(key, SnapshotCache.Status.FOUND, snapshots[GameMode.NORMAL.ordinal()], lookup.getCheckedModes(), lookup.getFoundModes());
+		}
+
+		// Stored hiscores were recorded when they were looked up, only fresh ones are new observations
+		final PlayerHistoryLog history = playerHistory;
+		PlayerHistoryLog.Change change = null;
+		if (history != null && !lookup.isStored())
+		{
+			change = history.record(key, snapshots[GameMode.NORMAL.ordinal()], System.currentTimeMillis());
+		}
+		final SnapshotCache.Entry entry = cache.putFound(key, playerCheck.getPlayerName(), playerCheck.getSource(), snapshots);
+		if (playerCheck.isStaleAlerted())
+		{
+			entry.markAlerted();
+		}
+		processHiscoresData(entry, change, playerCheck.getEnqueuedAtMillis(), !lookup.isFailed());
+	}
+
+	/**
+	 * Hands a cached snapshot to the evaluate stage. Dropped if the pipeline has stopped.
+	 */
+	private void evaluate(SnapshotCache.Entry entry, long enqueuedAtMillis, boolean complete)
+	{
+		final PipelineStage evaluator = evaluateStage;
+		if (evaluator != null)
+		{
+			evaluator.execute(() -> processHiscoresData(entry, null, enqueuedAtMillis, complete));
+		}
+	}
+
+	/**
+	 * Evaluates the freshly cached hiscores of a player in every game mode and triggers a single alert if notable
+	 * achievements are found.
+	 *
+	 * @param entry The cache entry holding the player's parsed hiscores.
+	 * @param change How the player changed since they were last seen, or null if unknown.
+	 * @param enqueuedAtMillis When the player was queued, used to measure the alert latency.
+	 * @param complete Whether every game mode that was due answered, so a lack of achievements can be remembered.
+	 */
+	private void processHiscoresData(SnapshotCache.Entry entry, PlayerHistoryLog.Change change, long enqueuedAtMillis, boolean complete)
+	{
+		final String playerName = entry.getPlayerName();
+		try
+		{
+			final AlertSettings settings = alertSettings;
+			List<PlayerAchievement> achievements = findAchievements(playerName, entry.getSnapshots(), settings.rules);
+			final String gains = describeGains(change, settings.gainsXpThreshold);
+			if (entry.isAlerted())
+			{
+				// Already alerted from the stale hiscores of a roster member, the lookup only revalidated them
+				log.debug("Revalidated the hiscores of {}", playerName);
+			}
+			else if (!achievements.isEmpty() || gains != null)
+			{
+				// An alert for gains alone leaves the player to be alerted again if the rules make them notable
+				if (!achievements.isEmpty())
 				{
-					log.warn("Failed to parse line for {} in category {}: {}", playerName, hiscore.getName(), e.getMessage());
+					entry.markAlerted();
 				}
+				sendCollapsedAlert(playerName, achievements, gains, entry.getSource(), enqueuedAtMillis);
+			}
+			else if (complete && isComplete(entry.getSnapshots()))
+			{
+				rememberUnremarkable(lookupKey(playerName));
+			}
+		}
+		catch (Exception e)
+		{
+			log.error("Failed to process hiscores response for player {}: {}", playerName, e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Collects the notable achievements in a parsed hiscores response, sorted by impressiveness.
+	 *
+	 * @param playerName The name of the player, used for logging.
+	 * @param snapshot The parsed data from the hiscores API.
+	 * @param rules The compiled alert rules to evaluate the categories against.
+	 * @return The sorted achievements, empty if the player is not notable.
+	 */
+	static List<PlayerAchievement> findAchievements(String playerName, HiscoresSnapshot snapshot, AlertRules rules)
+	{
+		List<PlayerAchievement> achievements = new ArrayList<>();
+		collectAchievements(playerName, GameMode.NORMAL, snapshot, rules, true, achievements);
+		achievements.sort(ACHIEVEMENT_ORDER);
+		return achievements;
+	}
+
+	/**
+	 * Collects the notable achievements of a player across game modes, sorted by impressiveness.
+	 *
+	 * @param snapshots The parsed hiscores of every game mode, indexed by {@link GameMode#ordinal()}, null where the player was not found.
+	 * @return The sorted achievements, empty if the player is not notable in any game mode.
+	 */
+	static List<PlayerAchievement> findAchievements(String playerName, HiscoresSnapshot[] snapshots, AlertRules rules)
+	{
+		List<PlayerAchievement> achievements = new ArrayList<>();
+		for (GameMode mode : GameMode.VALUES)
+		{
+			final HiscoresSnapshot snapshot = snapshots[mode.ordinal()];
+			if (snapshot != null)
+			{
+				// The ironman hiscores repeat the main xp, so 200m XP is only reported for the modes with xp of their own
+				collectAchievements(playerName, mode, snapshot, rules, mode.isSeparateXp(), achievements);
+			}
+		}
+		achievements.sort(ACHIEVEMENT_ORDER);
+		return achievements;
+	}
+
+	/**
+	 * Evaluates every category of a snapshot in one pass, adding at most one achievement per category.
+	 */
+	private static void collectAchievements(String playerName, GameMode mode, HiscoresSnapshot snapshot, AlertRules rules, boolean checkMaxXp, List<PlayerAchievement> achievements)
+	{
+		for (int ordinal = 0; ordinal < HISCORES.length; ordinal++)
+		{
+			final Hiscores hiscore = HISCORES[ordinal];
+			if (!snapshot.isPresent(hiscore))
+			{
+				log.warn("Hiscores response for {} was too short. Stopping check at {}.", playerName, hiscore.getName());
+				break;
 			}
 
-			if (!achievementMap.isEmpty())
+			if (snapshot.isMalformed(hiscore))
 			{
-				List<PlayerAchievement> achievements = new ArrayList<>(achievementMap.values());
+				log.warn("Failed to parse line for {} in category {}", playerName, hiscore.getName());
+			}
 
-				achievements.sort(Comparator
-						.comparing((PlayerAchievement a) -> a.getHiscore() != Hiscores.OVERALL)
-						.thenComparing((PlayerAchievement a) -> a.getRank() == -1 && !a.isHas200mXp())
-						.thenComparingInt(PlayerAchievement::getRank)
-				);
+			if (!snapshot.isValid(hiscore))
+			{
+				continue;
+			}
 
-				sendCollapsedAlert(playerName, achievements, source);
+			final int rank = snapshot.getRank(hiscore);
+			final int score = snapshot.getScore(hiscore);
+			final boolean rankNotable = rules.isRankNotable(ordinal, rank, score);
+			final boolean scoreNotable = rules.isScoreNotable(ordinal, score);
+			final boolean has200mXp = checkMaxXp && rules.isMaxXpNotable(ordinal) && snapshot.hasXp(hiscore) && snapshot.getXp(hiscore) >= MAX_XP;
+			if (rankNotable || scoreNotable || has200mXp)
+			{
+				achievements.add(new PlayerAchievement(hiscore, rankNotable ? rank : -1, has200mXp, scoreNotable ? score : -1, mode));
 			}
 		}
-		catch (Exception e)
+	}
+
+	/**
+	 * Describes how much a player gained since they were last seen, for example "gained 1.2M XP and 5 levels in 3 days".
+	 *
+	 * @return The description, or null if the gains are below the threshold or the threshold is off.
+	 */
+	static String describeGains(PlayerHistoryLog.Change change, int gainsXpThreshold)
+	{
+		if (change == null || gainsXpThreshold <= 0)
 		{
-			log.error("Failed to process hiscores response for player {}: {}", playerName, e.getMessage(), e);
+			return null;
+		}
+
+		final long xpGained = change.getXpGained(Hiscores.OVERALL);
+		if (xpGained < gainsXpThreshold)
+		{
+			return null;
 		}
+
+		final int levelsGained = change.getScoreGained(Hiscores.OVERALL);
+		final String levels = levelsGained > 0 ? " and " + levelsGained + (levelsGained == 1 ? " level" : " levels") : "";
+		return "gained " + QuantityFormatter.quantityToStackSize(xpGained) + " XP" + levels + " in " + formatElapsed(change.getElapsedMillis());
 	}
 
-	private void sendCollapsedAlert(String playerName, List<PlayerAchievement> achievements, DetectionSource source)
+	static String formatElapsed(long millis)
 	{
-		// Convert the sorted list of objects to a list of display strings
-		List<String> achievementStrings = achievements.stream()
-				.map(PlayerAchievement::toDisplayString)
-				.collect(Collectors.toList());
+		final long minutes = Math.max(1, TimeUnit.MILLISECONDS.toMinutes(millis));
+		if (minutes < 60)
+		{
+			return minutes + (minutes == 1 ? " minute" : " minutes");
+		}
+		final long hours = minutes / 60;
+		if (hours < 24)
+		{
+			return hours + (hours == 1 ? " hour" : " hours");
+		}
+		final long days = hours / 24;
+		return days + (days == 1 ? " day" : " days");
+	}
 
-		int achievementCount = achievementStrings.size();
+	/**
+	 * @return True if the snapshot has every category and nothing in it notable under the given rules.
+	 */
+	private static boolean isUnremarkable(HiscoresSnapshot snapshot, AlertRules rules)
+	{
+		return isComplete(snapshot) && findAchievements("", snapshot, rules).isEmpty();
+	}
+
+	/**
+	 * @return True if every snapshot of the player is complete, see {@link #isComplete(HiscoresSnapshot)}.
+	 */
+	private static boolean isComplete(HiscoresSnapshot[] snapshots)
+	{
+		for (HiscoresSnapshot snapshot : snapshots)
+		{
+			if (!isComplete(snapshot))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return True if the snapshot has a well-formed line for every category, so a lack of achievements can be trusted.
+	 * A missing snapshot is a game mode the player is not in, which is complete.
+	 */
+	private static boolean isComplete(HiscoresSnapshot snapshot)
+	{
+		if (snapshot == null)
+		{
+			return true;
+		}
+
+		for (Hiscores hiscore : HISCORES)
+		{
+			if (!snapshot.isPresent(hiscore) || snapshot.isMalformed(hiscore))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
 
-		String logMessage = playerName + " " + source.getMessage() + String.join(", ", achievementStrings) + ".";
-		log.info("High-ranking player found! {}", logMessage);
+	/**
+	 * Builds the alert for a notable player on the render stage and buffers it for the next game tick.
+	 *
+	 * @param gains A description of what the player gained since last seen, listed after the achievements, or null.
+	 * @param enqueuedAtMillis When the player was queued, or -1 if the alert latency should not be recorded.
+	 */
+	private void sendCollapsedAlert(String playerName, List<PlayerAchievement> achievements, String gains, DetectionSource source, long enqueuedAtMillis)
+	{
+		final PipelineStage renderer = renderStage;
+		if (renderer == null)
+		{
+			return;
+		}
 
-		clientThread.invoke(() -> {
-			final Color alertColor = config.chatColor();
+		renderer.execute(() ->
+		{
+			List<String> achievementStrings = new ArrayList<>(toDisplayStrings(achievements));
+			if (gains != null)
+			{
+				achievementStrings.add(gains);
+			}
 
-			ChatMessageBuilder chatMessageBuilder = new ChatMessageBuilder();
-			chatMessageBuilder.append(alertColor, playerName)
-					.append(alertColor, " " + source.getMessage());
+			String logMessage = playerName + " " + source.getMessage() + String.join(", ", achievementStrings) + ".";
+			log.info("High-ranking player found! {}", logMessage);
 
-			if (achievementCount <= MAX_LISTED_ACHIEVEMENTS)
+			// Highlighted in the scene even if the chat budget drops the alert
+			final NotablePlayerOverlay highlights = notablePlayerOverlay;
+			if (highlights != null && !achievements.isEmpty())
 			{
-				// Simplified message joining logic
-				if (achievementCount > 1)
-				{
-					String mostAchievements = String.join(", ", achievementStrings.subList(0, achievementCount - 1));
-					chatMessageBuilder.append(alertColor, mostAchievements)
-							.append(alertColor, " and ")
-							.append(alertColor, achievementStrings.get(achievementCount - 1));
-				}
-				else
-				{
-					chatMessageBuilder.append(alertColor, achievementStrings.get(0));
-				}
+				highlights.offer(NameCodec.encode(playerName), achievements.get(0), achievements.size(), alertSettings.chatColor);
 			}
-			else
+			final NotablePlayersPanel panel = notablePlayersPanel;
+			if (panel != null && !achievements.isEmpty())
 			{
-				int moreCount = achievementCount - (MAX_LISTED_ACHIEVEMENTS - 1);
-				String listedAchievements = String.join(", ", achievementStrings.subList(0, MAX_LISTED_ACHIEVEMENTS - 1));
-				chatMessageBuilder.append(alertColor, listedAchievements)
-						.append(alertColor, ", ... and " + moreCount + " more");
+				panel.offer(NameCodec.encode(playerName), playerName, source, achievements, System.currentTimeMillis());
 			}
 
-			chatMessageBuilder.append(alertColor, ".");
-			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", chatMessageBuilder.build(), null);
+			// Sent with the other alerts of the same game tick, see onGameTick
+			final AlertDispatcher dispatcher = alertDispatcher;
+			if (dispatcher != null)
+			{
+				String message = buildAlertMessage(playerName, achievementStrings, source, alertSettings.chatColor);
+				dispatcher.offer(new AlertDispatcher.Alert(playerName, source, achievementStrings, message,
+						achievements.isEmpty() ? null : achievements.get(0), enqueuedAtMillis));
+			}
 		});
 	}
 
 	/**
-	 * A helper method to handle the logic for ignoring or un-ignoring a player.
+	 * Converts the sorted list of objects to a list of display strings.
+	 */
+	static List<String> toDisplayStrings(List<PlayerAchievement> achievements)
+	{
+		return achievements.stream()
+				.map(PlayerAchievement::toDisplayString)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Builds the collapsed chat message for a notable player.
 	 *
-	 * @param playerName The name of the player to toggle.
-	 * @param isIgnored  True if the player is currently on the ignore list.
+	 * @param playerName The name of the player.
+	 * @param achievementStrings The display strings of the sorted achievements.
+	 * @param source The source of the player detection.
+	 * @param alertColor The color of the message.
+	 * @return The formatted chat message.
 	 */
-	private void togglePlayerIgnore(String playerName, boolean isIgnored)
+	static String buildAlertMessage(String playerName, List<String> achievementStrings, DetectionSource source, Color alertColor)
 	{
-		Set<String> ignoreSet = getIgnoredPlayerListFromString(config.ignoreList());
+		int achievementCount = achievementStrings.size();
 
-		if (isIgnored)
+		ChatMessageBuilder chatMessageBuilder = new ChatMessageBuilder();
+		chatMessageBuilder.append(alertColor, playerName)
+				.append(alertColor, " " + source.getMessage());
+
+		if (achievementCount <= MAX_LISTED_ACHIEVEMENTS)
 		{
-			ignoreSet.remove(playerName.toLowerCase());
+			// Simplified message joining logic
+			if (achievementCount > 1)
+			{
+				String mostAchievements = String.join(", ", achievementStrings.subList(0, achievementCount - 1));
+				chatMessageBuilder.append(alertColor, mostAchievements)
+						.append(alertColor, " and ")
+						.append(alertColor, achievementStrings.get(achievementCount - 1));
+			}
+			else
+			{
+				chatMessageBuilder.append(alertColor, achievementStrings.get(0));
+			}
 		}
 		else
 		{
-			ignoreSet.add(playerName.toLowerCase());
+			int moreCount = achievementCount - (MAX_LISTED_ACHIEVEMENTS - 1);
+			String listedAchievements = String.join(", ", achievementStrings.subList(0, MAX_LISTED_ACHIEVEMENTS - 1));
+			chatMessageBuilder.append(alertColor, listedAchievements)
+					.append(alertColor, ", ... and " + moreCount + " more");
+		}
+
+		chatMessageBuilder.append(alertColor, ".");
+		return chatMessageBuilder.build();
+	}
+
+	/**
+	 * Builds one line for several notable players from the same source, listing each with their most impressive
+	 * achievement, for example "3 notable players are nearby: A (rank 5 in Overall), B (...) and C (...).".
+	 */
+	static String buildSummaryMessage(List<AlertDispatcher.Alert> alerts, DetectionSource source, Color alertColor)
+	{
+		final int playerCount = alerts.size();
+		final int listed = playerCount <= MAX_SUMMARIZED_PLAYERS ? playerCount : MAX_SUMMARIZED_PLAYERS - 1;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(playerCount).append(" notable players ").append(source.getSummaryMessage());
+		for (int i = 0; i < listed; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(i == playerCount - 1 ? " and " : ", ");
+			}
+			final AlertDispatcher.Alert alert = alerts.get(i);
+			sb.append(alert.getPlayerName()).append(" (").append(alert.getAchievementStrings().get(0)).append(')');
+		}
+		if (listed < playerCount)
+		{
+			sb.append(", ... and ").append(playerCount - listed).append(" more");
 		}
+		sb.append('.');
+
+		return new ChatMessageBuilder().append(alertColor, sb.toString()).build();
+	}
+
+	/**
+	 * @return The note appended to a line when alerts were dropped by the chat budgets since the last line.
+	 */
+	static String buildOverflowMessage(int overflow, Color alertColor)
+	{
+		return new ChatMessageBuilder()
+				.append(alertColor, " (" + overflow + (overflow == 1 ? " more alert" : " more alerts") + " not shown)")
+				.build();
+	}
 
-		// Save the updated list back to the config, which will trigger onConfigChanged
-		String newIgnoreList = String.join(",", ignoreSet);
-		configManager.setConfiguration(CONFIG_GROUP, IGNORE_LIST_KEY, newIgnoreList);
+	/**
+	 * @return The key used to identify a sanitized player name in the per-player collections,
+	 * or {@link NameCodec#INVALID} if it is not a valid player name.
+	 */
+	private static long lookupKey(String sanitizedName)
+	{
+		return NameCodec.encode(sanitizedName);
 	}
 
 	/**
-	 * Parses the comma-separated config string into a modifiable set of player names.
+	 * A helper method to handle the logic for ignoring or un-ignoring a player.
+	 * Whether the player is ignored is checked when the entry is clicked, as the cached entry outlives a single menu.
 	 *
-	 * @param ignoreListString The string from the config.
-	 * @return A modifiable set of lower-case player names.
+	 * @param playerName The name of the player to toggle.
+	 * @param key        The encoded name of the player.
 	 */
-	private Set<String> getIgnoredPlayerListFromString(String ignoreListString)
+	private void togglePlayerIgnore(String playerName, long key)
 	{
-		return new HashSet<>(Arrays.asList(ignoreListString.toLowerCase().split(",")))
-				.stream()
-				.map(String::trim)
-				.filter(name -> !name.isEmpty())
-				.collect(Collectors.toSet());
+		IgnoreListStore ignored = ignoreList;
+		if (ignored != null)
+		{
+			// Only the player's own entry is saved, which will trigger onConfigChanged
+			ignored.toggle(playerName, key);
+			notablePlayerOverlay.remove(key);
+		}
 	}
 }
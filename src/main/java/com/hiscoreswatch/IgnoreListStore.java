@@ -0,0 +1,193 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.client.config.ConfigManager;
+
+/**
+ * The players whose lookups and alerts are suppressed, indexed by {@link NameCodec} key.
+ * <p>
+ * Names typed into the Ignore List config item are parsed whenever that item changes. Players ignored from the
+ * right-click menu are stored under a config key of their own instead, so toggling a player only writes and re-reads
+ * that one key no matter how long the list is. Thread safe.
+ */
+class IgnoreListStore
+{
+	/**
+	 * The prefix of the config keys of players ignored from the menu, followed by their encoded name.
+	 */
+	static final String MENU_KEY_PREFIX = "ignoredPlayer.";
+
+	private final ConfigManager configManager;
+	private final String configGroup;
+	private final String typedListKey;
+
+	private final LongHashSet typed = new LongHashSet();
+	private final LongHashSet menu = new LongHashSet();
+
+	/**
+	 * @param configManager The config manager, only used when the menu entries are loaded or changed.
+	 * @param configGroup   The config group of the plugin.
+	 * @param typedListKey  The key of the comma-separated Ignore List config item.
+	 */
+	IgnoreListStore(ConfigManager configManager, String configGroup, String typedListKey)
+	{
+		this.configManager = configManager;
+		this.configGroup = configGroup;
+		this.typedListKey = typedListKey;
+	}
+
+	synchronized boolean isIgnored(long key)
+	{
+		return typed.contains(key) || menu.contains(key);
+	}
+
+	/**
+	 * Replaces the typed names with the contents of the Ignore List config item.
+	 */
+	synchronized void setTypedNames(String ignoreList)
+	{
+		typed.clear();
+		if (ignoreList == null)
+		{
+			return;
+		}
+
+		for (String name : ignoreList.split(","))
+		{
+			final long key = NameCodec.encode(name.trim());
+			if (key != NameCodec.INVALID)
+			{
+				typed.add(key);
+			}
+		}
+	}
+
+	/**
+	 * Loads the players ignored from the menu in previous sessions.
+	 */
+	void loadMenuEntries()
+	{
+		final String prefix = configGroup + "." + MENU_KEY_PREFIX;
+		final List<String> keys = configManager.getConfigurationKeys(prefix);
+		synchronized (this)
+		{
+			menu.clear();
+			for (String configKey : keys)
+			{
+				final long key = parseMenuKey(configKey.substring(configGroup.length() + 1));
+				if (key != NameCodec.INVALID)
+				{
+					menu.add(key);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ignores a player who is not ignored, or un-ignores a player who is, persisting only the affected entry.
+	 * Un-ignoring a typed name rewrites the Ignore List config item, as that is where the user keeps it.
+	 *
+	 * @param playerName The display name of the player, stored for readability.
+	 * @param key        The encoded name of the player.
+	 */
+	void toggle(String playerName, long key)
+	{
+		final boolean wasMenuEntry;
+		final boolean wasTyped;
+		synchronized (this)
+		{
+			wasTyped = typed.contains(key);
+			wasMenuEntry = menu.remove(key);
+			if (!wasTyped && !wasMenuEntry)
+			{
+				menu.add(key);
+			}
+		}
+
+		if (!wasTyped && !wasMenuEntry)
+		{
+			configManager.setConfiguration(configGroup, MENU_KEY_PREFIX + key, playerName);
+			return;
+		}
+
+		if (wasMenuEntry)
+		{
+			configManager.unsetConfiguration(configGroup, MENU_KEY_PREFIX + key);
+		}
+		if (wasTyped)
+		{
+			configManager.setConfiguration(configGroup, typedListKey, removeTypedName(configManager.getConfiguration(configGroup, typedListKey), key));
+		}
+	}
+
+	/**
+	 * Applies a change to one of the config keys of the store.
+	 *
+	 * @param configKey The changed key, without the group.
+	 * @param newValue  The new value, or null if the key was unset.
+	 * @return True if the key belongs to the store.
+	 */
+	boolean onConfigChanged(String configKey, String newValue)
+	{
+		if (configKey.equals(typedListKey))
+		{
+			setTypedNames(newValue);
+			return true;
+		}
+
+		if (!configKey.startsWith(MENU_KEY_PREFIX))
+		{
+			return false;
+		}
+
+		final long key = parseMenuKey(configKey);
+		if (key != NameCodec.INVALID)
+		{
+			synchronized (this)
+			{
+				if (newValue == null)
+				{
+					menu.remove(key);
+				}
+				else
+				{
+					menu.add(key);
+				}
+			}
+		}
+		return true;
+	}
+
+	private static String removeTypedName(String ignoreList, long key)
+	{
+		if (ignoreList == null)
+		{
+			return "";
+		}
+
+		List<String> remaining = new ArrayList<>();
+		for (String name : ignoreList.split(","))
+		{
+			final String trimmed = name.trim();
+			if (!trimmed.isEmpty() && NameCodec.encode(trimmed) != key)
+			{
+				remaining.add(trimmed);
+			}
+		}
+		return String.join(",", remaining);
+	}
+
+	private static long parseMenuKey(String configKey)
+	{
+		try
+		{
+			final long key = Long.parseLong(configKey.substring(MENU_KEY_PREFIX.length()));
+			return key > 0 ? key : NameCodec.INVALID;
+		}
+		catch (NumberFormatException e)
+		{
+			return NameCodec.INVALID;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package com.hiscoreswatch;
+
+import java.util.Arrays;
+
+/**
+ * A map from primitive longs to objects, see {@link LongHashTable}. Null values cannot be stored.
+ *
+ * @param <V> The type of the values.
+ */
+final class LongHashMap<V> extends LongHashTable
+{
+	private Object[] values;
+
+	LongHashMap()
+	{
+		this(0);
+	}
+
+	LongHashMap(int expectedSize)
+	{
+		super(expectedSize);
+	}
+
+	/**
+	 * @return The value of the key, or null if it is not in the map.
+	 */
+	V get(long key)
+	{
+		final int slot = slotOf(key);
+		return slot < 0 ? null : valueAt(slot);
+	}
+
+	/**
+	 * @return The previous value of the key, or null if it was not in the map.
+	 */
+	V put(long key, V value)
+	{
+		final int slot = insert(key);
+		if (slot < 0)
+		{
+			values[-(slot + 1)] = value;
+			return null;
+		}
+
+		final V previous = valueAt(slot);
+		values[slot] = value;
+		return previous;
+	}
+
+	/**
+	 * @return The removed value, or null if the key was not in the map.
+	 */
+	V remove(long key)
+	{
+		final int slot = slotOf(key);
+		if (slot < 0)
+		{
+			return null;
+		}
+
+		final V previous = valueAt(slot);
+		removeAt(slot);
+		return previous;
+	}
+
+	/**
+	 * Removes the key only if it maps to the given value.
+	 *
+	 * @return True if the key was removed.
+	 */
+	boolean remove(long key, V value)
+	{
+		final int slot = slotOf(key);
+		if (slot < 0 || values[slot] != value)
+		{
+			return false;
+		}
+
+		removeAt(slot);
+		return true;
+	}
+
+	/**
+	 * @return The value in the slot, or null if the slot is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	V valueAt(int slot)
+	{
+		return (V) values[slot];
+	}
+
+	@Override
+	void clear()
+	{
+		super.clear();
+		Arrays.fill(values, null);
+	}
+
+	@Override
+	Object allocateValues(int capacity)
+	{
+		final Object[] previous = values;
+		values = new Object[capacity];
+		return previous;
+	}
+
+	@Override
+	void copyValue(Object previousValues, int from, int to)
+	{
+		values[to] = ((Object[]) previousValues)[from];
+	}
+
+	@Override
+	void moveValue(int from, int to)
+	{
+		values[to] = values[from];
+	}
+
+	@Override
+	void clearValue(int slot)
+	{
+		values[slot] = null;
+	}
+}
@@ -0,0 +1,65 @@
+package com.hiscoreswatch;
+
+/**
+ * A set of primitive longs, see {@link LongHashTable}.
+ */
+final class LongHashSet extends LongHashTable
+{
+	LongHashSet()
+	{
+		this(0);
+	}
+
+	LongHashSet(int expectedSize)
+	{
+		super(expectedSize);
+	}
+
+	boolean contains(long key)
+	{
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * @return True if the key was not already in the set.
+	 */
+	boolean add(long key)
+	{
+		return insert(key) < 0;
+	}
+
+	/**
+	 * @return True if the key was in the set.
+	 */
+	boolean remove(long key)
+	{
+		final int slot = slotOf(key);
+		if (slot < 0)
+		{
+			return false;
+		}
+		removeAt(slot);
+		return true;
+	}
+
+	@Override
+	Object allocateValues(int capacity)
+	{
+		return null;
+	}
+
+	@Override
+	void copyValue(Object previousValues, int from, int to)
+	{
+	}
+
+	@Override
+	void moveValue(int from, int to)
+	{
+	}
+
+	@Override
+	void clearValue(int slot)
+	{
+	}
+}
@@ -0,0 +1,204 @@
+package com.hiscoreswatch;
+
+import java.util.Arrays;
+
+/**
+ * The keys of an open-addressing hash table of primitive longs, shared by {@link LongHashSet}, {@link LongHashMap} and
+ * {@link LongIntHashMap}. Collisions are resolved by linear probing and removals shift the following keys back, so
+ * there are no tombstones and lookups never box.
+ * <p>
+ * The key 0 marks an empty slot and cannot be stored, which suits {@link NameCodec} keys as 0 is never a valid name.
+ * Not thread safe.
+ */
+abstract class LongHashTable
+{
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private int mask;
+	private int size;
+	private int resizeAt;
+
+	LongHashTable(int expectedSize)
+	{
+		allocate(capacityFor(expectedSize));
+	}
+
+	final int size()
+	{
+		return size;
+	}
+
+	final boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @return The number of slots, for iterating with {@link #keyAt(int)}.
+	 */
+	final int capacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * @return The key in the slot, or 0 if the slot is empty.
+	 */
+	final long keyAt(int slot)
+	{
+		return keys[slot];
+	}
+
+	void clear()
+	{
+		Arrays.fill(keys, 0);
+		size = 0;
+	}
+
+	/**
+	 * @return The slot holding the key, or -1 if it is not in the table.
+	 */
+	final int slotOf(long key)
+	{
+		if (key == 0)
+		{
+			return -1;
+		}
+
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask)
+		{
+			final long existing = keys[slot];
+			if (existing == key)
+			{
+				return slot;
+			}
+			if (existing == 0)
+			{
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Finds the slot of a key, inserting it if it is not in the table.
+	 *
+	 * @return The slot of an existing key, or {@code -(slot + 1)} if the key was inserted.
+	 */
+	final int insert(long key)
+	{
+		if (key == 0)
+		{
+			throw new IllegalArgumentException("0 cannot be stored");
+		}
+
+		if (size >= resizeAt)
+		{
+			resize(keys.length * 2);
+		}
+
+		int slot = hash(key) & mask;
+		for (long existing; (existing = keys[slot]) != 0; slot = (slot + 1) & mask)
+		{
+			if (existing == key)
+			{
+				return slot;
+			}
+		}
+
+		keys[slot] = key;
+		size++;
+		return -(slot + 1);
+	}
+
+	/**
+	 * Removes the key in the slot, shifting back any keys that probed past it.
+	 */
+	final void removeAt(int slot)
+	{
+		int hole = slot;
+		for (int next = (slot + 1) & mask; keys[next] != 0; next = (next + 1) & mask)
+		{
+			final int home = hash(keys[next]) & mask;
+			// Move the key into the hole unless its home slot lies between the hole and its current slot
+			if (((next - home) & mask) >= ((next - hole) & mask))
+			{
+				keys[hole] = keys[next];
+				moveValue(next, hole);
+				hole = next;
+			}
+		}
+
+		keys[hole] = 0;
+		clearValue(hole);
+		size--;
+	}
+
+	/**
+	 * Allocates the value storage of a table with the given number of slots, keeping the previous storage for
+	 * {@link #copyValue(Object, int, int)}. Called from the constructor, so subclasses must not initialize their
+	 * value storage field in its declaration.
+	 *
+	 * @return The previous value storage, or null if there is none.
+	 */
+	abstract Object allocateValues(int capacity);
+
+	abstract void copyValue(Object previousValues, int from, int to);
+
+	abstract void moveValue(int from, int to);
+
+	abstract void clearValue(int slot);
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity / 2;
+		allocateValues(capacity);
+	}
+
+	private void resize(int capacity)
+	{
+		final long[] previousKeys = keys;
+		keys = new long[capacity];
+		mask = capacity - 1;
+		resizeAt = capacity / 2;
+		final Object previousValues = allocateValues(capacity);
+
+		for (int from = 0; from < previousKeys.length; from++)
+		{
+			final long key = previousKeys[from];
+			if (key == 0)
+			{
+				continue;
+			}
+
+			int to = hash(key) & mask;
+			while (keys[to] != 0)
+			{
+				to = (to + 1) & mask;
+			}
+			keys[to] = key;
+			copyValue(previousValues, from, to);
+		}
+	}
+
+	private static int capacityFor(int expectedSize)
+	{
+		int capacity = MIN_CAPACITY;
+		while (capacity / 2 < expectedSize)
+		{
+			capacity *= 2;
+		}
+		return capacity;
+	}
+
+	/**
+	 * @return The hash of the key, whose low bits are its home slot.
+	 */
+	static int hash(long key)
+	{
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
@@ -0,0 +1,70 @@
+package com.hiscoreswatch;
+
+/**
+ * A map from primitive longs to primitive ints, see {@link LongHashTable}.
+ */
+final class LongIntHashMap extends LongHashTable
+{
+	private int[] values;
+
+	LongIntHashMap()
+	{
+		this(0);
+	}
+
+	LongIntHashMap(int expectedSize)
+	{
+		super(expectedSize);
+	}
+
+	boolean containsKey(long key)
+	{
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * @return The value of the key, or the default value if it is not in the map.
+	 */
+	int get(long key, int defaultValue)
+	{
+		final int slot = slotOf(key);
+		return slot < 0 ? defaultValue : values[slot];
+	}
+
+	void put(long key, int value)
+	{
+		final int slot = insert(key);
+		values[slot < 0 ? -(slot + 1) : slot] = value;
+	}
+
+	int valueAt(int slot)
+	{
+		return values[slot];
+	}
+
+	@Override
+	Object allocateValues(int capacity)
+	{
+		final int[] previous = values;
+		values = new int[capacity];
+		return previous;
+	}
+
+	@Override
+	void copyValue(Object previousValues, int from, int to)
+	{
+		values[to] = ((int[]) previousValues)[from];
+	}
+
+	@Override
+	void moveValue(int from, int to)
+	{
+		values[to] = values[from];
+	}
+
+	@Override
+	void clearValue(int slot)
+	{
+		values[slot] = 0;
+	}
+}
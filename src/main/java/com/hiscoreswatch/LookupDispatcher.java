@@ -0,0 +1,133 @@
+package com.hiscoreswatch;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Sends hiscores lookups while keeping the number of outstanding calls under a cap.
+ * A slot is only freed once the callback has finished, so a slow server cannot pile up calls or parsed responses,
+ * and the owner is notified as soon as a slot frees up so it can send the next lookup without waiting for a tick.
+ */
+@Slf4j
+class LookupDispatcher
+{
+	private final OkHttpClient httpClient;
+	private final Runnable onSlotFreed;
+	private final Set<Call> inFlight = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger inFlightCount = new AtomicInteger();
+	private volatile int maxInFlight;
+
+	/**
+	 * @param okHttpClient      The client to derive the lookup client from.
+	 * @param callTimeoutMillis The time limit for a whole call, including reading the response.
+	 * @param maxInFlight       The maximum number of outstanding calls.
+	 * @param onSlotFreed       Called from the OkHttp thread whenever a call completes.
+	 */
+	LookupDispatcher(OkHttpClient okHttpClient, long callTimeoutMillis, int maxInFlight, Runnable onSlotFreed)
+	{
+		this.httpClient = okHttpClient.newBuilder()
+				.callTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS)
+				.build();
+		this.maxInFlight = maxInFlight;
+		this.onSlotFreed = onSlotFreed;
+	}
+
+	boolean hasFreeSlot()
+	{
+		return inFlightCount.get() < maxInFlight;
+	}
+
+	int getInFlightCount()
+	{
+		return inFlightCount.get();
+	}
+
+	int getMaxInFlight()
+	{
+		return maxInFlight;
+	}
+
+	void setMaxInFlight(int maxInFlight)
+	{
+		this.maxInFlight = maxInFlight;
+	}
+
+	/**
+	 * Sends a request, occupying a slot until the callback has completed.
+	 * Callers are expected to check {@link #hasFreeSlot()} first.
+	 *
+	 * @param request  The request to send.
+	 * @param callback The callback to run on the OkHttp thread.
+	 */
+	void dispatch(Request request, Callback callback)
+	{
+		final Call call = httpClient.newCall(request);
+		inFlight.add(call);
+		inFlightCount.incrementAndGet();
+
+		call.enqueue(new Callback()
+		{
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				try
+				{
+					callback.onFailure(call, e);
+				}
+				finally
+				{
+					complete(call);
+				}
+			}
+
+			@Override
+			public void onResponse(Call call, Response response) throws IOException
+			{
+				try
+				{
+					callback.onResponse(call, response);
+				}
+				finally
+				{
+					complete(call);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Cancels every outstanding call. Their callbacks still run, with {@link Call#isCanceled()} set.
+	 */
+	void cancelAll()
+	{
+		for (Call call : inFlight)
+		{
+			call.cancel();
+		}
+	}
+
+	private void complete(Call call)
+	{
+		if (inFlight.remove(call))
+		{
+			inFlightCount.decrementAndGet();
+			try
+			{
+				onSlotFreed.run();
+			}
+			catch (RuntimeException e)
+			{
+				log.warn("Failed to schedule the next hiscores lookup", e);
+			}
+		}
+	}
+}
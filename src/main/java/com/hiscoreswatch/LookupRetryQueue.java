@@ -0,0 +1,78 @@
+package com.hiscoreswatch;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Lookups that failed transiently, from a network failure, a 429 or a 5xx, waiting to be sent again.
+ * <p>
+ * The n-th retry of a check waits {@link #BASE_DELAY_MS} doubled n - 1 times, capped at {@link #MAX_DELAY_MS}, with
+ * up to half of it taken off at random so the checks failed by the same outage do not all come back at once. A check
+ * is retried at most {@link #MAX_RETRIES} times and at most {@link #CAPACITY} checks wait at once, beyond that the
+ * failure is final. Failures are scheduled from the OkHttp and evaluate threads, due checks are taken by the worker.
+ */
+class LookupRetryQueue
+{
+	static final int MAX_RETRIES = 4;
+	static final int CAPACITY = 256;
+	static final long BASE_DELAY_MS = 2000;
+	static final long MAX_DELAY_MS = 60_000;
+
+	@RequiredArgsConstructor
+	private static final class Retry
+	{
+		private final long dueAtMillis;
+		private final HiscoresWatchPlugin.PlayerCheck playerCheck;
+	}
+
+	private final PriorityQueue<Retry> retries = new PriorityQueue<>(Comparator.comparingLong((Retry r) -> r.dueAtMillis));
+
+	/**
+	 * Schedules the next attempt of a failed check.
+	 *
+	 * @return False if the check used all its retries or the queue is full, in which case the failure is final.
+	 */
+	synchronized boolean schedule(HiscoresWatchPlugin.PlayerCheck playerCheck, long nowMillis)
+	{
+		final int retried = playerCheck.getRetries();
+		if (retried >= MAX_RETRIES || retries.size() >= CAPACITY)
+		{
+			return false;
+		}
+
+		playerCheck.setRetries(retried + 1);
+		final long delayMillis = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << retried);
+		final long jitteredMillis = delayMillis - ThreadLocalRandom.current().nextLong(delayMillis / 2 + 1);
+		retries.add(new Retry(nowMillis + jitteredMillis, playerCheck));
+		return true;
+	}
+
+	/**
+	 * @return True if a check is due to be sent again.
+	 */
+	synchronized boolean hasDue(long nowMillis)
+	{
+		final Retry next = retries.peek();
+		return next != null && next.dueAtMillis <= nowMillis;
+	}
+
+	/**
+	 * @return The check due soonest if it is due, otherwise null.
+	 */
+	synchronized HiscoresWatchPlugin.PlayerCheck pollDue(long nowMillis)
+	{
+		return hasDue(nowMillis) ? retries.poll().playerCheck : null;
+	}
+
+	synchronized int size()
+	{
+		return retries.size();
+	}
+
+	synchronized void clear()
+	{
+		retries.clear();
+	}
+}
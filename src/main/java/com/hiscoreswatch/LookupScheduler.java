@@ -0,0 +1,411 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * Decides which queued player is looked up next.
+ * <p>
+ * Priority checks (friends chat and clan members) are always served first, newest first, like the previous deque.
+ * Nearby checks are served closest first, where every second spent waiting counts as one tile closer so that distant
+ * players are not starved. Nearby checks are cancelled when the player despawns, so the request budget goes to players
+ * who are still around.
+ * <p>
+ * Every {@link HiscoresWatchPlugin.DetectionSource} has a queue capacity and a deadline. When a source is full, its
+ * oldest priority check or its farthest nearby check is shed, and checks that waited past their deadline are shed as
+ * well. Shed checks are passed to the shed listener so the player can be queued again later.
+ * <p>
+ * Background checks, the members already in a chat channel when it is joined, are served oldest first and only when no
+ * priority or nearby check is waiting, so a large roster never holds up live joins or players walking past.
+ */
+class LookupScheduler
+{
+	/**
+	 * The lanes checks are queued in, served in declaration order.
+	 */
+	enum Lane
+	{
+		PRIORITY,
+		NEARBY,
+		BACKGROUND
+	}
+
+	/**
+	 * The distance used for players whose location is unknown or on another plane.
+	 */
+	static final int UNKNOWN_DISTANCE = 32;
+
+	private static final double AGING_TILES_PER_SECOND = 1.0;
+	private static final HiscoresWatchPlugin.DetectionSource[] SOURCES = HiscoresWatchPlugin.DetectionSource.values();
+
+	private final Deque<HiscoresWatchPlugin.PlayerCheck> priority = new ArrayDeque<>();
+	private final LongHashMap<HiscoresWatchPlugin.PlayerCheck> nearby = new LongHashMap<>();
+	private final Deque<HiscoresWatchPlugin.PlayerCheck> background = new ArrayDeque<>();
+	private final Consumer<HiscoresWatchPlugin.PlayerCheck> shedListener;
+
+	// Per-source counters, indexed by DetectionSource.ordinal()
+	private final int[] queued = new int[SOURCES.length];
+	private final long[] shedForCapacity = new long[SOURCES.length];
+	private final long[] shedForDeadline = new long[SOURCES.length];
+
+	/**
+	 * @param shedListener Called with every check that is shed, while the scheduler is locked.
+	 */
+	LookupScheduler(Consumer<HiscoresWatchPlugin.PlayerCheck> shedListener)
+	{
+		this.shedListener = shedListener;
+	}
+
+	/**
+	 * Queues a check, shedding a check of the same source if the source is at capacity.
+	 * A nearby check that is farther away than every queued nearby check is shed itself, as is a background check, since
+	 * the background checks already queued have waited longer.
+	 */
+	synchronized void add(HiscoresWatchPlugin.PlayerCheck playerCheck)
+	{
+		final HiscoresWatchPlugin.DetectionSource source = playerCheck.getSource();
+		final Lane lane = source.getLane();
+		if (queued[source.ordinal()] >= source.getQueueCapacity())
+		{
+			HiscoresWatchPlugin.PlayerCheck victim = lane == Lane.PRIORITY ? oldestPriority(source)
+					: lane == Lane.NEARBY ? farthestNearby() : null;
+			if (victim == null || (lane == Lane.NEARBY && victim.getDistance() <= playerCheck.getDistance()))
+			{
+				shed(playerCheck, false);
+				return;
+			}
+
+			remove(victim);
+			shed(victim, false);
+		}
+
+		switch (lane)
+		{
+			case PRIORITY:
+				priority.addFirst(playerCheck);
+				break;
+			case NEARBY:
+				nearby.put(playerCheck.getKey(), playerCheck);
+				break;
+			default:
+				background.addLast(playerCheck);
+				break;
+		}
+		queued[source.ordinal()]++;
+	}
+
+	/**
+	 * Removes and returns the next check to send. Checks past their deadline are shed instead of returned.
+	 *
+	 * @param nowMillis The current time, used to age nearby checks.
+	 * @return The next check, or null if nothing is queued.
+	 */
+	synchronized HiscoresWatchPlugin.PlayerCheck poll(long nowMillis)
+	{
+		HiscoresWatchPlugin.PlayerCheck next = pollUnexpired(priority, nowMillis);
+		if (next != null)
+		{
+			return next;
+		}
+
+		double bestScore = Double.MAX_VALUE;
+		for (int slot = 0; slot < nearby.capacity(); slot++)
+		{
+			final HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.valueAt(slot);
+			if (playerCheck == null)
+			{
+				continue;
+			}
+
+			final double score = score(playerCheck, nowMillis);
+			if (score < bestScore && !isExpired(playerCheck, nowMillis))
+			{
+				bestScore = score;
+				next = playerCheck;
+			}
+		}
+
+		if (next != null)
+		{
+			remove(next);
+			return next;
+		}
+		return pollUnexpired(background, nowMillis);
+	}
+
+	/**
+	 * Sheds every check that has waited past the deadline of its source.
+	 */
+	synchronized void expire(long nowMillis)
+	{
+		expire(priority, nowMillis);
+		expire(background, nowMillis);
+
+		// Removing from the table moves other entries around, so collect the expired checks first
+		List<HiscoresWatchPlugin.PlayerCheck> expired = null;
+		for (int slot = 0; slot < nearby.capacity(); slot++)
+		{
+			final HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.valueAt(slot);
+			if (playerCheck != null && isExpired(playerCheck, nowMillis))
+			{
+				if (expired == null)
+				{
+					expired = new ArrayList<>();
+				}
+				expired.add(playerCheck);
+			}
+		}
+
+		if (expired != null)
+		{
+			for (HiscoresWatchPlugin.PlayerCheck playerCheck : expired)
+			{
+				remove(playerCheck);
+				shed(playerCheck, true);
+			}
+		}
+	}
+
+	/**
+	 * Moves a queued nearby or background check to the priority lane, used when a nearby player or a member of a joined
+	 * channel's roster joins a chat channel live. The promoted check keeps the state of the lookup it belongs to, so a
+	 * player already alerted from stale hiscores is not alerted again, but gets the full deadline of its new source.
+	 *
+	 * @param nowMillis The current time, from which the deadline of the new source counts.
+	 * @return True if a check was promoted.
+	 */
+	synchronized boolean promote(long key, HiscoresWatchPlugin.DetectionSource source, long nowMillis)
+	{
+		HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.get(key);
+		if (playerCheck == null)
+		{
+			playerCheck = findBackground(key);
+		}
+		if (playerCheck == null)
+		{
+			return false;
+		}
+
+		remove(playerCheck);
+		add(playerCheck.forSource(source, nowMillis));
+		return true;
+	}
+
+	/**
+	 * Cancels the queued nearby check of a player who has despawned.
+	 *
+	 * @return The cancelled check, or null if the player had none queued.
+	 */
+	synchronized HiscoresWatchPlugin.PlayerCheck cancelNearby(long key)
+	{
+		HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.get(key);
+		if (playerCheck != null)
+		{
+			remove(playerCheck);
+		}
+		return playerCheck;
+	}
+
+	/**
+	 * Cancels every queued nearby check, used when the scene is unloaded.
+	 *
+	 * @return The cancelled checks.
+	 */
+	synchronized List<HiscoresWatchPlugin.PlayerCheck> cancelAllNearby()
+	{
+		List<HiscoresWatchPlugin.PlayerCheck> cancelled = new ArrayList<>(nearby.size());
+		for (int slot = 0; slot < nearby.capacity(); slot++)
+		{
+			final HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.valueAt(slot);
+			if (playerCheck != null)
+			{
+				cancelled.add(playerCheck);
+			}
+		}
+		nearby.clear();
+		queued[HiscoresWatchPlugin.DetectionSource.NEARBY.ordinal()] = 0;
+		return cancelled;
+	}
+
+	/**
+	 * Refreshes the distance of every queued nearby check. Must be called on the client thread.
+	 *
+	 * @param distanceFunction Computes the distance of a check's player from the local player.
+	 */
+	synchronized void updateDistances(ToIntFunction<HiscoresWatchPlugin.PlayerCheck> distanceFunction)
+	{
+		for (int slot = 0; slot < nearby.capacity(); slot++)
+		{
+			final HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.valueAt(slot);
+			if (playerCheck != null)
+			{
+				playerCheck.setDistance(distanceFunction.applyAsInt(playerCheck));
+			}
+		}
+	}
+
+	synchronized boolean isEmpty()
+	{
+		return priority.isEmpty() && nearby.isEmpty() && background.isEmpty();
+	}
+
+	synchronized int size()
+	{
+		return priority.size() + nearby.size() + background.size();
+	}
+
+	synchronized int size(HiscoresWatchPlugin.DetectionSource source)
+	{
+		return queued[source.ordinal()];
+	}
+
+	/**
+	 * @return The number of checks of the source shed because the queue was full or their deadline passed.
+	 */
+	synchronized long getShedCount(HiscoresWatchPlugin.DetectionSource source)
+	{
+		return shedForCapacity[source.ordinal()] + shedForDeadline[source.ordinal()];
+	}
+
+	synchronized long getShedForCapacity(HiscoresWatchPlugin.DetectionSource source)
+	{
+		return shedForCapacity[source.ordinal()];
+	}
+
+	synchronized long getShedForDeadline(HiscoresWatchPlugin.DetectionSource source)
+	{
+		return shedForDeadline[source.ordinal()];
+	}
+
+	synchronized void clear()
+	{
+		priority.clear();
+		nearby.clear();
+		background.clear();
+		Arrays.fill(queued, 0);
+	}
+
+	private void remove(HiscoresWatchPlugin.PlayerCheck playerCheck)
+	{
+		final boolean removed;
+		switch (playerCheck.getSource().getLane())
+		{
+			case PRIORITY:
+				removed = priority.remove(playerCheck);
+				break;
+			case NEARBY:
+				removed = nearby.remove(playerCheck.getKey(), playerCheck);
+				break;
+			default:
+				removed = background.remove(playerCheck);
+				break;
+		}
+		if (removed)
+		{
+			queued[playerCheck.getSource().ordinal()]--;
+		}
+	}
+
+	private void shed(HiscoresWatchPlugin.PlayerCheck playerCheck, boolean expired)
+	{
+		final int ordinal = playerCheck.getSource().ordinal();
+		if (expired)
+		{
+			shedForDeadline[ordinal]++;
+		}
+		else
+		{
+			shedForCapacity[ordinal]++;
+		}
+		shedListener.accept(playerCheck);
+	}
+
+	/**
+	 * Removes and returns the first check of a lane served in order, shedding the expired checks before it.
+	 */
+	private HiscoresWatchPlugin.PlayerCheck pollUnexpired(Deque<HiscoresWatchPlugin.PlayerCheck> lane, long nowMillis)
+	{
+		HiscoresWatchPlugin.PlayerCheck next;
+		while ((next = lane.pollFirst()) != null)
+		{
+			queued[next.getSource().ordinal()]--;
+			if (!isExpired(next, nowMillis))
+			{
+				return next;
+			}
+			shed(next, true);
+		}
+		return null;
+	}
+
+	private void expire(Deque<HiscoresWatchPlugin.PlayerCheck> lane, long nowMillis)
+	{
+		for (Iterator<HiscoresWatchPlugin.PlayerCheck> it = lane.iterator(); it.hasNext(); )
+		{
+			HiscoresWatchPlugin.PlayerCheck playerCheck = it.next();
+			if (isExpired(playerCheck, nowMillis))
+			{
+				it.remove();
+				queued[playerCheck.getSource().ordinal()]--;
+				shed(playerCheck, true);
+			}
+		}
+	}
+
+	private HiscoresWatchPlugin.PlayerCheck findBackground(long key)
+	{
+		for (HiscoresWatchPlugin.PlayerCheck playerCheck : background)
+		{
+			if (playerCheck.getKey() == key)
+			{
+				return playerCheck;
+			}
+		}
+		return null;
+	}
+
+	private HiscoresWatchPlugin.PlayerCheck oldestPriority(HiscoresWatchPlugin.DetectionSource source)
+	{
+		for (Iterator<HiscoresWatchPlugin.PlayerCheck> it = priority.descendingIterator(); it.hasNext(); )
+		{
+			HiscoresWatchPlugin.PlayerCheck playerCheck = it.next();
+			if (playerCheck.getSource() == source)
+			{
+				return playerCheck;
+			}
+		}
+		return null;
+	}
+
+	private HiscoresWatchPlugin.PlayerCheck farthestNearby()
+	{
+		HiscoresWatchPlugin.PlayerCheck farthest = null;
+		for (int slot = 0; slot < nearby.capacity(); slot++)
+		{
+			final HiscoresWatchPlugin.PlayerCheck playerCheck = nearby.valueAt(slot);
+			if (playerCheck != null && (farthest == null || playerCheck.getDistance() > farthest.getDistance()))
+			{
+				farthest = playerCheck;
+			}
+		}
+		return farthest;
+	}
+
+	private static boolean isExpired(HiscoresWatchPlugin.PlayerCheck playerCheck, long nowMillis)
+	{
+		return nowMillis - playerCheck.getDeadlineFromMillis() > playerCheck.getSource().getQueueDeadlineMs();
+	}
+
+	private static double score(HiscoresWatchPlugin.PlayerCheck playerCheck, long nowMillis)
+	{
+		final int distance = Math.min(playerCheck.getDistance(), UNKNOWN_DISTANCE);
+		final double waitedSeconds = (nowMillis - playerCheck.getEnqueuedAtMillis()) / 1000.0;
+		return distance - waitedSeconds * AGING_TILES_PER_SECOND;
+	}
+}
@@ -0,0 +1,130 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lookups of one player across the game modes being checked, collected so the player gets a single alert once
+ * every mode has answered.
+ * <p>
+ * The main hiscores are looked up first. Each mode the player is found in then fans out to the enabled modes below it,
+ * see {@link GameMode#getParent()}, so a player only costs one request per mode they could actually be in. Thread safe,
+ * the answers of parallel lookups arrive on the evaluate stage.
+ */
+class ModeLookup
+{
+	private final int enabledModes;
+	private final int knownAbsentModes;
+	private final boolean stored;
+	private final HiscoresSnapshot[] snapshots = new HiscoresSnapshot[GameMode.COUNT];
+	private int checkedModes;
+	private int pending = 1;
+	private boolean failed;
+	private boolean finished;
+
+	/**
+	 * @param enabledModes     The {@link GameMode#bit() bits} of the modes to check.
+	 * @param knownAbsentModes The bits of the modes the player is already known not to be in, which are skipped.
+	 * @param stored           Whether the main hiscores came from the snapshot store, so they are not stored again.
+	 */
+	ModeLookup(int enabledModes, int knownAbsentModes, boolean stored)
+	{
+		this.enabledModes = enabledModes;
+		this.knownAbsentModes = knownAbsentModes;
+		this.stored = stored;
+	}
+
+	/**
+	 * Records the answer of a mode.
+	 *
+	 * @param snapshot The parsed hiscores, or null if the player is not on the hiscores of the mode.
+	 * @return The modes to look up next because the player was found in this one.
+	 */
+	synchronized List<GameMode> complete(GameMode mode, HiscoresSnapshot snapshot)
+	{
+		snapshots[mode.ordinal()] = snapshot;
+		checkedModes |= mode.bit();
+		pending--;
+		if (snapshot == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<GameMode> next = new ArrayList<>(2);
+		for (GameMode child : GameMode.VALUES)
+		{
+			if (child.getParent() == mode && (enabledModes & child.bit()) != 0 && (knownAbsentModes & child.bit()) == 0)
+			{
+				next.add(child);
+			}
+		}
+		pending += next.size();
+		return next;
+	}
+
+	/**
+	 * Records a mode whose lookup failed. The player is alerted with the other modes, but is not known to be
+	 * unremarkable.
+	 */
+	synchronized void fail(GameMode mode)
+	{
+		failed = true;
+		pending--;
+	}
+
+	/**
+	 * @return True, exactly once, when every lookup has answered.
+	 */
+	synchronized boolean claimFinish()
+	{
+		if (pending > 0 || finished)
+		{
+			return false;
+		}
+		finished = true;
+		return true;
+	}
+
+	/**
+	 * @return The snapshot of every mode, indexed by {@link GameMode#ordinal()}, null where the player was not found.
+	 */
+	synchronized HiscoresSnapshot[] getSnapshots()
+	{
+		return snapshots.clone();
+	}
+
+	/**
+	 * @return The bits of the modes that answered, found or not.
+	 */
+	synchronized int getCheckedModes()
+	{
+		return checkedModes;
+	}
+
+	/**
+	 * @return The bits of the modes the player was found in.
+	 */
+	synchronized int getFoundModes()
+	{
+		int found = 0;
+		for (GameMode mode : GameMode.VALUES)
+		{
+			if (snapshots[mode.ordinal()] != null)
+			{
+				found |= mode.bit();
+			}
+		}
+		return found;
+	}
+
+	synchronized boolean isFailed()
+	{
+		return failed;
+	}
+
+	boolean isStored()
+	{
+		return stored;
+	}
+}
@@ -0,0 +1,120 @@
+package com.hiscoreswatch;
+
+/**
+ * Encodes player names as base-37 longs, the same scheme the game uses for display names.
+ * <p>
+ * Letters map to 1-26 regardless of case, digits to 27-36, and the space, underscore, hyphen and non-breaking space
+ * that the game treats as the same character map to 0. Leading and trailing separators are dropped, so a name and its
+ * {@link net.runelite.client.util.Text#toJagexName(String) Jagex name} have the same encoding and two names share an
+ * encoding exactly when the game considers them the same player. Twelve characters fit in a positive long.
+ */
+final class NameCodec
+{
+	/**
+	 * The encoding of anything that is not a valid player name. Never a valid key.
+	 */
+	static final long INVALID = 0;
+	static final int MAX_LENGTH = 12;
+
+	private static final int RADIX = 37;
+
+	private NameCodec()
+	{
+	}
+
+	/**
+	 * @return The encoded name, or {@link #INVALID} if it is empty, too long, or contains a character names cannot have.
+	 */
+	static long encode(CharSequence name)
+	{
+		long encoded = 0;
+		int length = 0;
+		int trailingSeparators = 0;
+		for (int i = 0; i < name.length(); i++)
+		{
+			final int value = valueOf(name.charAt(i));
+			if (value < 0)
+			{
+				return INVALID;
+			}
+
+			if (value == 0)
+			{
+				if (length == 0)
+				{
+					// Leading separators are not part of the name
+					continue;
+				}
+				trailingSeparators++;
+				continue;
+			}
+
+			length += trailingSeparators + 1;
+			if (length > MAX_LENGTH)
+			{
+				return INVALID;
+			}
+			for (; trailingSeparators > 0; trailingSeparators--)
+			{
+				encoded *= RADIX;
+			}
+			encoded = encoded * RADIX + value;
+		}
+		return encoded;
+	}
+
+	/**
+	 * @return The lower-case name with spaces as separators, or null for {@link #INVALID}.
+	 */
+	static String decode(long encoded)
+	{
+		if (encoded <= 0)
+		{
+			return null;
+		}
+
+		final char[] chars = new char[MAX_LENGTH];
+		int start = MAX_LENGTH;
+		while (encoded != 0 && start > 0)
+		{
+			final int value = (int) (encoded % RADIX);
+			encoded /= RADIX;
+			chars[--start] = charOf(value);
+		}
+		return new String(chars, start, MAX_LENGTH - start);
+	}
+
+	private static int valueOf(char c)
+	{
+		if (c >= 'a' && c <= 'z')
+		{
+			return c - 'a' + 1;
+		}
+		if (c >= 'A' && c <= 'Z')
+		{
+			return c - 'A' + 1;
+		}
+		if (c >= '0' && c <= '9')
+		{
+			return c - '0' + 27;
+		}
+		if (c == ' ' || c == '_' || c == '-' || c == '\u00A0')
+		{
+			return 0;
+		}
+		return -1;
+	}
+
+	private static char charOf(int value)
+	{
+		if (value == 0)
+		{
+			return ' ';
+		}
+		if (value <= 26)
+		{
+			return (char) ('a' + value - 1);
+		}
+		return (char) ('0' + value - 27);
+	}
+}
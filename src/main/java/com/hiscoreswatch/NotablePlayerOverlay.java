@@ -0,0 +1,209 @@
+package com.hiscoreswatch;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import javax.inject.Inject;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.Client;
+import net.runelite.api.Perspective;
+import net.runelite.api.Player;
+import net.runelite.api.Point;
+import net.runelite.api.WorldView;
+import net.runelite.api.coords.LocalPoint;
+import net.runelite.client.ui.overlay.Overlay;
+import net.runelite.client.ui.overlay.OverlayLayer;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.outline.ModelOutlineRenderer;
+
+/**
+ * Outlines the notable players in the scene and labels them with their most impressive achievement, for the rest of
+ * the session.
+ * <p>
+ * Highlights are offered from the render stage and moved into a map keyed by the {@link NameCodec} encoding of the
+ * player name at the start of the next frame, so each player in the scene costs one name encoding and one primitive
+ * lookup per frame, and players that are not notable allocate nothing. The label of a player is built once, and its
+ * width only measured again when the font changes.
+ */
+class NotablePlayerOverlay extends Overlay
+{
+	static final int MAX_HIGHLIGHTS = 4096;
+
+	private static final int LABEL_Z_OFFSET = 60;
+	private static final int OUTLINE_WIDTH = 2;
+	private static final int OUTLINE_FEATHER = 2;
+
+	/**
+	 * The highlight of one notable player. Only accessed on the client thread.
+	 */
+	@RequiredArgsConstructor
+	private static final class Highlight
+	{
+		private final String label;
+		private final Color color;
+		private Font layoutFont;
+		private int labelWidth;
+	}
+
+	/**
+	 * A change to the highlights, waiting for the next frame.
+	 */
+	@RequiredArgsConstructor
+	private static final class Update
+	{
+		private final long key;
+		/**
+		 * The highlight to add, or null to remove the player's highlight.
+		 */
+		private final Highlight highlight;
+	}
+
+	private final Client client;
+	private final ModelOutlineRenderer modelOutlineRenderer;
+
+	private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+	private volatile boolean clearRequested;
+
+	// Only accessed on the client thread
+	private final LongHashMap<Highlight> highlights = new LongHashMap<>();
+
+	@Inject
+	NotablePlayerOverlay(HiscoresWatchPlugin plugin, Client client, ModelOutlineRenderer modelOutlineRenderer)
+	{
+		super(plugin);
+		this.client = client;
+		this.modelOutlineRenderer = modelOutlineRenderer;
+		setPosition(OverlayPosition.DYNAMIC);
+		setLayer(OverlayLayer.ABOVE_SCENE);
+	}
+
+	/**
+	 * Highlights a notable player from the next frame on. May be called from any thread.
+	 *
+	 * @param key   The encoded player name.
+	 * @param top   The player's most impressive achievement.
+	 * @param count The number of notable achievements of the player.
+	 * @param color The color of the outline and label.
+	 */
+	void offer(long key, HiscoresWatchPlugin.PlayerAchievement top, int count, Color color)
+	{
+		if (key == NameCodec.INVALID)
+		{
+			return;
+		}
+
+		final String text = top.toDisplayString();
+		final String label = Character.toUpperCase(text.charAt(0)) + text.substring(1) + (count > 1 ? " +" + (count - 1) : "");
+		updates.add(new Update(key, new Highlight(label, color)));
+	}
+
+	/**
+	 * Removes the highlight of a player from the next frame on. May be called from any thread.
+	 */
+	void remove(long key)
+	{
+		updates.add(new Update(key, null));
+	}
+
+	/**
+	 * Removes every highlight from the next frame on. May be called from any thread.
+	 */
+	void clear()
+	{
+		updates.clear();
+		clearRequested = true;
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		applyUpdates();
+		if (highlights.isEmpty())
+		{
+			return null;
+		}
+
+		final WorldView worldView = client.getTopLevelWorldView();
+		if (worldView == null)
+		{
+			return null;
+		}
+
+		for (Player player : worldView.players())
+		{
+			final String name = player == null ? null : player.getName();
+			if (name == null)
+			{
+				continue;
+			}
+
+			final Highlight highlight = highlights.get(NameCodec.encode(name));
+			if (highlight == null)
+			{
+				continue;
+			}
+
+			modelOutlineRenderer.drawOutline(player, OUTLINE_WIDTH, highlight.color, OUTLINE_FEATHER);
+			renderLabel(graphics, worldView, player, highlight);
+		}
+		return null;
+	}
+
+	private void renderLabel(Graphics2D graphics, WorldView worldView, Player player, Highlight highlight)
+	{
+		final LocalPoint location = player.getLocalLocation();
+		if (location == null)
+		{
+			return;
+		}
+
+		final Point point = Perspective.localToCanvas(client, location, worldView.getPlane(), player.getLogicalHeight() + LABEL_Z_OFFSET);
+		if (point == null)
+		{
+			return;
+		}
+
+		final Font font = graphics.getFont();
+		if (highlight.layoutFont != font)
+		{
+			highlight.labelWidth = graphics.getFontMetrics(font).stringWidth(highlight.label);
+			highlight.layoutFont = font;
+		}
+
+		final int x = point.getX() - highlight.labelWidth / 2;
+		final int y = point.getY();
+		graphics.setColor(Color.BLACK);
+		graphics.drawString(highlight.label, x + 1, y + 1);
+		graphics.setColor(highlight.color);
+		graphics.drawString(highlight.label, x, y);
+	}
+
+	/**
+	 * Moves the highlights offered since the last frame into the map. Players highlighted once the map is full are
+	 * left out.
+	 */
+	private void applyUpdates()
+	{
+		if (clearRequested)
+		{
+			clearRequested = false;
+			highlights.clear();
+		}
+
+		Update update;
+		while ((update = updates.poll()) != null)
+		{
+			if (update.highlight == null)
+			{
+				highlights.remove(update.key);
+			}
+			else if (highlights.size() < MAX_HIGHLIGHTS || highlights.get(update.key) != null)
+			{
+				highlights.put(update.key, update.highlight);
+			}
+		}
+	}
+}
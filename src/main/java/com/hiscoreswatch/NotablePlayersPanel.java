@@ -0,0 +1,392 @@
+package com.hiscoreswatch;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.GridLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.AbstractListModel;
+import javax.swing.BorderFactory;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.ListCellRenderer;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import net.runelite.client.ui.ColorScheme;
+import net.runelite.client.ui.FontManager;
+import net.runelite.client.ui.PluginPanel;
+
+/**
+ * Lists every notable player seen this session in the side panel, sortable and filterable by category.
+ * <p>
+ * The plugin threads push changes with {@link #offer} and {@link #seen}. They are applied on the event dispatch thread
+ * in batches, each change inserting, moving or removing single rows of the list model. The list has a fixed row height
+ * and one shared renderer, so Swing only lays out and paints the visible rows however many players are listed.
+ */
+class NotablePlayersPanel extends PluginPanel
+{
+	private static final int ROW_HEIGHT = 34;
+	private static final int LAST_SEEN_REFRESH_MS = 30_000;
+	private static final String ALL_CATEGORIES = "All categories";
+
+	/**
+	 * Tie-breaks every order, so each row has exactly one place in the list.
+	 */
+	private static final Comparator<Row> BY_NAME = Comparator
+			.comparing(Row::getPlayerName, String.CASE_INSENSITIVE_ORDER)
+			.thenComparingLong(Row::getKey);
+	private static final Comparator<Row> BY_BEST_RANK = Comparator
+			.comparing(Row::getTop, HiscoresWatchPlugin.ACHIEVEMENT_ORDER);
+
+	@RequiredArgsConstructor
+	enum SortOrder
+	{
+		BEST_RANK("Best rank", BY_BEST_RANK.thenComparing(BY_NAME)),
+		CATEGORY("Category", Comparator.comparing((Row r) -> r.getTop().getHiscore()).thenComparing(BY_BEST_RANK).thenComparing(BY_NAME)),
+		SOURCE("Source", Comparator.comparing(Row::getSource).thenComparing(BY_BEST_RANK).thenComparing(BY_NAME)),
+		LAST_SEEN("Last seen", Comparator.comparingLong(Row::getLastSeenMillis).reversed().thenComparing(BY_NAME));
+
+		private final String name;
+		private final Comparator<Row> comparator;
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	/**
+	 * A notable player, immutable so a row can be found in the sorted list by the values it was inserted with.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static final class Row
+	{
+		private final long key;
+		private final String playerName;
+		private final HiscoresWatchPlugin.DetectionSource source;
+		/**
+		 * The player's most impressive achievement.
+		 */
+		private final HiscoresWatchPlugin.PlayerAchievement top;
+		private final String achievementText;
+		/**
+		 * The categories of every notable achievement of the player.
+		 */
+		private final Set<Hiscores> categories;
+		private final long lastSeenMillis;
+
+		Row seenAt(long millis)
+		{
+			return new Row(key, playerName, source, top, achievementText, categories, Math.max(lastSeenMillis, millis));
+		}
+	}
+
+	/**
+	 * A change pushed by the plugin, either a new alert or a new sighting of a listed player.
+	 */
+	@RequiredArgsConstructor
+	private static final class Update
+	{
+		private final long key;
+		/**
+		 * The row of a new alert, or null for a sighting.
+		 */
+		private final Row row;
+		private final long seenAtMillis;
+	}
+
+	/**
+	 * The rows that pass the filter, in sort order.
+	 */
+	private static final class RowListModel extends AbstractListModel<Row>
+	{
+		private final List<Row> rows = new ArrayList<>();
+		private Comparator<Row> order = SortOrder.BEST_RANK.comparator;
+
+		@Override
+		public int getSize()
+		{
+			return rows.size();
+		}
+
+		@Override
+		public Row getElementAt(int index)
+		{
+			return rows.get(index);
+		}
+
+		void insert(Row row)
+		{
+			final int index = Collections.binarySearch(rows, row, order);
+			if (index < 0)
+			{
+				final int insertAt = -(index + 1);
+				rows.add(insertAt, row);
+				fireIntervalAdded(this, insertAt, insertAt);
+			}
+		}
+
+		void remove(Row row)
+		{
+			final int index = Collections.binarySearch(rows, row, order);
+			if (index >= 0)
+			{
+				rows.remove(index);
+				fireIntervalRemoved(this, index, index);
+			}
+		}
+
+		void reset(List<Row> newRows, Comparator<Row> newOrder)
+		{
+			if (!rows.isEmpty())
+			{
+				final int last = rows.size() - 1;
+				rows.clear();
+				fireIntervalRemoved(this, 0, last);
+			}
+
+			order = newOrder;
+			newRows.sort(order);
+			rows.addAll(newRows);
+			if (!rows.isEmpty())
+			{
+				fireIntervalAdded(this, 0, rows.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Paints every visible row with the same components.
+	 */
+	private static final class RowRenderer extends JPanel implements ListCellRenderer<Row>
+	{
+		private final JLabel nameLabel = new JLabel();
+		private final JLabel detailLabel = new JLabel();
+		private final JLabel achievementLabel = new JLabel();
+
+		RowRenderer()
+		{
+			setLayout(new BorderLayout());
+			setBorder(BorderFactory.createEmptyBorder(2, 6, 2, 6));
+
+			final JPanel top = new JPanel(new BorderLayout());
+			top.setOpaque(false);
+			nameLabel.setFont(FontManager.getRunescapeBoldFont());
+			detailLabel.setFont(FontManager.getRunescapeSmallFont());
+			detailLabel.setForeground(ColorScheme.LIGHT_GRAY_COLOR);
+			top.add(nameLabel, BorderLayout.WEST);
+			top.add(detailLabel, BorderLayout.EAST);
+
+			achievementLabel.setFont(FontManager.getRunescapeSmallFont());
+			achievementLabel.setForeground(ColorScheme.BRAND_ORANGE);
+			add(top, BorderLayout.NORTH);
+			add(achievementLabel, BorderLayout.SOUTH);
+		}
+
+		@Override
+		public Component getListCellRendererComponent(JList<? extends Row> list, Row row, int index, boolean selected, boolean focused)
+		{
+			nameLabel.setText(row.getPlayerName());
+			detailLabel.setText(sourceName(row.getSource()) + ", " + HiscoresWatchPlugin.formatElapsed(System.currentTimeMillis() - row.getLastSeenMillis()) + " ago");
+			achievementLabel.setText(row.getAchievementText());
+			setBackground(selected ? ColorScheme.DARK_GRAY_HOVER_COLOR : (index % 2 == 0 ? ColorScheme.DARKER_GRAY_COLOR : ColorScheme.DARK_GRAY_COLOR));
+			return this;
+		}
+	}
+
+	private final Queue<Update> updates = new ConcurrentLinkedQueue<>();
+	private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+	// Only accessed on the event dispatch thread
+	private final LongHashMap<Row> rows = new LongHashMap<>();
+	private final RowListModel model = new RowListModel();
+	private final JComboBox<SortOrder> sortBox = new JComboBox<>(SortOrder.values());
+	private final JComboBox<Object> filterBox = new JComboBox<>();
+	private final JLabel countLabel = new JLabel();
+	private final JList<Row> list = new JList<>(model);
+	private final Timer lastSeenRefresh = new Timer(LAST_SEEN_REFRESH_MS, e -> list.repaint());
+	private Hiscores filter;
+
+	NotablePlayersPanel()
+	{
+		super(false);
+		setLayout(new BorderLayout(0, 6));
+		setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+		setBackground(ColorScheme.DARK_GRAY_COLOR);
+
+		filterBox.addItem(ALL_CATEGORIES);
+		for (Hiscores hiscore : Hiscores.values())
+		{
+			filterBox.addItem(hiscore);
+		}
+		sortBox.addActionListener(e -> rebuild());
+		filterBox.addActionListener(e ->
+		{
+			final Object selected = filterBox.getSelectedItem();
+			filter = selected instanceof Hiscores ? (Hiscores) selected : null;
+			rebuild();
+		});
+
+		final JPanel controls = new JPanel(new GridLayout(3, 1, 0, 4));
+		controls.setOpaque(false);
+		controls.add(sortBox);
+		controls.add(filterBox);
+		countLabel.setFont(FontManager.getRunescapeSmallFont());
+		controls.add(countLabel);
+		updateCount();
+
+		list.setCellRenderer(new RowRenderer());
+		// A fixed height spares the list from measuring every row
+		list.setFixedCellHeight(ROW_HEIGHT);
+		list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+		list.setBackground(ColorScheme.DARKER_GRAY_COLOR);
+
+		add(controls, BorderLayout.NORTH);
+		add(new JScrollPane(list), BorderLayout.CENTER);
+	}
+
+	/**
+	 * Lists a player who was just alerted, or updates their row. May be called from any thread.
+	 *
+	 * @param achievements The player's notable achievements, most impressive first. Must not be empty.
+	 */
+	void offer(long key, String playerName, HiscoresWatchPlugin.DetectionSource source, List<HiscoresWatchPlugin.PlayerAchievement> achievements, long seenAtMillis)
+	{
+		if (key == NameCodec.INVALID)
+		{
+			return;
+		}
+
+		final Set<Hiscores> categories = EnumSet.noneOf(Hiscores.class);
+		for (HiscoresWatchPlugin.PlayerAchievement achievement : achievements)
+		{
+			categories.add(achievement.getHiscore());
+		}
+
+		final HiscoresWatchPlugin.PlayerAchievement top = achievements.get(0);
+		final String text = top.toDisplayString();
+		final String achievementText = Character.toUpperCase(text.charAt(0)) + text.substring(1)
+				+ (achievements.size() > 1 ? " +" + (achievements.size() - 1) : "");
+		push(new Update(key, new Row(key, playerName, source, top, achievementText, categories, seenAtMillis), seenAtMillis));
+	}
+
+	/**
+	 * Updates when a player was last seen, if they are listed. May be called from any thread.
+	 */
+	void seen(long key, long seenAtMillis)
+	{
+		push(new Update(key, null, seenAtMillis));
+	}
+
+	@Override
+	public void onActivate()
+	{
+		list.repaint();
+		lastSeenRefresh.start();
+	}
+
+	@Override
+	public void onDeactivate()
+	{
+		lastSeenRefresh.stop();
+	}
+
+	private void push(Update update)
+	{
+		updates.add(update);
+		// One task drains every update pushed before it runs
+		if (drainScheduled.compareAndSet(false, true))
+		{
+			SwingUtilities.invokeLater(this::applyUpdates);
+		}
+	}
+
+	private void applyUpdates()
+	{
+		drainScheduled.set(false);
+		final int listed = rows.size();
+		Update update;
+		while ((update = updates.poll()) != null)
+		{
+			final Row previous = rows.get(update.key);
+			final Row next = update.row != null ? update.row : previous == null ? null : previous.seenAt(update.seenAtMillis);
+			if (next == null)
+			{
+				continue;
+			}
+
+			if (previous != null && matches(previous))
+			{
+				model.remove(previous);
+			}
+			rows.put(update.key, next);
+			if (matches(next))
+			{
+				model.insert(next);
+			}
+		}
+
+		if (rows.size() != listed)
+		{
+			updateCount();
+		}
+	}
+
+	/**
+	 * Lists every row again after the sort order or filter changed.
+	 */
+	private void rebuild()
+	{
+		final List<Row> matching = new ArrayList<>(rows.size());
+		for (int slot = 0; slot < rows.capacity(); slot++)
+		{
+			final Row row = rows.valueAt(slot);
+			if (row != null && matches(row))
+			{
+				matching.add(row);
+			}
+		}
+		model.reset(matching, ((SortOrder) sortBox.getSelectedItem()).comparator);
+		updateCount();
+	}
+
+	private boolean matches(Row row)
+	{
+		return filter == null || row.getCategories().contains(filter);
+	}
+
+	private void updateCount()
+	{
+		countLabel.setText(rows.size() == 1 ? "1 notable player" : rows.size() + " notable players");
+	}
+
+	private static String sourceName(HiscoresWatchPlugin.DetectionSource source)
+	{
+		switch (source)
+		{
+			case FRIENDS_CHAT:
+			case FRIENDS_CHAT_ROSTER:
+				return "Friends chat";
+			case CLAN_CHAT:
+			case CLAN_ROSTER:
+				return "Clan";
+			default:
+				return "Nearby";
+		}
+	}
+}
@@ -0,0 +1,556 @@
+package com.hiscoreswatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A memory-mapped, fixed-record store of player snapshots that survives client restarts.
+ * <p>
+ * Records are only ever appended. Each record carries a CRC and its marker is written last, so a record torn by a crash
+ * is skipped on the next load, and every read checks the marker, key and CRC of the record again, so a record that was
+ * changed under the store reads as a miss. When the file is full it is compacted in place: live records are copied towards the
+ * start of the file in slot order, so a crash part way through only leaves duplicates behind, and the newest copy of a
+ * player always wins on load. The file size is fixed at {@link #MAX_RECORDS} records.
+ * <p>
+ * {@link #isFresh(long)} is answered without locking the store, so the client thread never waits for a write or a
+ * compaction. It may be briefly out of date, which only costs a lookup or a read that misses.
+ */
+@Slf4j
+class PersistentSnapshotStore
+{
+	static final long TTL_MS = TimeUnit.HOURS.toMillis(12);
+	static final int MAX_RECORDS = 8192;
+
+	private static final int FILE_MAGIC = 0x48535753; // HSWS
+	private static final int RECORD_MAGIC = 0x48535752; // HSWR
+	private static final int FORMAT_VERSION = 3;
+	private static final int HEADER_SIZE = 64;
+
+	private static final byte STATUS_FOUND = 1;
+	private static final byte STATUS_NOT_FOUND = 2;
+
+	// Record layout
+	private static final int OFFSET_MARKER = 0;
+	private static final int OFFSET_CRC = 4;
+	private static final int OFFSET_WRITTEN_AT = 8;
+	private static final int OFFSET_STATUS = 16;
+	private static final int OFFSET_KEY = 17;
+	private static final int OFFSET_ROW_COUNT = OFFSET_KEY + 8;
+	private static final int OFFSET_CHECKED_MODES = OFFSET_ROW_COUNT + 2;
+	private static final int OFFSET_FOUND_MODES = OFFSET_CHECKED_MODES + 1;
+	private static final int OFFSET_CATEGORIES = OFFSET_FOUND_MODES + 1;
+	private static final int CATEGORY_BYTES = 4 + 4 + 1;
+	private static final int CATEGORY_COUNT = HiscoresSnapshot.CATEGORY_COUNT;
+
+	/**
+	 * Maps a category ordinal to its slot in the xp section, or -1 if the category has no xp column.
+	 */
+	private static final int[] XP_SLOTS = new int[CATEGORY_COUNT];
+	private static final int SKILL_COUNT;
+
+	static
+	{
+		int skills = 0;
+		for (Hiscores hiscore : Hiscores.values())
+		{
+			XP_SLOTS[hiscore.ordinal()] = hiscore.isSkill() ? skills++ : -1;
+		}
+		SKILL_COUNT = skills;
+	}
+
+	private static final int OFFSET_XP = OFFSET_CATEGORIES + CATEGORY_COUNT * CATEGORY_BYTES;
+	static final int RECORD_SIZE = OFFSET_XP + SKILL_COUNT * 8;
+	private static final long FILE_SIZE = HEADER_SIZE + (long) MAX_RECORDS * RECORD_SIZE;
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final LongSupplier clock;
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The slot of the newest record of every stored player.
+	 */
+	private final LongIntHashMap index = new LongIntHashMap(MAX_RECORDS);
+	/**
+	 * The write time of the newest record of every player in {@link #index}, replaced by compaction.
+	 */
+	private volatile WrittenAtIndex writtenAtIndex = new WrittenAtIndex();
+	private int appendSlot;
+
+	private PersistentSnapshotStore(RandomAccessFile file, MappedByteBuffer buffer, LongSupplier clock)
+	{
+		this.file = file;
+		this.buffer = buffer;
+		this.clock = clock;
+	}
+
+	/**
+	 * Opens the store, creating the file if needed. A file written with a different layout is discarded.
+	 *
+	 * @param storeFile The file backing the store.
+	 * @return The opened store.
+	 */
+	static PersistentSnapshotStore open(File storeFile) throws IOException
+	{
+		return open(storeFile, System::currentTimeMillis);
+	}
+
+	static PersistentSnapshotStore open(File storeFile, LongSupplier clock) throws IOException
+	{
+		File parent = storeFile.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create " + parent);
+		}
+
+		RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+		try
+		{
+			boolean compatible = file.length() == FILE_SIZE
+					&& file.readInt() == FILE_MAGIC
+					&& file.readInt() == FORMAT_VERSION
+					&& file.readInt() == RECORD_SIZE
+					&& file.readInt() == CATEGORY_COUNT;
+			if (!compatible)
+			{
+				if (file.length() > 0)
+				{
+					log.info("Discarding incompatible hiscores store {}", storeFile);
+				}
+				file.setLength(0);
+				file.setLength(FILE_SIZE);
+			}
+
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+			if (!compatible)
+			{
+				buffer.putInt(0, FILE_MAGIC);
+				buffer.putInt(4, FORMAT_VERSION);
+				buffer.putInt(8, RECORD_SIZE);
+				buffer.putInt(12, CATEGORY_COUNT);
+			}
+
+			PersistentSnapshotStore store = new PersistentSnapshotStore(file, buffer, clock);
+			store.load();
+			return store;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Can be called on any thread without waiting for the store. The record itself is only checked by
+	 * {@link #read(long, HiscoresSnapshot)}.
+	 *
+	 * @return True if there is an unexpired record for the player.
+	 */
+	boolean isFresh(long key)
+	{
+		final long writtenAt = writtenAtIndex.get(key);
+		return writtenAt != WrittenAtIndex.ABSENT && clock.getAsLong() - writtenAt <= TTL_MS;
+	}
+
+	/**
+	 * Reads the stored outcome of a player.
+	 *
+	 * @param key      The encoded player name.
+	 * @param snapshot The snapshot to fill if the player was found.
+	 * @return {@link SnapshotCache.Status#FOUND} or {@link SnapshotCache.Status#NOT_FOUND}, or null if there is no unexpired record.
+	 */
+	synchronized SnapshotCache.Status read(long key, HiscoresSnapshot snapshot)
+	{
+		final int slot = liveSlot(key);
+		if (slot < 0)
+		{
+			return null;
+		}
+
+		final int base = recordOffset(slot);
+		if (buffer.get(base + OFFSET_STATUS) == STATUS_NOT_FOUND)
+		{
+			return SnapshotCache.Status.NOT_FOUND;
+		}
+
+		snapshot.reset();
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			final int offset = base + OFFSET_CATEGORIES + ordinal * CATEGORY_BYTES;
+			final int xpSlot = XP_SLOTS[ordinal];
+			final long xp = xpSlot >= 0 ? buffer.getLong(base + OFFSET_XP + xpSlot * 8) : 0;
+			snapshot.set(ordinal, buffer.getInt(offset), buffer.getInt(offset + 4), xp, buffer.get(offset + 8));
+		}
+		snapshot.setRowCount(buffer.getShort(base + OFFSET_ROW_COUNT));
+		return SnapshotCache.Status.FOUND;
+	}
+
+	/**
+	 * @return The {@link GameMode#bit() bits} of the game modes checked in the stored lookup of the player, or 0 if
+	 * there is no unexpired record.
+	 */
+	synchronized int checkedModes(long key)
+	{
+		final int slot = indexedSlot(key);
+		return slot < 0 ? 0 : buffer.get(recordOffset(slot) + OFFSET_CHECKED_MODES) & 0xFF;
+	}
+
+	/**
+	 * @return The bits of the game modes the player was found in by the stored lookup, or 0 if there is no unexpired
+	 * record.
+	 */
+	synchronized int foundModes(long key)
+	{
+		final int slot = indexedSlot(key);
+		return slot < 0 ? 0 : buffer.get(recordOffset(slot) + OFFSET_FOUND_MODES) & 0xFF;
+	}
+
+	/**
+	 * Appends the outcome of a lookup. Only the main hiscores are stored, the other game modes are looked up again
+	 * for the players found in them.
+	 *
+	 * @param key          The encoded player name.
+	 * @param status       Either {@link SnapshotCache.Status#FOUND} or {@link SnapshotCache.Status#NOT_FOUND}.
+	 * @param snapshot     The parsed main hiscores of a found player, ignored otherwise.
+	 * @param checkedModes The {@link GameMode#bit() bits} of the game modes that were checked.
+	 * @param foundModes   The bits of the game modes the player was found in.
+	 */
+	synchronized void write(long key, SnapshotCache.Status status, HiscoresSnapshot snapshot, int checkedModes, int foundModes)
+	{
+		if (key == NameCodec.INVALID || (status != SnapshotCache.Status.FOUND && status != SnapshotCache.Status.NOT_FOUND))
+		{
+			return;
+		}
+
+		if (appendSlot == MAX_RECORDS)
+		{
+			compact();
+			if (appendSlot == MAX_RECORDS)
+			{
+				return;
+			}
+		}
+
+		final int slot = appendSlot++;
+		final int base = recordOffset(slot);
+
+		// Invalidate the slot first, a left-over record must not survive a torn write
+		buffer.putInt(base + OFFSET_MARKER, 0);
+		final long writtenAt = clock.getAsLong();
+		buffer.putLong(base + OFFSET_WRITTEN_AT, writtenAt);
+		buffer.put(base + OFFSET_STATUS, status == SnapshotCache.Status.FOUND ? STATUS_FOUND : STATUS_NOT_FOUND);
+		buffer.putLong(base + OFFSET_KEY, key);
+
+		final boolean found = status == SnapshotCache.Status.FOUND;
+		buffer.putShort(base + OFFSET_ROW_COUNT, (short) (found ? snapshot.getRowCount() : 0));
+		buffer.put(base + OFFSET_CHECKED_MODES, (byte) checkedModes);
+		buffer.put(base + OFFSET_FOUND_MODES, (byte) foundModes);
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			final int offset = base + OFFSET_CATEGORIES + ordinal * CATEGORY_BYTES;
+			buffer.putInt(offset, found ? snapshot.rankAt(ordinal) : 0);
+			buffer.putInt(offset + 4, found ? snapshot.scoreAt(ordinal) : 0);
+			buffer.put(offset + 8, found ? snapshot.flagsAt(ordinal) : 0);
+
+			final int xpSlot = XP_SLOTS[ordinal];
+			if (xpSlot >= 0)
+			{
+				buffer.putLong(base + OFFSET_XP + xpSlot * 8, found ? snapshot.xpAt(ordinal) : 0);
+			}
+		}
+
+		buffer.putInt(base + OFFSET_CRC, checksum(base));
+		buffer.putInt(base + OFFSET_MARKER, RECORD_MAGIC);
+		index.put(key, slot);
+		writtenAtIndex.put(key, writtenAt);
+	}
+
+	synchronized int size()
+	{
+		return index.size();
+	}
+
+	/**
+	 * @return The keys of every player with an unexpired record.
+	 */
+	synchronized long[] freshKeys()
+	{
+		final long now = clock.getAsLong();
+		final long[] keys = new long[index.size()];
+		int count = 0;
+		for (int entry = 0; entry < index.capacity(); entry++)
+		{
+			final long key = index.keyAt(entry);
+			if (key != 0 && !isExpired(index.valueAt(entry), now))
+			{
+				keys[count++] = key;
+			}
+		}
+		return Arrays.copyOf(keys, count);
+	}
+
+	/**
+	 * Flushes the mapped file to disk and closes it.
+	 */
+	synchronized void close()
+	{
+		try
+		{
+			buffer.force();
+			file.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to close the hiscores store", e);
+		}
+	}
+
+	/**
+	 * Rebuilds the index from the mapped file, skipping torn records and keeping the newest record of every player.
+	 */
+	private void load()
+	{
+		int loaded = 0;
+		int lastUsedSlot = -1;
+		for (int slot = 0; slot < MAX_RECORDS; slot++)
+		{
+			final int base = recordOffset(slot);
+			final int marker = buffer.getInt(base + OFFSET_MARKER);
+			if (marker == 0)
+			{
+				// Never written, or torn by a crash during an append or compaction
+				continue;
+			}
+
+			lastUsedSlot = slot;
+
+			if (marker != RECORD_MAGIC || buffer.getInt(base + OFFSET_CRC) != checksum(base))
+			{
+				continue;
+			}
+
+			final long key = buffer.getLong(base + OFFSET_KEY);
+			if (key == NameCodec.INVALID)
+			{
+				continue;
+			}
+
+			final int previous = index.get(key, -1);
+			if (previous < 0 || writtenAt(previous) <= writtenAt(slot))
+			{
+				index.put(key, slot);
+			}
+			loaded++;
+		}
+
+		appendSlot = lastUsedSlot + 1;
+		writtenAtIndex = indexWriteTimes();
+		log.debug("Loaded {} hiscores records for {} players", loaded, index.size());
+	}
+
+	/**
+	 * Moves the newest unexpired record of every player to the start of the file.
+	 * If that would still leave the file more than three quarters full, the oldest players are dropped as well.
+	 */
+	private void compact()
+	{
+		final long now = clock.getAsLong();
+		long cutoff = now - TTL_MS;
+
+		final int target = MAX_RECORDS * 3 / 4;
+		if (index.size() > target)
+		{
+			long[] writtenAt = new long[index.size()];
+			int i = 0;
+			for (int entry = 0; entry < index.capacity(); entry++)
+			{
+				if (index.keyAt(entry) != 0)
+				{
+					writtenAt[i++] = writtenAt(index.valueAt(entry));
+				}
+			}
+			Arrays.sort(writtenAt);
+			cutoff = Math.max(cutoff, writtenAt[writtenAt.length - target]);
+		}
+
+		// Visit the live records in slot order so that a record is only ever copied towards the start of the file
+		final boolean[] live = new boolean[MAX_RECORDS];
+		for (int entry = 0; entry < index.capacity(); entry++)
+		{
+			if (index.keyAt(entry) != 0)
+			{
+				final int slot = index.valueAt(entry);
+				live[slot] = writtenAt(slot) >= cutoff;
+			}
+		}
+
+		index.clear();
+		int next = 0;
+		for (int slot = 0; slot < MAX_RECORDS; slot++)
+		{
+			if (!live[slot])
+			{
+				continue;
+			}
+
+			final int base = recordOffset(slot);
+			if (slot != next)
+			{
+				copyRecord(base, recordOffset(next));
+			}
+			index.put(buffer.getLong(recordOffset(next) + OFFSET_KEY), next);
+			next++;
+		}
+
+		for (int slot = next; slot < MAX_RECORDS; slot++)
+		{
+			buffer.putInt(recordOffset(slot) + OFFSET_MARKER, 0);
+		}
+
+		log.debug("Compacted the hiscores store from {} to {} records", appendSlot, next);
+		appendSlot = next;
+		writtenAtIndex = indexWriteTimes();
+	}
+
+	private void copyRecord(int from, int to)
+	{
+		final ByteBuffer source = buffer.duplicate();
+		source.position(from + OFFSET_CRC).limit(from + RECORD_SIZE);
+		final ByteBuffer target = buffer.duplicate();
+		target.position(to + OFFSET_CRC);
+
+		buffer.putInt(to + OFFSET_MARKER, 0);
+		target.put(source);
+		buffer.putInt(to + OFFSET_MARKER, RECORD_MAGIC);
+	}
+
+	/**
+	 * @return A new index of the write time of every record in {@link #index}.
+	 */
+	private WrittenAtIndex indexWriteTimes()
+	{
+		final WrittenAtIndex writeTimes = new WrittenAtIndex();
+		for (int entry = 0; entry < index.capacity(); entry++)
+		{
+			final long key = index.keyAt(entry);
+			if (key != 0)
+			{
+				writeTimes.put(key, writtenAt(index.valueAt(entry)));
+			}
+		}
+		return writeTimes;
+	}
+
+	/**
+	 * @return The slot of the intact, unexpired record of the player, or -1 if there is none or the record in the slot
+	 * no longer passes its CRC.
+	 */
+	private int liveSlot(long key)
+	{
+		final int slot = indexedSlot(key);
+		return slot >= 0 && buffer.getInt(recordOffset(slot) + OFFSET_CRC) == checksum(recordOffset(slot)) ? slot : -1;
+	}
+
+	/**
+	 * @return The slot of the unexpired record of the player, or -1 if there is none or the slot no longer holds a record
+	 * of the player. The CRC is not checked.
+	 */
+	private int indexedSlot(long key)
+	{
+		final int slot = index.get(key, -1);
+		if (slot < 0 || isExpired(slot, clock.getAsLong()))
+		{
+			return -1;
+		}
+
+		final int base = recordOffset(slot);
+		return buffer.getInt(base + OFFSET_MARKER) == RECORD_MAGIC && buffer.getLong(base + OFFSET_KEY) == key ? slot : -1;
+	}
+
+	private boolean isExpired(int slot, long now)
+	{
+		return now - writtenAt(slot) > TTL_MS;
+	}
+
+	private long writtenAt(int slot)
+	{
+		return buffer.getLong(recordOffset(slot) + OFFSET_WRITTEN_AT);
+	}
+
+	private int checksum(int base)
+	{
+		ByteBuffer record = buffer.duplicate();
+		record.position(base + OFFSET_WRITTEN_AT).limit(base + RECORD_SIZE);
+		crc.reset();
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+
+	private static int recordOffset(int slot)
+	{
+		return HEADER_SIZE + slot * RECORD_SIZE;
+	}
+
+	/**
+	 * A map from player keys to record write times that can be read while the store writes to it. Only the store writes,
+	 * while locked. A new key is published after its write time, and keys are never removed: compaction builds a new
+	 * index instead. A file holds at most {@link #MAX_RECORDS} players between compactions, so the table, twice that
+	 * size, never fills up.
+	 */
+	private static final class WrittenAtIndex
+	{
+		static final long ABSENT = Long.MIN_VALUE;
+
+		private static final int CAPACITY = MAX_RECORDS * 2;
+
+		private final AtomicLongArray keys = new AtomicLongArray(CAPACITY);
+		private final AtomicLongArray writtenAt = new AtomicLongArray(CAPACITY);
+
+		/**
+		 * @return The write time of the player's newest record, or {@link #ABSENT} if the player has none.
+		 */
+		long get(long key)
+		{
+			for (int slot = LongHashTable.hash(key) & (CAPACITY - 1); ; slot = (slot + 1) & (CAPACITY - 1))
+			{
+				final long existing = keys.get(slot);
+				if (existing == key)
+				{
+					return writtenAt.get(slot);
+				}
+				if (existing == 0)
+				{
+					return ABSENT;
+				}
+			}
+		}
+
+		void put(long key, long millis)
+		{
+			for (int slot = LongHashTable.hash(key) & (CAPACITY - 1); ; slot = (slot + 1) & (CAPACITY - 1))
+			{
+				final long existing = keys.get(slot);
+				if (existing == key || existing == 0)
+				{
+					writtenAt.set(slot, millis);
+					if (existing == 0)
+					{
+						keys.set(slot, key);
+					}
+					return;
+				}
+			}
+		}
+	}
+}
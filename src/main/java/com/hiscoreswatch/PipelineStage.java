@@ -0,0 +1,96 @@
+package com.hiscoreswatch;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+
+/**
+ * One stage of the lookup pipeline, a fixed pool of threads fed by a bounded queue.
+ * <p>
+ * When the queue is full the submitting thread runs the task itself. That pushes back on the stage before this one,
+ * which then takes longer to hand over its next task, instead of queueing without bound or dropping work. Tasks
+ * submitted after {@link #shutdown()} are discarded.
+ */
+class PipelineStage implements Executor
+{
+	@Getter
+	private final String name;
+	private final ThreadPoolExecutor pool;
+
+	/**
+	 * How long tasks waited in the queue, in microseconds.
+	 */
+	@Getter
+	private final HiscoresWatchMetrics.Histogram queueMicros = new HiscoresWatchMetrics.Histogram();
+	private final AtomicLong saturatedCount = new AtomicLong();
+
+	/**
+	 * @param name          The name of the stage, used for its threads and metrics.
+	 * @param threads       The number of threads running the stage.
+	 * @param queueCapacity The number of tasks that can wait before submitters run them themselves.
+	 */
+	PipelineStage(String name, int threads, int queueCapacity)
+	{
+		this.name = name;
+		this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueCapacity),
+				new ThreadFactoryBuilder().setNameFormat("hiscores-watch-" + name + "-%d").setDaemon(true).build(),
+				(task, executor) ->
+				{
+					if (!executor.isShutdown())
+					{
+						saturatedCount.incrementAndGet();
+						task.run();
+					}
+				});
+	}
+
+	@Override
+	public void execute(Runnable task)
+	{
+		final long queuedAt = System.nanoTime();
+		pool.execute(() ->
+		{
+			queueMicros.record((System.nanoTime() - queuedAt) / 1000);
+			task.run();
+		});
+	}
+
+	/**
+	 * @return The number of tasks waiting for a thread.
+	 */
+	int getQueueSize()
+	{
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * @return The number of tasks run by their submitter because the queue was full.
+	 */
+	long getSaturatedCount()
+	{
+		return saturatedCount.get();
+	}
+
+	/**
+	 * Stops the stage, letting queued tasks finish but accepting no new ones.
+	 */
+	void shutdown()
+	{
+		pool.shutdown();
+	}
+
+	/**
+	 * Waits for the tasks left after {@link #shutdown()} to finish.
+	 *
+	 * @return True if the stage stopped before the timeout.
+	 */
+	boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException
+	{
+		return pool.awaitTermination(timeout, unit);
+	}
+}
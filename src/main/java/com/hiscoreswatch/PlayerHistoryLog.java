@@ -0,0 +1,625 @@
+package com.hiscoreswatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A memory-mapped, append-only log of the hiscores observed for every player, so a player can be compared with how
+ * they were when last seen.
+ * <p>
+ * Each observation is a record holding only what changed since the previous observation of the same player: a bitmap
+ * of the changed categories followed by columns of rank, score and xp deltas, zigzag varint encoded. An unchanged
+ * category costs one bit. Records point back to the previous record of their player, up to a keyframe, which is the
+ * same encoding against an empty observation; a keyframe is written every {@link #MAX_CHAIN_LENGTH} observations to
+ * bound the cost of a read.
+ * <p>
+ * When the file is full it is compacted: the latest observation of every player seen within {@link #RETENTION_MS} is
+ * rewritten as a keyframe, newest first, dropping the oldest players if they would not fit in three quarters of the
+ * file. The first record is only validated once the rest has been written, so a crash during compaction empties the
+ * log rather than leaving broken chains. Thread safe.
+ */
+@Slf4j
+class PlayerHistoryLog
+{
+	static final long RETENTION_MS = TimeUnit.DAYS.toMillis(90);
+	static final int FILE_SIZE = 16 << 20;
+	static final int MAX_CHAIN_LENGTH = 16;
+
+	private static final int FILE_MAGIC = 0x4853484C; // HSHL
+	private static final int RECORD_MAGIC = 0x48534852; // HSHR
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int NO_PREVIOUS = -1;
+
+	private static final Hiscores[] HISCORES = Hiscores.values();
+	private static final int CATEGORY_COUNT = HiscoresSnapshot.CATEGORY_COUNT;
+	private static final int BITMAP_BYTES = (CATEGORY_COUNT + 7) / 8;
+
+	// Record layout, the columns follow the bitmap
+	private static final int OFFSET_MARKER = 0;
+	private static final int OFFSET_CRC = 4;
+	private static final int OFFSET_LENGTH = 8;
+	private static final int OFFSET_KEY = 12;
+	private static final int OFFSET_OBSERVED_AT = 20;
+	private static final int OFFSET_PREVIOUS = 28;
+	private static final int OFFSET_CHAIN_LENGTH = 32;
+	private static final int OFFSET_BITMAP = 33;
+	private static final int OFFSET_COLUMNS = OFFSET_BITMAP + BITMAP_BYTES;
+	// A varint takes at most 5 bytes for an int and 10 for a long
+	private static final int MAX_RECORD_SIZE = OFFSET_COLUMNS + CATEGORY_COUNT * (5 + 5 + 10);
+
+	/**
+	 * The hiscores of a player at one point in time, 0 in every column of a category that was not on the hiscores.
+	 */
+	static final class Observation
+	{
+		@Getter
+		private final long observedAtMillis;
+		private final int[] ranks = new int[CATEGORY_COUNT];
+		private final int[] scores = new int[CATEGORY_COUNT];
+		private final long[] xp = new long[CATEGORY_COUNT];
+
+		private Observation(long observedAtMillis)
+		{
+			this.observedAtMillis = observedAtMillis;
+		}
+
+		static Observation of(HiscoresSnapshot snapshot, long observedAtMillis)
+		{
+			final Observation observation = new Observation(observedAtMillis);
+			for (Hiscores hiscore : HISCORES)
+			{
+				if (snapshot.isValid(hiscore))
+				{
+					final int ordinal = hiscore.ordinal();
+					observation.ranks[ordinal] = snapshot.getRank(hiscore);
+					observation.scores[ordinal] = snapshot.getScore(hiscore);
+					observation.xp[ordinal] = snapshot.hasXp(hiscore) ? snapshot.getXp(hiscore) : 0;
+				}
+			}
+			return observation;
+		}
+
+		/**
+		 * Fills a snapshot with the observed hiscores, as if they had just been looked up.
+		 */
+		void copyTo(HiscoresSnapshot snapshot)
+		{
+			snapshot.reset();
+			int rowCount = 0;
+			for (Hiscores hiscore : HISCORES)
+			{
+				final int ordinal = hiscore.ordinal();
+				if (ranks[ordinal] != 0)
+				{
+					final byte flags = hiscore.isSkill() ? HiscoresSnapshot.FLAG_VALID | HiscoresSnapshot.FLAG_XP : HiscoresSnapshot.FLAG_VALID;
+					snapshot.set(ordinal, ranks[ordinal], scores[ordinal], xp[ordinal], flags);
+				}
+				rowCount = Math.max(rowCount, hiscore.getApiIndex() + 1);
+			}
+			snapshot.setRowCount(rowCount);
+		}
+
+		/**
+		 * @return True if the category was on the hiscores, ranked or not. Ranks are never 0 in a hiscores response.
+		 */
+		boolean isKnown(Hiscores hiscore)
+		{
+			return ranks[hiscore.ordinal()] != 0;
+		}
+
+		int getRank(Hiscores hiscore)
+		{
+			return ranks[hiscore.ordinal()];
+		}
+
+		int getScore(Hiscores hiscore)
+		{
+			return scores[hiscore.ordinal()];
+		}
+
+		long getXp(Hiscores hiscore)
+		{
+			return xp[hiscore.ordinal()];
+		}
+	}
+
+	/**
+	 * How a player changed between two observations. Unranked categories count as 0, and categories missing from
+	 * either observation as unchanged.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static final class Change
+	{
+		private final Observation previous;
+		private final Observation current;
+
+		long getElapsedMillis()
+		{
+			return current.observedAtMillis - previous.observedAtMillis;
+		}
+
+		long getXpGained(Hiscores hiscore)
+		{
+			if (!previous.isKnown(hiscore) || !current.isKnown(hiscore))
+			{
+				return 0;
+			}
+			return Math.max(0, current.getXp(hiscore)) - Math.max(0, previous.getXp(hiscore));
+		}
+
+		int getScoreGained(Hiscores hiscore)
+		{
+			if (!previous.isKnown(hiscore) || !current.isKnown(hiscore))
+			{
+				return 0;
+			}
+			return Math.max(0, current.getScore(hiscore)) - Math.max(0, previous.getScore(hiscore));
+		}
+
+		/**
+		 * @return How many places the player climbed in the category, negative if they fell, 0 unless ranked both times.
+		 */
+		int getRanksClimbed(Hiscores hiscore)
+		{
+			final int before = previous.getRank(hiscore);
+			final int after = current.getRank(hiscore);
+			return before > 0 && after > 0 ? before - after : 0;
+		}
+	}
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final CRC32 crc = new CRC32();
+	private final byte[] scratch = new byte[MAX_RECORD_SIZE];
+	private final ByteBuffer scratchBuffer = ByteBuffer.wrap(scratch);
+
+	/**
+	 * The offset of the latest record of every player.
+	 */
+	private final LongIntHashMap index = new LongIntHashMap(1024);
+	private int appendOffset = HEADER_SIZE;
+
+	private PlayerHistoryLog(RandomAccessFile file, MappedByteBuffer buffer)
+	{
+		this.file = file;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Opens the log, creating the file if needed. A file written with a different layout is discarded.
+	 */
+	static PlayerHistoryLog open(File logFile) throws IOException
+	{
+		File parent = logFile.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create " + parent);
+		}
+
+		RandomAccessFile file = new RandomAccessFile(logFile, "rw");
+		try
+		{
+			boolean compatible = file.length() == FILE_SIZE
+					&& file.readInt() == FILE_MAGIC
+					&& file.readInt() == FORMAT_VERSION
+					&& file.readInt() == CATEGORY_COUNT;
+			if (!compatible)
+			{
+				if (file.length() > 0)
+				{
+					log.info("Discarding incompatible player history {}", logFile);
+				}
+				file.setLength(0);
+				file.setLength(FILE_SIZE);
+			}
+
+			MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+			if (!compatible)
+			{
+				buffer.putInt(0, FILE_MAGIC);
+				buffer.putInt(4, FORMAT_VERSION);
+				buffer.putInt(8, CATEGORY_COUNT);
+			}
+
+			PlayerHistoryLog history = new PlayerHistoryLog(file, buffer);
+			history.load();
+			return history;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The latest observation of the player, or null if they have not been seen.
+	 */
+	synchronized Observation lastObservation(long key)
+	{
+		final int offset = index.get(key, NO_PREVIOUS);
+		return offset == NO_PREVIOUS ? null : decode(key, offset);
+	}
+
+	/**
+	 * Compares hiscores with the latest observation of the player, without recording them.
+	 *
+	 * @return The change since the player was last seen, or null if they have not been seen.
+	 */
+	synchronized Change changeSinceLastSeen(long key, HiscoresSnapshot snapshot, long nowMillis)
+	{
+		final Observation previous = lastObservation(key);
+		return previous == null ? null : new Change(previous, Observation.of(snapshot, nowMillis));
+	}
+
+	/**
+	 * Appends an observation of a player.
+	 *
+	 * @return The change since the player was last seen, or null if they have not been seen.
+	 */
+	synchronized Change record(long key, HiscoresSnapshot snapshot, long nowMillis)
+	{
+		if (key == NameCodec.INVALID)
+		{
+			return null;
+		}
+
+		if (appendOffset + MAX_RECORD_SIZE > FILE_SIZE)
+		{
+			compact(nowMillis);
+		}
+
+		final int previousOffset = index.get(key, NO_PREVIOUS);
+		final Observation previous = previousOffset == NO_PREVIOUS ? null : decode(key, previousOffset);
+		final Observation current = Observation.of(snapshot, nowMillis);
+
+		final int chainLength = previous == null ? 0 : (buffer.get(previousOffset + OFFSET_CHAIN_LENGTH) & 0xFF) + 1;
+		final int length = chainLength == 0 || chainLength > MAX_CHAIN_LENGTH
+				? encode(key, current, null, NO_PREVIOUS, 0)
+				: encode(key, current, previous, previousOffset, chainLength);
+
+		final int offset = appendOffset;
+		final ByteBuffer target = buffer.duplicate();
+		target.position(offset);
+		target.put(scratch, 0, length);
+		// The marker goes in last, so a record torn by a crash ends the log
+		buffer.putInt(offset + OFFSET_MARKER, RECORD_MAGIC);
+		appendOffset += length;
+		index.put(key, offset);
+
+		return previous == null ? null : new Change(previous, current);
+	}
+
+	synchronized int size()
+	{
+		return index.size();
+	}
+
+	/**
+	 * @return The share of the file in use, from 0 to 1.
+	 */
+	synchronized double getFill()
+	{
+		return appendOffset / (double) FILE_SIZE;
+	}
+
+	/**
+	 * Flushes the mapped file to disk and closes it.
+	 */
+	synchronized void close()
+	{
+		try
+		{
+			buffer.force();
+			file.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to close the player history", e);
+		}
+	}
+
+	/**
+	 * Rebuilds the index by scanning the records up to the first one that was never completed.
+	 */
+	private void load()
+	{
+		int offset = HEADER_SIZE;
+		int loaded = 0;
+		while (offset + OFFSET_COLUMNS <= FILE_SIZE && buffer.getInt(offset + OFFSET_MARKER) == RECORD_MAGIC)
+		{
+			final int length = buffer.getInt(offset + OFFSET_LENGTH);
+			if (length < OFFSET_COLUMNS || length > MAX_RECORD_SIZE || offset + length > FILE_SIZE)
+			{
+				break;
+			}
+
+			if (buffer.getInt(offset + OFFSET_CRC) == checksum(buffer, offset, length))
+			{
+				index.put(buffer.getLong(offset + OFFSET_KEY), offset);
+				loaded++;
+			}
+			offset += length;
+		}
+
+		appendOffset = offset;
+		log.debug("Loaded {} history records for {} players", loaded, index.size());
+	}
+
+	/**
+	 * Rewrites the latest observation of every recently seen player as a keyframe, see the class description.
+	 */
+	private void compact(long nowMillis)
+	{
+		final int playerCount = index.size();
+		final long[] keys = new long[playerCount];
+		final int[] offsets = new int[playerCount];
+		final long[] observedAt = new long[playerCount];
+		int count = 0;
+		for (int entry = 0; entry < index.capacity(); entry++)
+		{
+			final long key = index.keyAt(entry);
+			if (key == 0)
+			{
+				continue;
+			}
+
+			final int offset = index.valueAt(entry);
+			final long at = buffer.getLong(offset + OFFSET_OBSERVED_AT);
+			if (nowMillis - at <= RETENTION_MS)
+			{
+				keys[count] = key;
+				offsets[count] = offset;
+				observedAt[count] = at;
+				count++;
+			}
+		}
+
+		final Integer[] newestFirst = new Integer[count];
+		for (int i = 0; i < count; i++)
+		{
+			newestFirst[i] = i;
+		}
+		Arrays.sort(newestFirst, Comparator.comparingLong((Integer i) -> observedAt[i]).reversed());
+
+		// Every observation is decoded before any is overwritten
+		final ByteBuffer image = ByteBuffer.allocate((FILE_SIZE - HEADER_SIZE) * 3 / 4);
+		final LongIntHashMap compacted = new LongIntHashMap(Math.max(16, count));
+		for (int i : newestFirst)
+		{
+			final Observation observation = decode(keys[i], offsets[i]);
+			if (observation == null)
+			{
+				continue;
+			}
+
+			final int length = encode(keys[i], observation, null, NO_PREVIOUS, 0);
+			if (image.position() + length > image.capacity())
+			{
+				break;
+			}
+			compacted.put(keys[i], HEADER_SIZE + image.position());
+			image.put(scratch, 0, length);
+			image.putInt(image.position() - length + OFFSET_MARKER, RECORD_MAGIC);
+		}
+
+		final int end = HEADER_SIZE + image.position();
+		buffer.putInt(HEADER_SIZE + OFFSET_MARKER, 0);
+		if (end > HEADER_SIZE)
+		{
+			final ByteBuffer target = buffer.duplicate();
+			target.position(HEADER_SIZE + 4);
+			image.flip();
+			image.position(4);
+			target.put(image);
+		}
+		for (int offset = Math.max(end, HEADER_SIZE + 4); offset < appendOffset; offset++)
+		{
+			buffer.put(offset, (byte) 0);
+		}
+		if (end > HEADER_SIZE)
+		{
+			buffer.putInt(HEADER_SIZE + OFFSET_MARKER, RECORD_MAGIC);
+		}
+
+		log.debug("Compacted the player history from {} to {} bytes, {} of {} players kept", appendOffset, end, compacted.size(), playerCount);
+		index.clear();
+		for (int entry = 0; entry < compacted.capacity(); entry++)
+		{
+			if (compacted.keyAt(entry) != 0)
+			{
+				index.put(compacted.keyAt(entry), compacted.valueAt(entry));
+			}
+		}
+		appendOffset = end;
+	}
+
+	/**
+	 * Decodes the observation stored by a record, replaying its chain from the keyframe.
+	 *
+	 * @return The observation, or null if the chain is broken.
+	 */
+	private Observation decode(long key, int offset)
+	{
+		final int[] chain = new int[MAX_CHAIN_LENGTH + 1];
+		int count = 0;
+		int at = offset;
+		while (true)
+		{
+			if (count == chain.length || !isRecordOf(key, at))
+			{
+				log.debug("Discarding the broken history of player {}", key);
+				return null;
+			}
+
+			chain[count++] = at;
+			final int previous = buffer.getInt(at + OFFSET_PREVIOUS);
+			if (previous == NO_PREVIOUS)
+			{
+				break;
+			}
+			if (previous >= at)
+			{
+				return null;
+			}
+			at = previous;
+		}
+
+		final Observation observation = new Observation(buffer.getLong(offset + OFFSET_OBSERVED_AT));
+		final ByteBuffer in = buffer.duplicate();
+		for (int i = count - 1; i >= 0; i--)
+		{
+			final int record = chain[i];
+			in.position(record + OFFSET_COLUMNS);
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				if (isChanged(record, ordinal))
+				{
+					observation.ranks[ordinal] += (int) readVarLong(in);
+				}
+			}
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				if (isChanged(record, ordinal))
+				{
+					observation.scores[ordinal] += (int) readVarLong(in);
+				}
+			}
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				if (HISCORES[ordinal].isSkill() && isChanged(record, ordinal))
+				{
+					observation.xp[ordinal] += readVarLong(in);
+				}
+			}
+		}
+		return observation;
+	}
+
+	/**
+	 * Encodes an observation into the scratch buffer, with the marker left unset.
+	 *
+	 * @param base The observation to encode against, or null for a keyframe.
+	 * @return The length of the record.
+	 */
+	private int encode(long key, Observation current, Observation base, int previousOffset, int chainLength)
+	{
+		Arrays.fill(scratch, 0, OFFSET_COLUMNS, (byte) 0);
+		scratchBuffer.clear();
+		scratchBuffer.putLong(OFFSET_KEY, key);
+		scratchBuffer.putLong(OFFSET_OBSERVED_AT, current.observedAtMillis);
+		scratchBuffer.putInt(OFFSET_PREVIOUS, previousOffset);
+		scratchBuffer.put(OFFSET_CHAIN_LENGTH, (byte) chainLength);
+
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			final boolean changed = base == null
+					? current.ranks[ordinal] != 0 || current.scores[ordinal] != 0 || current.xp[ordinal] != 0
+					: current.ranks[ordinal] != base.ranks[ordinal] || current.scores[ordinal] != base.scores[ordinal] || current.xp[ordinal] != base.xp[ordinal];
+			if (changed)
+			{
+				scratch[OFFSET_BITMAP + (ordinal >>> 3)] |= 1 << (ordinal & 7);
+			}
+		}
+
+		// Columnar: every rank delta, then every score delta, then every xp delta
+		scratchBuffer.position(OFFSET_COLUMNS);
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			if ((scratch[OFFSET_BITMAP + (ordinal >>> 3)] & 1 << (ordinal & 7)) != 0)
+			{
+				writeVarLong(scratchBuffer, current.ranks[ordinal] - (base == null ? 0 : base.ranks[ordinal]));
+			}
+		}
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			if ((scratch[OFFSET_BITMAP + (ordinal >>> 3)] & 1 << (ordinal & 7)) != 0)
+			{
+				writeVarLong(scratchBuffer, current.scores[ordinal] - (base == null ? 0 : base.scores[ordinal]));
+			}
+		}
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			if (HISCORES[ordinal].isSkill() && (scratch[OFFSET_BITMAP + (ordinal >>> 3)] & 1 << (ordinal & 7)) != 0)
+			{
+				writeVarLong(scratchBuffer, current.xp[ordinal] - (base == null ? 0 : base.xp[ordinal]));
+			}
+		}
+
+		final int length = scratchBuffer.position();
+		scratchBuffer.putInt(OFFSET_LENGTH, length);
+		scratchBuffer.putInt(OFFSET_CRC, checksum(scratchBuffer, 0, length));
+		return length;
+	}
+
+	private boolean isChanged(int record, int ordinal)
+	{
+		return (buffer.get(record + OFFSET_BITMAP + (ordinal >>> 3)) & 1 << (ordinal & 7)) != 0;
+	}
+
+	private boolean isRecordOf(long key, int offset)
+	{
+		if (offset < HEADER_SIZE || offset + OFFSET_COLUMNS > appendOffset
+				|| buffer.getInt(offset + OFFSET_MARKER) != RECORD_MAGIC
+				|| buffer.getLong(offset + OFFSET_KEY) != key)
+		{
+			return false;
+		}
+
+		final int length = buffer.getInt(offset + OFFSET_LENGTH);
+		return length >= OFFSET_COLUMNS && offset + length <= appendOffset
+				&& buffer.getInt(offset + OFFSET_CRC) == checksum(buffer, offset, length);
+	}
+
+	/**
+	 * @return The CRC of a record, from its length to its end.
+	 */
+	private int checksum(ByteBuffer source, int offset, int length)
+	{
+		ByteBuffer record = source.duplicate();
+		record.position(offset + OFFSET_LENGTH).limit(offset + length);
+		crc.reset();
+		crc.update(record);
+		return (int) crc.getValue();
+	}
+
+	private static void writeVarLong(ByteBuffer out, long value)
+	{
+		// Zigzag, so small negative deltas stay small
+		long bits = (value << 1) ^ (value >> 63);
+		while ((bits & ~0x7FL) != 0)
+		{
+			out.put((byte) ((bits & 0x7F) | 0x80));
+			bits >>>= 7;
+		}
+		out.put((byte) bits);
+	}
+
+	private static long readVarLong(ByteBuffer in)
+	{
+		long bits = 0;
+		int shift = 0;
+		byte b;
+		do
+		{
+			b = in.get();
+			bits |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		}
+		while ((b & 0x80) != 0 && shift < 70);
+		return (bits >>> 1) ^ -(bits & 1);
+	}
+}
@@ -0,0 +1,197 @@
+package com.hiscoreswatch;
+
+/**
+ * A parser for the HTML ranking table pages of the hiscores website.
+ * <p>
+ * Each row of the table holds a rank, a player name and a score. Skill tables have a level and an xp column instead of
+ * the score, so the level is read as the score and the xp column is read as well. Rows that do not parse are skipped.
+ * The heading of the page, its first {@code h2}, names the category of the table and is read along with the rows.
+ */
+final class RankingPageParser
+{
+	/**
+	 * The rows of a ranking page, in page order.
+	 */
+	static final class Rows
+	{
+		final int[] ranks;
+		final long[] keys;
+		final int[] scores;
+		final long[] xp;
+		int count;
+		/**
+		 * The heading of the page, or null if it has none.
+		 */
+		String heading;
+
+		Rows(int capacity)
+		{
+			ranks = new int[capacity];
+			keys = new long[capacity];
+			scores = new int[capacity];
+			xp = new long[capacity];
+		}
+	}
+
+	private static final String ROW_MARKER = "personal-hiscores__row";
+	private static final String HEADING_START = "<h2";
+	private static final String HEADING_END = "</h2>";
+	private static final int MAX_CELLS = 4;
+
+	private RankingPageParser()
+	{
+	}
+
+	/**
+	 * Parses the heading and the rows of a ranking page into the given rows, up to their capacity.
+	 *
+	 * @param html The page.
+	 * @param rows The rows to fill, their previous contents are discarded.
+	 */
+	static void parse(String html, Rows rows)
+	{
+		rows.heading = readHeading(html);
+		rows.count = 0;
+		final String[] cells = new String[MAX_CELLS];
+		int from = 0;
+		int rowStart;
+		while (rows.count < rows.ranks.length && (rowStart = html.indexOf(ROW_MARKER, from)) >= 0)
+		{
+			int rowEnd = html.indexOf("</tr>", rowStart);
+			if (rowEnd < 0)
+			{
+				rowEnd = html.length();
+			}
+			from = rowEnd;
+
+			final int cellCount = readCells(html, rowStart, rowEnd, cells);
+			if (cellCount < 3)
+			{
+				continue;
+			}
+
+			final long rank = parseNumber(cells[0]);
+			final long key = NameCodec.encode(cells[1]);
+			final long score = parseNumber(cells[2]);
+			if (rank <= 0 || rank > Integer.MAX_VALUE || key == NameCodec.INVALID || score < 0 || score > Integer.MAX_VALUE)
+			{
+				continue;
+			}
+
+			final int row = rows.count++;
+			rows.ranks[row] = (int) rank;
+			rows.keys[row] = key;
+			rows.scores[row] = (int) score;
+			rows.xp[row] = cellCount > 3 ? Math.max(0, parseNumber(cells[3])) : 0;
+		}
+	}
+
+	/**
+	 * @return The text of the first heading of the page, or null if it has none.
+	 */
+	private static String readHeading(String html)
+	{
+		final int headingStart = html.indexOf(HEADING_START);
+		if (headingStart < 0)
+		{
+			return null;
+		}
+
+		final int contentStart = html.indexOf('>', headingStart) + 1;
+		final int headingEnd = html.indexOf(HEADING_END, contentStart);
+		if (contentStart <= 0 || headingEnd < 0)
+		{
+			return null;
+		}
+
+		// Category names may hold an apostrophe or an ampersand
+		return text(html, contentStart, headingEnd)
+				.replace("&#39;", "'")
+				.replace("&amp;", "&");
+	}
+
+	/**
+	 * Reads the text of the cells of a row, without tags and with the name entities decoded.
+	 *
+	 * @return The number of cells read.
+	 */
+	private static int readCells(String html, int rowStart, int rowEnd, String[] cells)
+	{
+		int count = 0;
+		int position = rowStart;
+		while (count < cells.length)
+		{
+			final int cellStart = html.indexOf("<td", position);
+			if (cellStart < 0 || cellStart >= rowEnd)
+			{
+				break;
+			}
+
+			final int contentStart = html.indexOf('>', cellStart) + 1;
+			int cellEnd = html.indexOf("</td>", contentStart);
+			if (contentStart <= 0 || cellEnd < 0 || cellEnd > rowEnd)
+			{
+				break;
+			}
+
+			cells[count++] = text(html, contentStart, cellEnd);
+			position = cellEnd;
+		}
+		return count;
+	}
+
+	private static String text(String html, int start, int end)
+	{
+		final StringBuilder text = new StringBuilder(end - start);
+		boolean inTag = false;
+		for (int i = start; i < end; i++)
+		{
+			final char c = html.charAt(i);
+			if (c == '<')
+			{
+				inTag = true;
+			}
+			else if (c == '>')
+			{
+				inTag = false;
+			}
+			else if (!inTag)
+			{
+				text.append(c);
+			}
+		}
+
+		// Names use non-breaking spaces for their separators
+		return text.toString()
+				.replace("&#160;", " ")
+				.replace("&nbsp;", " ")
+				.replace('\u00A0', ' ')
+				.trim();
+	}
+
+	/**
+	 * @return The number with its thousands separators removed, or -1 if the text is not a number.
+	 */
+	private static long parseNumber(String text)
+	{
+		long value = 0;
+		int digits = 0;
+		for (int i = 0; i < text.length(); i++)
+		{
+			final char c = text.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				if (++digits > 18)
+				{
+					return -1;
+				}
+				value = value * 10 + (c - '0');
+			}
+			else if (c != ',')
+			{
+				return -1;
+			}
+		}
+		return digits == 0 ? -1 : value;
+	}
+}
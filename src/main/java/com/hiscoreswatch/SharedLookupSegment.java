@@ -0,0 +1,560 @@
+package com.hiscoreswatch;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A memory-mapped segment shared by the clients on this machine that opted into sharing, holding the outcomes of their
+ * recent main hiscores lookups and one request budget for all of them.
+ * <p>
+ * There is no coordinator: every operation holds an exclusive lock on the file, which the operating system releases
+ * when a client dies. Before looking a player up a client claims them, so the other clients wait for its result
+ * instead of looking the same player up. Players live in a fixed open-addressed table, the oldest entry of a full probe
+ * sequence is replaced. Outcomes expire after {@link PersistentSnapshotStore#TTL_MS} and claims after
+ * {@link #CLAIM_TTL_MS}, so a claim left behind by a dead client only delays the other clients.
+ * <p>
+ * If the lock is not acquired within {@link #LOCK_TIMEOUT_MS}, or the file fails, the segment is marked failed and
+ * every operation falls back to what a standalone client would do: nothing is shared, and requests are only limited by
+ * the client's own rate limiter.
+ */
+@Slf4j
+class SharedLookupSegment
+{
+	static final long CLAIM_TTL_MS = TimeUnit.SECONDS.toMillis(15);
+	static final int SLOT_COUNT = 4096;
+
+	private static final int MAX_PROBES = 16;
+	private static final long LOCK_TIMEOUT_MS = 250;
+	private static final long LOCK_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private static final int FILE_MAGIC = 0x4853534C; // HSSL
+	private static final int FORMAT_VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+
+	// Header layout
+	private static final int OFFSET_TOKENS = 16;
+	private static final int OFFSET_REFILLED_AT = 24;
+	private static final int OFFSET_PAUSED_UNTIL = 32;
+
+	private static final byte STATUS_CLAIMED = 1;
+	private static final byte STATUS_FOUND = 2;
+	private static final byte STATUS_NOT_FOUND = 3;
+
+	// Slot layout
+	private static final int OFFSET_KEY = 0;
+	private static final int OFFSET_WRITTEN_AT = 8;
+	private static final int OFFSET_STATUS = 16;
+	private static final int OFFSET_CHECKED_MODES = 17;
+	private static final int OFFSET_FOUND_MODES = 18;
+	private static final int OFFSET_ROW_COUNT = 19;
+	private static final int OFFSET_CATEGORIES = 21;
+	private static final int CATEGORY_BYTES = 4 + 4 + 1;
+	private static final int CATEGORY_COUNT = HiscoresSnapshot.CATEGORY_COUNT;
+
+	/**
+	 * Maps a category ordinal to its slot in the xp section, or -1 if the category has no xp column.
+	 */
+	private static final int[] XP_SLOTS = new int[CATEGORY_COUNT];
+	private static final int SKILL_COUNT;
+
+	static
+	{
+		int skills = 0;
+		for (Hiscores hiscore : Hiscores.values())
+		{
+			XP_SLOTS[hiscore.ordinal()] = hiscore.isSkill() ? skills++ : -1;
+		}
+		SKILL_COUNT = skills;
+	}
+
+	private static final int OFFSET_XP = OFFSET_CATEGORIES + CATEGORY_COUNT * CATEGORY_BYTES;
+	static final int SLOT_SIZE = OFFSET_XP + SKILL_COUNT * 8;
+	private static final long FILE_SIZE = HEADER_SIZE + (long) SLOT_COUNT * SLOT_SIZE;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final LongSupplier clock;
+
+	/**
+	 * True once the segment failed, after which it shares nothing and should be closed.
+	 */
+	@Getter
+	private volatile boolean failed;
+
+	private SharedLookupSegment(RandomAccessFile file, MappedByteBuffer buffer, LongSupplier clock)
+	{
+		this.file = file;
+		this.channel = file.getChannel();
+		this.buffer = buffer;
+		this.clock = clock;
+	}
+
+	/**
+	 * Opens the segment, creating the file if needed. A file written with a different layout is reset, the clients
+	 * still using it then fail their next operation and carry on standalone.
+	 *
+	 * @param segmentFile The file backing the segment, the same for every client on the machine.
+	 * @return The opened segment.
+	 */
+	static SharedLookupSegment open(File segmentFile) throws IOException
+	{
+		return open(segmentFile, System::currentTimeMillis);
+	}
+
+	static SharedLookupSegment open(File segmentFile, LongSupplier clock) throws IOException
+	{
+		File parent = segmentFile.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create " + parent);
+		}
+
+		RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+		try
+		{
+			SharedLookupSegment segment;
+			try (FileLock ignored = lock(file.getChannel()))
+			{
+				boolean compatible = file.length() == FILE_SIZE
+						&& file.readInt() == FILE_MAGIC
+						&& file.readInt() == FORMAT_VERSION
+						&& file.readInt() == SLOT_SIZE
+						&& file.readInt() == SLOT_COUNT;
+				if (!compatible)
+				{
+					if (file.length() > 0)
+					{
+						log.info("Resetting incompatible shared lookup segment {}", segmentFile);
+					}
+					file.setLength(0);
+					file.setLength(FILE_SIZE);
+				}
+
+				MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+				if (!compatible)
+				{
+					buffer.putInt(0, FILE_MAGIC);
+					buffer.putInt(4, FORMAT_VERSION);
+					buffer.putInt(8, SLOT_SIZE);
+					buffer.putInt(12, SLOT_COUNT);
+				}
+				segment = new SharedLookupSegment(file, buffer, clock);
+			}
+			return segment;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads the shared outcome of a player, or claims their lookup if there is none.
+	 *
+	 * @param key      The encoded player name.
+	 * @param snapshot The snapshot to fill if the player was found.
+	 * @return {@link SnapshotCache.Status#FOUND} or {@link SnapshotCache.Status#NOT_FOUND} if another client looked the
+	 * player up, {@link SnapshotCache.Status#PENDING} if another client is looking them up, or null if this client
+	 * should look them up.
+	 */
+	synchronized SnapshotCache.Status claim(long key, HiscoresSnapshot snapshot)
+	{
+		if (failed || key == NameCodec.INVALID)
+		{
+			return null;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			final long now = clock.getAsLong();
+			int slot = find(key);
+			if (slot >= 0)
+			{
+				final int base = slotOffset(slot);
+				final long age = now - buffer.getLong(base + OFFSET_WRITTEN_AT);
+				switch (buffer.get(base + OFFSET_STATUS))
+				{
+					case STATUS_CLAIMED:
+						if (age <= CLAIM_TTL_MS)
+						{
+							return SnapshotCache.Status.PENDING;
+						}
+						break;
+					case STATUS_FOUND:
+						if (age <= PersistentSnapshotStore.TTL_MS)
+						{
+							readSnapshot(base, snapshot);
+							return SnapshotCache.Status.FOUND;
+						}
+						break;
+					case STATUS_NOT_FOUND:
+						if (age <= PersistentSnapshotStore.TTL_MS)
+						{
+							return SnapshotCache.Status.NOT_FOUND;
+						}
+						break;
+				}
+			}
+			else
+			{
+				slot = insertionSlot(key);
+			}
+
+			final int base = slotOffset(slot);
+			buffer.putLong(base + OFFSET_KEY, key);
+			buffer.putLong(base + OFFSET_WRITTEN_AT, now);
+			buffer.put(base + OFFSET_STATUS, STATUS_CLAIMED);
+			return null;
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+			return null;
+		}
+	}
+
+	/**
+	 * @return The {@link GameMode#bit() bits} of the game modes checked but not found by the shared lookup of the
+	 * player, or 0 if there is no unexpired outcome.
+	 */
+	synchronized int knownAbsentModes(long key)
+	{
+		if (failed)
+		{
+			return 0;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			final int slot = find(key);
+			if (slot < 0)
+			{
+				return 0;
+			}
+
+			final int base = slotOffset(slot);
+			final byte status = buffer.get(base + OFFSET_STATUS);
+			if (status == STATUS_CLAIMED || clock.getAsLong() - buffer.getLong(base + OFFSET_WRITTEN_AT) > PersistentSnapshotStore.TTL_MS)
+			{
+				return 0;
+			}
+			return (buffer.get(base + OFFSET_CHECKED_MODES) & ~buffer.get(base + OFFSET_FOUND_MODES)) & 0xFF;
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Shares the outcome of a lookup, replacing the claim of the player. Only the main hiscores are shared, like in
+	 * {@link PersistentSnapshotStore#write}.
+	 *
+	 * @param key          The encoded player name.
+	 * @param status       Either {@link SnapshotCache.Status#FOUND} or {@link SnapshotCache.Status#NOT_FOUND}.
+	 * @param snapshot     The parsed main hiscores of a found player, ignored otherwise.
+	 * @param checkedModes The {@link GameMode#bit() bits} of the game modes that were checked.
+	 * @param foundModes   The bits of the game modes the player was found in.
+	 */
+	synchronized void publish(long key, SnapshotCache.Status status, HiscoresSnapshot snapshot, int checkedModes, int foundModes)
+	{
+		if (failed || key == NameCodec.INVALID || (status != SnapshotCache.Status.FOUND && status != SnapshotCache.Status.NOT_FOUND))
+		{
+			return;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			int slot = find(key);
+			if (slot < 0)
+			{
+				slot = insertionSlot(key);
+			}
+
+			final int base = slotOffset(slot);
+			final boolean found = status == SnapshotCache.Status.FOUND;
+			buffer.putLong(base + OFFSET_KEY, key);
+			buffer.putLong(base + OFFSET_WRITTEN_AT, clock.getAsLong());
+			buffer.put(base + OFFSET_STATUS, found ? STATUS_FOUND : STATUS_NOT_FOUND);
+			buffer.put(base + OFFSET_CHECKED_MODES, (byte) checkedModes);
+			buffer.put(base + OFFSET_FOUND_MODES, (byte) foundModes);
+			buffer.putShort(base + OFFSET_ROW_COUNT, (short) (found ? snapshot.getRowCount() : 0));
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				final int offset = base + OFFSET_CATEGORIES + ordinal * CATEGORY_BYTES;
+				buffer.putInt(offset, found ? snapshot.rankAt(ordinal) : 0);
+				buffer.putInt(offset + 4, found ? snapshot.scoreAt(ordinal) : 0);
+				buffer.put(offset + 8, found ? snapshot.flagsAt(ordinal) : 0);
+
+				final int xpSlot = XP_SLOTS[ordinal];
+				if (xpSlot >= 0)
+				{
+					buffer.putLong(base + OFFSET_XP + xpSlot * 8, found ? snapshot.xpAt(ordinal) : 0);
+				}
+			}
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Gives up the claim of a player whose lookup failed, so another client can look them up straight away.
+	 */
+	synchronized void release(long key)
+	{
+		if (failed)
+		{
+			return;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			final int slot = find(key);
+			if (slot >= 0 && buffer.get(slotOffset(slot) + OFFSET_STATUS) == STATUS_CLAIMED)
+			{
+				// An expired claim, the key stays so that the probe sequences through the slot are not cut short
+				buffer.putLong(slotOffset(slot) + OFFSET_WRITTEN_AT, 0);
+			}
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Takes a request from the shared budget, a token bucket refilled at the given rate. Every client passes its own
+	 * adaptive rate, so together the clients never go faster than the client that is currently allowed the most.
+	 *
+	 * @return True if a request may be made now. Always true once the segment failed.
+	 */
+	synchronized boolean tryAcquireRequest(double requestsPerSecond, double burst)
+	{
+		if (failed)
+		{
+			return true;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			final long now = clock.getAsLong();
+			if (now < buffer.getLong(OFFSET_PAUSED_UNTIL))
+			{
+				return false;
+			}
+
+			final long refilledAt = buffer.getLong(OFFSET_REFILLED_AT);
+			double tokens = buffer.getDouble(OFFSET_TOKENS);
+			if (now > refilledAt)
+			{
+				tokens = Math.min(burst, tokens + (now - refilledAt) * requestsPerSecond / 1000.0);
+				buffer.putLong(OFFSET_REFILLED_AT, now);
+			}
+
+			final boolean acquired = tokens >= 1;
+			buffer.putDouble(OFFSET_TOKENS, acquired ? tokens - 1 : tokens);
+			return acquired;
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+			return true;
+		}
+	}
+
+	/**
+	 * Returns a request taken by {@link #tryAcquireRequest(double, double)} that was not made.
+	 */
+	synchronized void releaseRequest(double burst)
+	{
+		if (failed)
+		{
+			return;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			buffer.putDouble(OFFSET_TOKENS, Math.min(burst, buffer.getDouble(OFFSET_TOKENS) + 1));
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Stops every client from making requests until the given time, after the hiscores throttled one of them.
+	 */
+	synchronized void pause(long untilMillis)
+	{
+		if (failed)
+		{
+			return;
+		}
+
+		try (FileLock ignored = lock(channel))
+		{
+			checkLayout();
+			if (untilMillis > buffer.getLong(OFFSET_PAUSED_UNTIL))
+			{
+				buffer.putLong(OFFSET_PAUSED_UNTIL, untilMillis);
+			}
+		}
+		catch (IOException | OverlappingFileLockException e)
+		{
+			fail(e);
+		}
+	}
+
+	/**
+	 * Closes the segment. The shared outcomes stay behind for the other clients.
+	 */
+	synchronized void close()
+	{
+		failed = true;
+		try
+		{
+			file.close();
+		}
+		catch (IOException e)
+		{
+			log.warn("Failed to close the shared lookup segment", e);
+		}
+	}
+
+	private void fail(Exception e)
+	{
+		if (!failed)
+		{
+			log.warn("Shared lookup segment failed, continuing standalone", e);
+			failed = true;
+		}
+	}
+
+	/**
+	 * Fails if another client reset the file to a different layout since it was opened.
+	 */
+	private void checkLayout() throws IOException
+	{
+		if (buffer.getInt(0) != FILE_MAGIC || buffer.getInt(4) != FORMAT_VERSION
+				|| buffer.getInt(8) != SLOT_SIZE || buffer.getInt(12) != SLOT_COUNT)
+		{
+			throw new IOException("The shared lookup segment was reset with a different layout");
+		}
+	}
+
+	/**
+	 * @return The slot of the player, or -1 if they are not in the table.
+	 */
+	private int find(long key)
+	{
+		final int start = hash(key);
+		for (int probe = 0; probe < MAX_PROBES; probe++)
+		{
+			final int slot = (start + probe) & (SLOT_COUNT - 1);
+			final long slotKey = buffer.getLong(slotOffset(slot) + OFFSET_KEY);
+			if (slotKey == key)
+			{
+				return slot;
+			}
+			if (slotKey == 0)
+			{
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * @return The first empty slot of the player's probe sequence, or its oldest slot if there is none.
+	 */
+	private int insertionSlot(long key)
+	{
+		final int start = hash(key);
+		int oldest = start & (SLOT_COUNT - 1);
+		long oldestWrittenAt = Long.MAX_VALUE;
+		for (int probe = 0; probe < MAX_PROBES; probe++)
+		{
+			final int slot = (start + probe) & (SLOT_COUNT - 1);
+			final int base = slotOffset(slot);
+			if (buffer.getLong(base + OFFSET_KEY) == 0)
+			{
+				return slot;
+			}
+
+			final long writtenAt = buffer.getLong(base + OFFSET_WRITTEN_AT);
+			if (writtenAt < oldestWrittenAt)
+			{
+				oldest = slot;
+				oldestWrittenAt = writtenAt;
+			}
+		}
+		return oldest;
+	}
+
+	private void readSnapshot(int base, HiscoresSnapshot snapshot)
+	{
+		snapshot.reset();
+		for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+		{
+			final int offset = base + OFFSET_CATEGORIES + ordinal * CATEGORY_BYTES;
+			final int xpSlot = XP_SLOTS[ordinal];
+			final long xp = xpSlot >= 0 ? buffer.getLong(base + OFFSET_XP + xpSlot * 8) : 0;
+			snapshot.set(ordinal, buffer.getInt(offset), buffer.getInt(offset + 4), xp, buffer.get(offset + 8));
+		}
+		snapshot.setRowCount(buffer.getShort(base + OFFSET_ROW_COUNT));
+	}
+
+	/**
+	 * Takes the file lock, waiting at most {@link #LOCK_TIMEOUT_MS} for the client holding it.
+	 */
+	private static FileLock lock(FileChannel channel) throws IOException
+	{
+		final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LOCK_TIMEOUT_MS);
+		while (true)
+		{
+			final FileLock lock = channel.tryLock();
+			if (lock != null)
+			{
+				return lock;
+			}
+			if (System.nanoTime() - deadline > 0)
+			{
+				throw new IOException("Timed out waiting for the shared lookup segment lock");
+			}
+			LockSupport.parkNanos(LOCK_RETRY_NANOS);
+		}
+	}
+
+	private static int slotOffset(int slot)
+	{
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	private static int hash(long key)
+	{
+		final long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+}
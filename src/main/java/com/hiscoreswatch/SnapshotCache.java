@@ -0,0 +1,329 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Remembers the outcome of every hiscores lookup, keyed by the {@link NameCodec} encoding of the player name.
+ * Found players keep their parsed snapshot so they can be re-evaluated locally when the alert settings change.
+ * Each outcome has its own time to live, so failed lookups are retried much sooner than found or unknown players.
+ * <p>
+ * Entries are kept in a {@link LongHashMap}, so the lookups made for every spawned player do not box their key. An
+ * expired entry is dropped when it is read, and all of them whenever the cache fills up.
+ */
+class SnapshotCache
+{
+	enum Status
+	{
+		/**
+		 * The player is queued or being looked up.
+		 */
+		PENDING,
+		/**
+		 * The player is on the hiscores and their snapshot is cached.
+		 */
+		FOUND,
+		/**
+		 * The hiscores do not know the player.
+		 */
+		NOT_FOUND,
+		/**
+		 * The lookup failed and should be retried soon.
+		 */
+		ERROR,
+		/**
+		 * The player was recently found unremarkable and was not looked up, see {@link UnremarkableFilter}.
+		 */
+		FILTERED
+	}
+
+	/**
+	 * How long a queued player is looked up within: the longest queue deadline, a fresh live-join deadline if they are
+	 * promoted, then the requests of every game mode with their retries. A pending entry that expired any sooner would let
+	 * a player who respawns or rejoins while still queued pass {@link #markPending} and be queued a second time.
+	 */
+	static final long PENDING_TTL_MS = longestQueueDeadline(false) + longestQueueDeadline(true) + TimeUnit.MINUTES.toMillis(5);
+	static final long FOUND_TTL_MS = TimeUnit.MINUTES.toMillis(15);
+	static final long NOT_FOUND_TTL_MS = TimeUnit.MINUTES.toMillis(30);
+	static final long ERROR_TTL_MS = TimeUnit.SECONDS.toMillis(30);
+
+	/**
+	 * A cached lookup outcome.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static final class Entry
+	{
+		private final String playerName;
+		private final HiscoresWatchPlugin.DetectionSource source;
+		private final Status status;
+		/**
+		 * The parsed hiscores of every game mode, indexed by {@link GameMode#ordinal()}. Only set for
+		 * {@link Status#FOUND}, with null for the modes the player was not found in or that were not checked.
+		 */
+		private final HiscoresSnapshot[] snapshots;
+		private final long expiresAtMillis;
+		/**
+		 * Whether an alert has been sent for this player, so re-evaluation does not repeat it.
+		 */
+		private volatile boolean alerted;
+
+		void markAlerted()
+		{
+			alerted = true;
+		}
+
+		/**
+		 * @return The main hiscores of a found player, null otherwise.
+		 */
+		HiscoresSnapshot getSnapshot()
+		{
+			return snapshots == null ? null : snapshots[GameMode.NORMAL.ordinal()];
+		}
+	}
+
+	/**
+	 * The number of entries to evict at once is the size divided by this, when the cache is full of live entries.
+	 */
+	private static final int EVICTION_DIVISOR = 8;
+
+	private final LongHashMap<Entry> entries = new LongHashMap<>();
+	private final long maximumSize;
+	private final LongSupplier clock;
+	private long evictionCount;
+
+	SnapshotCache(long maximumSize)
+	{
+		this(maximumSize, System::currentTimeMillis);
+	}
+
+	SnapshotCache(long maximumSize, LongSupplier clock)
+	{
+		this.maximumSize = maximumSize;
+		this.clock = clock;
+	}
+
+	/**
+	 * @return The live entry for the key, or null if there is none or it has expired.
+	 */
+	synchronized Entry get(long key)
+	{
+		final Entry entry = entries.get(key);
+		if (entry != null && entry.getExpiresAtMillis() <= clock.getAsLong())
+		{
+			entries.remove(key);
+			evictionCount++;
+			return null;
+		}
+		return entry;
+	}
+
+	/**
+	 * Marks a player as queued unless there is already a live entry for them.
+	 *
+	 * @return True if the player was marked and should be looked up.
+	 */
+	synchronized boolean markPending(long key, String playerName, HiscoresWatchPlugin.DetectionSource source)
+	{
+		final long now = clock.getAsLong();
+		final Entry existing = entries.get(key);
+		if (existing != null && existing.getExpiresAtMillis() > now)
+		{
+			return false;
+		}
+
+		put(key, new Entry(playerName, source, Status.PENDING, null, now + PENDING_TTL_MS), now);
+		return true;
+	}
+
+	/**
+	 * Caches the snapshot of a player that was found on the hiscores.
+	 *
+	 * @return The new entry.
+	 */
+	Entry putFound(long key, String playerName, HiscoresWatchPlugin.DetectionSource source, HiscoresSnapshot snapshot)
+	{
+		final HiscoresSnapshot[] snapshots = new HiscoresSnapshot[GameMode.COUNT];
+		snapshots[GameMode.NORMAL.ordinal()] = snapshot;
+		return putFound(key, playerName, source, snapshots);
+	}
+
+	/**
+	 * Caches the snapshots of a player that was found on the main hiscores, and possibly those of other game modes.
+	 *
+	 * @param snapshots The snapshot of every game mode, indexed by {@link GameMode#ordinal()}.
+	 * @return The new entry.
+	 */
+	Entry putFound(long key, String playerName, HiscoresWatchPlugin.DetectionSource source, HiscoresSnapshot[] snapshots)
+	{
+		return put(key, playerName, source, Status.FOUND, snapshots, FOUND_TTL_MS);
+	}
+
+	Entry putNotFound(long key, String playerName, HiscoresWatchPlugin.DetectionSource source)
+	{
+		return put(key, playerName, source, Status.NOT_FOUND, null, NOT_FOUND_TTL_MS);
+	}
+
+	Entry putError(long key, String playerName, HiscoresWatchPlugin.DetectionSource source)
+	{
+		return put(key, playerName, source, Status.ERROR, null, ERROR_TTL_MS);
+	}
+
+	Entry putFiltered(long key, String playerName, HiscoresWatchPlugin.DetectionSource source)
+	{
+		return put(key, playerName, source, Status.FILTERED, null, NOT_FOUND_TTL_MS);
+	}
+
+	synchronized void invalidate(long key)
+	{
+		entries.remove(key);
+	}
+
+	/**
+	 * Removes the entry of a player that is still waiting to be looked up, so they can be queued again.
+	 */
+	synchronized void invalidatePending(long key)
+	{
+		final Entry entry = entries.get(key);
+		if (entry != null && entry.getStatus() == Status.PENDING)
+		{
+			entries.remove(key);
+		}
+	}
+
+	/**
+	 * Removes the entries of every player skipped by the {@link UnremarkableFilter}, so they are looked up when next seen.
+	 */
+	synchronized void invalidateFiltered()
+	{
+		removeWhere(entry -> entry.getStatus() == Status.FILTERED);
+	}
+
+	synchronized void invalidateAll()
+	{
+		entries.clear();
+	}
+
+	synchronized long size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * @return The number of entries dropped because the cache was full or they expired.
+	 */
+	synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+
+	/**
+	 * Runs the action for every live entry of a found player. The action runs without the cache locked, so it may use
+	 * the cache.
+	 */
+	void forEachFound(Consumer<Entry> action)
+	{
+		final List<Entry> found = new ArrayList<>();
+		synchronized (this)
+		{
+			final long now = clock.getAsLong();
+			for (int slot = 0; slot < entries.capacity(); slot++)
+			{
+				final Entry entry = entries.valueAt(slot);
+				if (entry != null && entry.getStatus() == Status.FOUND && entry.getExpiresAtMillis() > now)
+				{
+					found.add(entry);
+				}
+			}
+		}
+		found.forEach(action);
+	}
+
+	private synchronized Entry put(long key, String playerName, HiscoresWatchPlugin.DetectionSource source, Status status,
+		HiscoresSnapshot[] snapshots, long ttlMillis)
+	{
+		final long now = clock.getAsLong();
+		return put(key, new Entry(playerName, source, status, snapshots, now + ttlMillis), now);
+	}
+
+	private Entry put(long key, Entry entry, long now)
+	{
+		if (entries.size() >= maximumSize && entries.get(key) == null)
+		{
+			makeRoom(now);
+		}
+		entries.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Drops the expired entries, and if the cache is still full, the entries that expire soonest. Evicting a share of
+	 * the entries at once keeps the sort that finds them rare.
+	 */
+	private void makeRoom(long now)
+	{
+		evictionCount += removeWhere(entry -> entry.getExpiresAtMillis() <= now);
+		if (entries.size() < maximumSize)
+		{
+			return;
+		}
+
+		final long[] expiries = new long[entries.size()];
+		int count = 0;
+		for (int slot = 0; slot < entries.capacity(); slot++)
+		{
+			final Entry entry = entries.valueAt(slot);
+			if (entry != null)
+			{
+				expiries[count++] = entry.getExpiresAtMillis();
+			}
+		}
+		Arrays.sort(expiries);
+		final long cutoff = expiries[Math.max(1, count / EVICTION_DIVISOR) - 1];
+		evictionCount += removeWhere(entry -> entry.getExpiresAtMillis() <= cutoff);
+	}
+
+	/**
+	 * @return The number of entries removed.
+	 */
+	private int removeWhere(Predicate<Entry> predicate)
+	{
+		// Removing from the table moves other entries around, so collect the keys first
+		final long[] keys = new long[entries.size()];
+		int count = 0;
+		for (int slot = 0; slot < entries.capacity(); slot++)
+		{
+			final Entry entry = entries.valueAt(slot);
+			if (entry != null && predicate.test(entry))
+			{
+				keys[count++] = entries.keyAt(slot);
+			}
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			entries.remove(keys[i]);
+		}
+		return count;
+	}
+
+	private static long longestQueueDeadline(boolean priorityOnly)
+	{
+		long longest = 0;
+		for (HiscoresWatchPlugin.DetectionSource source : HiscoresWatchPlugin.DetectionSource.values())
+		{
+			if (!priorityOnly || source.isPriority())
+			{
+				longest = Math.max(longest, source.getQueueDeadlineMs());
+			}
+		}
+		return longest;
+	}
+}
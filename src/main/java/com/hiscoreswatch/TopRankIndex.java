@@ -0,0 +1,465 @@
+package com.hiscoreswatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A local index of the top ranks of every hiscores category, built by crawling the public ranking table pages.
+ * <p>
+ * Players in the index can be matched as soon as they are seen, without a per-player lookup. Categories are crawled one
+ * page at a time, the least recently crawled category first, and each is recrawled once it is older than
+ * {@link #RECRAWL_AFTER_MS}. A category that has not been crawled within {@link #FRESH_MS} is stale and is not matched.
+ * Activity tables are numbered by their position in index_lite, which the website does not promise to keep, so a page
+ * is only indexed if its heading names the category it was crawled for; otherwise the category is skipped.
+ * <p>
+ * Ranks are kept per category in arrays indexed by rank, with a reverse map from each player to the categories they
+ * rank in, so a match only visits the categories of that player. Thread safe.
+ */
+@Slf4j
+class TopRankIndex
+{
+	static final int PAGE_SIZE = 25;
+	static final int MAX_INDEXED_RANK = 1000;
+	static final long FRESH_MS = TimeUnit.HOURS.toMillis(24);
+	static final long RECRAWL_AFTER_MS = TimeUnit.HOURS.toMillis(12);
+	static final long SKIPPED_RETRY_MS = TimeUnit.MINUTES.toMillis(30);
+
+	private static final int FILE_MAGIC = 0x48535449; // HSTI
+	private static final int FORMAT_VERSION = 1;
+	private static final String HEADING_SUFFIX = "hiscores";
+	private static final Hiscores[] HISCORES = Hiscores.values();
+	private static final int CATEGORY_COUNT = HiscoresSnapshot.CATEGORY_COUNT;
+	/**
+	 * The number of skills, activity ranking tables are numbered from 0 after them in index_lite order.
+	 */
+	private static final int SKILL_TABLE_COUNT;
+
+	static
+	{
+		int skills = 0;
+		for (Hiscores hiscore : HISCORES)
+		{
+			if (hiscore.isSkill())
+			{
+				skills++;
+			}
+		}
+		SKILL_TABLE_COUNT = skills;
+	}
+
+	/**
+	 * A ranking page to crawl.
+	 */
+	@Getter
+	@RequiredArgsConstructor
+	static final class Page
+	{
+		private final Hiscores hiscore;
+		/**
+		 * The page number, starting at 1.
+		 */
+		private final int number;
+
+		/**
+		 * @return The query parameters of the page on the hiscores website.
+		 */
+		String query()
+		{
+			if (hiscore.isSkill())
+			{
+				return "overall?table=" + hiscore.getApiIndex() + "&page=" + number;
+			}
+			return "overall?category_type=1&table=" + (hiscore.getApiIndex() - SKILL_TABLE_COUNT) + "&page=" + number;
+		}
+
+		/**
+		 * @return True if a page heading names the category of this page, ignoring case, punctuation and a trailing
+		 * "Hiscores".
+		 */
+		boolean matchesHeading(String heading)
+		{
+			return heading != null && normalizeHeading(heading).equals(normalizeHeading(hiscore.getName()));
+		}
+	}
+
+	// Per-category ranks, indexed by [ordinal][rank]. Allocated when a category is first crawled
+	private final long[][] keys = new long[CATEGORY_COUNT][];
+	private final int[][] scores = new int[CATEGORY_COUNT][];
+	private final long[][] xp = new long[CATEGORY_COUNT][];
+	private final long[] crawledAtMillis = new long[CATEGORY_COUNT];
+	private final long[] skippedUntilMillis = new long[CATEGORY_COUNT];
+
+	/**
+	 * The categories every indexed player ranks in, packed as {@code ordinal << 32 | rank}.
+	 */
+	private final LongHashMap<long[]> categoriesByPlayer = new LongHashMap<>();
+
+	// The category being crawled, or -1 if the crawler is idle
+	private int crawlOrdinal = -1;
+	private int crawlPage;
+	private int crawlPageCount;
+	private int crawlLastRank;
+
+	/**
+	 * Fills a snapshot with the indexed categories in which the player ranks at or below the rank threshold of the
+	 * category. Only categories crawled within {@link #FRESH_MS} are used.
+	 *
+	 * @return The snapshot, or null if the index has nothing fresh on the player.
+	 */
+	synchronized HiscoresSnapshot match(long key, AlertRules rules, long nowMillis)
+	{
+		final long[] categories = categoriesByPlayer.get(key);
+		if (categories == null)
+		{
+			return null;
+		}
+
+		HiscoresSnapshot snapshot = null;
+		for (long packed : categories)
+		{
+			final int ordinal = (int) (packed >>> 32);
+			final int rank = (int) packed;
+			if (rank > rules.getRankThreshold(ordinal) || nowMillis - crawledAtMillis[ordinal] > FRESH_MS)
+			{
+				continue;
+			}
+
+			if (snapshot == null)
+			{
+				snapshot = new HiscoresSnapshot();
+				snapshot.setRowCount(Integer.MAX_VALUE);
+			}
+
+			final boolean hasXp = xp[ordinal] != null;
+			final byte flags = hasXp ? (byte) (HiscoresSnapshot.FLAG_VALID | HiscoresSnapshot.FLAG_XP) : HiscoresSnapshot.FLAG_VALID;
+			snapshot.set(ordinal, rank, scores[ordinal][rank], hasXp ? xp[ordinal][rank] : 0, flags);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * @return The next page to crawl, or null if every category is recent enough. Categories are crawled as deep as
+	 * their rank threshold, and not at all if it is off.
+	 */
+	synchronized Page nextPage(AlertRules rules, long nowMillis)
+	{
+		if (crawlOrdinal < 0)
+		{
+			int oldest = -1;
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				if (rules.getRankThreshold(ordinal) != AlertRules.OFF
+						&& nowMillis - crawledAtMillis[ordinal] > RECRAWL_AFTER_MS
+						&& nowMillis >= skippedUntilMillis[ordinal]
+						&& (oldest < 0 || crawledAtMillis[ordinal] < crawledAtMillis[oldest]))
+				{
+					oldest = ordinal;
+				}
+			}
+			if (oldest < 0)
+			{
+				return null;
+			}
+
+			crawlOrdinal = oldest;
+			crawlPage = 1;
+			crawlLastRank = 0;
+			final int depth = Math.min(rules.getRankThreshold(oldest), MAX_INDEXED_RANK);
+			crawlPageCount = (depth + PAGE_SIZE - 1) / PAGE_SIZE;
+		}
+		return new Page(HISCORES[crawlOrdinal], crawlPage);
+	}
+
+	/**
+	 * Merges the rows of a crawled page into the index.
+	 *
+	 * @return True if the page completed its category.
+	 */
+	synchronized boolean onPageCrawled(Page page, RankingPageParser.Rows rows, long nowMillis)
+	{
+		final int ordinal = page.getHiscore().ordinal();
+		if (ordinal != crawlOrdinal || page.getNumber() != crawlPage)
+		{
+			// The crawl moved on while the page was in flight
+			return false;
+		}
+
+		if (!page.matchesHeading(rows.heading))
+		{
+			// The table number points at another category, index nothing rather than the wrong table
+			log.debug("Ranking page {} of {} is headed {}, skipping the category", page.getNumber(), page.getHiscore().getName(), rows.heading);
+			skipCategory(page, nowMillis);
+			return false;
+		}
+
+		if (keys[ordinal] == null)
+		{
+			keys[ordinal] = new long[MAX_INDEXED_RANK + 1];
+			scores[ordinal] = new int[MAX_INDEXED_RANK + 1];
+			xp[ordinal] = page.getHiscore().isSkill() ? new long[MAX_INDEXED_RANK + 1] : null;
+		}
+
+		for (int row = 0; row < rows.count; row++)
+		{
+			final int rank = rows.ranks[row];
+			if (rank > MAX_INDEXED_RANK)
+			{
+				continue;
+			}
+
+			put(ordinal, rank, rows.keys[row], rows.scores[row], rows.xp[row]);
+			crawlLastRank = Math.max(crawlLastRank, rank);
+		}
+
+		if (rows.count >= PAGE_SIZE && crawlPage < crawlPageCount)
+		{
+			crawlPage++;
+			return false;
+		}
+
+		// Ranks past the end of the crawl are no longer known to be accurate
+		for (int rank = crawlLastRank + 1; rank <= MAX_INDEXED_RANK; rank++)
+		{
+			remove(ordinal, rank);
+		}
+		crawledAtMillis[ordinal] = nowMillis;
+		crawlOrdinal = -1;
+		log.debug("Indexed the top {} of {}", crawlLastRank, page.getHiscore().getName());
+		return true;
+	}
+
+	/**
+	 * Gives up on the category being crawled for {@link #SKIPPED_RETRY_MS}, used when its pages cannot be fetched.
+	 * Whatever was indexed for the category before is kept until it goes stale.
+	 */
+	synchronized void skipCategory(Page page, long nowMillis)
+	{
+		final int ordinal = page.getHiscore().ordinal();
+		if (ordinal == crawlOrdinal)
+		{
+			skippedUntilMillis[ordinal] = nowMillis + SKIPPED_RETRY_MS;
+			crawlOrdinal = -1;
+		}
+	}
+
+	synchronized int size()
+	{
+		return categoriesByPlayer.size();
+	}
+
+	/**
+	 * Writes the index to a file, replacing it atomically.
+	 */
+	synchronized void save(File file) throws IOException
+	{
+		final File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create " + parent);
+		}
+
+		final File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+		{
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(CATEGORY_COUNT);
+			out.writeInt(MAX_INDEXED_RANK);
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				final long[] categoryKeys = keys[ordinal];
+				int count = 0;
+				if (categoryKeys != null)
+				{
+					for (long key : categoryKeys)
+					{
+						if (key != NameCodec.INVALID)
+						{
+							count++;
+						}
+					}
+				}
+
+				out.writeLong(crawledAtMillis[ordinal]);
+				out.writeInt(count);
+				for (int rank = 1; count > 0 && rank <= MAX_INDEXED_RANK; rank++)
+				{
+					if (categoryKeys[rank] != NameCodec.INVALID)
+					{
+						out.writeShort(rank);
+						out.writeLong(categoryKeys[rank]);
+						out.writeInt(scores[ordinal][rank]);
+						out.writeLong(xp[ordinal] != null ? xp[ordinal][rank] : 0);
+					}
+				}
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads an index written by {@link #save(File)}. A missing or incompatible file gives an empty index.
+	 */
+	static TopRankIndex load(File file) throws IOException
+	{
+		final TopRankIndex index = new TopRankIndex();
+		if (!file.isFile())
+		{
+			return index;
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != FILE_MAGIC
+					|| in.readInt() != FORMAT_VERSION
+					|| in.readInt() != CATEGORY_COUNT
+					|| in.readInt() != MAX_INDEXED_RANK)
+			{
+				log.info("Discarding incompatible top rank index {}", file);
+				return index;
+			}
+
+			for (int ordinal = 0; ordinal < CATEGORY_COUNT; ordinal++)
+			{
+				final long crawledAt = in.readLong();
+				final int count = in.readInt();
+				if (count > 0)
+				{
+					index.keys[ordinal] = new long[MAX_INDEXED_RANK + 1];
+					index.scores[ordinal] = new int[MAX_INDEXED_RANK + 1];
+					index.xp[ordinal] = HISCORES[ordinal].isSkill() ? new long[MAX_INDEXED_RANK + 1] : null;
+				}
+
+				for (int i = 0; i < count; i++)
+				{
+					final int rank = in.readShort();
+					final long key = in.readLong();
+					final int score = in.readInt();
+					final long categoryXp = in.readLong();
+					if (rank > 0 && rank <= MAX_INDEXED_RANK && key != NameCodec.INVALID)
+					{
+						index.put(ordinal, rank, key, score, categoryXp);
+					}
+				}
+				index.crawledAtMillis[ordinal] = crawledAt;
+			}
+		}
+		return index;
+	}
+
+	private void put(int ordinal, int rank, long key, int score, long categoryXp)
+	{
+		final long previous = keys[ordinal][rank];
+		if (previous != key)
+		{
+			remove(ordinal, rank);
+			keys[ordinal][rank] = key;
+		}
+		scores[ordinal][rank] = score;
+		if (xp[ordinal] != null)
+		{
+			xp[ordinal][rank] = categoryXp;
+		}
+
+		// Point the player at this rank, replacing any other rank they held in the category
+		final long packed = (long) ordinal << 32 | rank;
+		final long[] categories = categoriesByPlayer.get(key);
+		if (categories == null)
+		{
+			categoriesByPlayer.put(key, new long[]{packed});
+			return;
+		}
+
+		for (int i = 0; i < categories.length; i++)
+		{
+			if ((int) (categories[i] >>> 32) == ordinal)
+			{
+				final int previousRank = (int) categories[i];
+				if (previousRank != rank && keys[ordinal][previousRank] == key)
+				{
+					keys[ordinal][previousRank] = NameCodec.INVALID;
+				}
+				categories[i] = packed;
+				return;
+			}
+		}
+
+		final long[] grown = new long[categories.length + 1];
+		System.arraycopy(categories, 0, grown, 0, categories.length);
+		grown[categories.length] = packed;
+		categoriesByPlayer.put(key, grown);
+	}
+
+	/**
+	 * Clears a rank, and removes the category from its player unless they have since been indexed at another rank.
+	 */
+	private void remove(int ordinal, int rank)
+	{
+		final long key = keys[ordinal][rank];
+		if (key == NameCodec.INVALID)
+		{
+			return;
+		}
+		keys[ordinal][rank] = NameCodec.INVALID;
+
+		final long packed = (long) ordinal << 32 | rank;
+		final long[] categories = categoriesByPlayer.get(key);
+		if (categories == null)
+		{
+			return;
+		}
+
+		for (int i = 0; i < categories.length; i++)
+		{
+			if (categories[i] == packed)
+			{
+				if (categories.length == 1)
+				{
+					categoriesByPlayer.remove(key);
+					return;
+				}
+
+				final long[] shrunk = new long[categories.length - 1];
+				System.arraycopy(categories, 0, shrunk, 0, i);
+				System.arraycopy(categories, i + 1, shrunk, i, categories.length - i - 1);
+				categoriesByPlayer.put(key, shrunk);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The letters and digits of a heading or category name in lower case, without a trailing "hiscores".
+	 */
+	private static String normalizeHeading(String heading)
+	{
+		final StringBuilder normalized = new StringBuilder(heading.length());
+		for (int i = 0; i < heading.length(); i++)
+		{
+			final char c = heading.charAt(i);
+			if (Character.isLetterOrDigit(c))
+			{
+				normalized.append(Character.toLowerCase(c));
+			}
+		}
+
+		final int end = normalized.length() - HEADING_SUFFIX.length();
+		if (end > 0 && normalized.indexOf(HEADING_SUFFIX, end) == end)
+		{
+			normalized.setLength(end);
+		}
+		return normalized.toString();
+	}
+}
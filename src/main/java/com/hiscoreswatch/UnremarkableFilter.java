@@ -0,0 +1,318 @@
+package com.hiscoreswatch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * A Bloom filter of players whose lookups recently came back with nothing notable, so they are not looked up again
+ * every session. A player is never reported as notable by the filter, only skipped; a false positive costs one missed
+ * alert until the player ages out.
+ * <p>
+ * Verdicts age out by epoch. The filter keeps a current and a previous generation, rotated every {@link #EPOCH_MS},
+ * and a player is remembered while either generation holds them. A generation is also rotated early once it holds
+ * {@link #GENERATION_CAPACITY} players, which keeps the false positive rate of both generations together within
+ * {@link #FALSE_POSITIVE_BUDGET}.
+ * <p>
+ * A verdict only holds for the alert settings and game modes it was made under. The filter tracks the most lenient
+ * settings all of its verdicts still hold for, and must be rebuilt when the settings become more lenient than that.
+ * Thread safe.
+ */
+@Slf4j
+class UnremarkableFilter
+{
+	static final long EPOCH_MS = TimeUnit.HOURS.toMillis(24);
+	static final int GENERATION_CAPACITY = 50_000;
+	/**
+	 * The highest false positive rate of the filter, split evenly between its two generations.
+	 */
+	static final double FALSE_POSITIVE_BUDGET = 0.01;
+
+	private static final int BIT_COUNT;
+	private static final int HASH_COUNT;
+
+	static
+	{
+		// The optimal Bloom filter size for the capacity and the false positive rate of one generation
+		final double generationRate = FALSE_POSITIVE_BUDGET / 2;
+		final double bits = -GENERATION_CAPACITY * Math.log(generationRate) / (Math.log(2) * Math.log(2));
+		BIT_COUNT = (int) Math.ceil(bits / 64) * 64;
+		HASH_COUNT = Math.max(1, (int) Math.round(BIT_COUNT / (double) GENERATION_CAPACITY * Math.log(2)));
+	}
+
+	private static final int FILE_MAGIC = 0x48535546; // HSUF
+	private static final int FORMAT_VERSION = 3;
+
+	private long[] current = new long[BIT_COUNT / 64];
+	private long[] previous = new long[BIT_COUNT / 64];
+	private int currentCount;
+	private int previousCount;
+	private long epochStartedAtMillis;
+
+	/**
+	 * The most lenient alert rules every verdict in the filter holds for.
+	 */
+	private AlertRules rules;
+	/**
+	 * The {@link GameMode#bit() bits} of the game modes that were checked.
+	 */
+	private int gameModes;
+	private boolean dirty;
+
+	UnremarkableFilter(AlertRules rules, int gameModes, long nowMillis)
+	{
+		this.rules = rules;
+		this.gameModes = gameModes;
+		this.epochStartedAtMillis = nowMillis;
+	}
+
+	/**
+	 * @return True if the player was recently found unremarkable, or in rare cases if they were not.
+	 */
+	synchronized boolean mightContain(long key)
+	{
+		return test(current, key) || test(previous, key);
+	}
+
+	/**
+	 * Remembers a player whose lookup found nothing notable under the current alert settings.
+	 */
+	synchronized void add(long key, long nowMillis)
+	{
+		if (key == NameCodec.INVALID || test(current, key))
+		{
+			return;
+		}
+
+		if (currentCount >= GENERATION_CAPACITY)
+		{
+			rotate(nowMillis);
+		}
+
+		final long h1 = mix(key);
+		final long h2 = mix(h1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++)
+		{
+			final int bit = bitOf(h1 + i * h2);
+			current[bit >>> 6] |= 1L << bit;
+		}
+		currentCount++;
+		dirty = true;
+	}
+
+	/**
+	 * Starts a new epoch if the current one has run for {@link #EPOCH_MS}, forgetting the verdicts of the previous one.
+	 */
+	synchronized void rotateIfDue(long nowMillis)
+	{
+		if (nowMillis - epochStartedAtMillis >= EPOCH_MS)
+		{
+			rotate(nowMillis);
+		}
+	}
+
+	/**
+	 * Applies new alert settings.
+	 *
+	 * @return True if the verdicts still hold, false if the filter was cleared and has to be rebuilt.
+	 */
+	synchronized boolean updateSettings(AlertRules newRules, int newGameModes, long nowMillis)
+	{
+		final boolean stillHolds = holdsFor(newRules, newGameModes);
+		if (!stillHolds)
+		{
+			Arrays.fill(current, 0);
+			Arrays.fill(previous, 0);
+			currentCount = 0;
+			previousCount = 0;
+			epochStartedAtMillis = nowMillis;
+		}
+
+		// Verdicts made from now on only hold for the new settings
+		rules = newRules;
+		gameModes = newGameModes;
+		dirty = true;
+		return stillHolds;
+	}
+
+	/**
+	 * @return True if a player found unremarkable under the settings of the filter is also unremarkable under these.
+	 */
+	synchronized boolean holdsFor(AlertRules newRules, int newGameModes)
+	{
+		return (newRules == rules || newRules.isNoMoreLenientThan(rules)) && (newGameModes & ~gameModes) == 0;
+	}
+
+	/**
+	 * @return The number of players remembered, counting a player in both generations twice.
+	 */
+	synchronized int size()
+	{
+		return currentCount + previousCount;
+	}
+
+	/**
+	 * @return The estimated false positive rate, from how full the generations are.
+	 */
+	synchronized double estimateFalsePositiveRate()
+	{
+		return 1 - (1 - falsePositiveRate(current)) * (1 - falsePositiveRate(previous));
+	}
+
+	/**
+	 * Writes the filter to a file if it changed since it was loaded or last saved, replacing the file atomically.
+	 */
+	synchronized void saveIfDirty(File file) throws IOException
+	{
+		if (!dirty)
+		{
+			return;
+		}
+
+		final File parent = file.getParentFile();
+		if (parent != null && !parent.isDirectory() && !parent.mkdirs())
+		{
+			throw new IOException("Unable to create " + parent);
+		}
+
+		final File temp = new File(file.getPath() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp))))
+		{
+			out.writeInt(FILE_MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(BIT_COUNT);
+			out.writeInt(HASH_COUNT);
+			rules.write(out);
+			out.writeInt(gameModes);
+			out.writeLong(epochStartedAtMillis);
+			out.writeInt(currentCount);
+			out.writeInt(previousCount);
+			for (long word : current)
+			{
+				out.writeLong(word);
+			}
+			for (long word : previous)
+			{
+				out.writeLong(word);
+			}
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		dirty = false;
+	}
+
+	/**
+	 * Reads a filter written by {@link #saveIfDirty(File)}. A missing or incompatible file gives an empty filter for the
+	 * given settings. The loaded filter keeps the settings it was saved with, see {@link #updateSettings}.
+	 */
+	static UnremarkableFilter load(File file, AlertRules rules, int gameModes, long nowMillis) throws IOException
+	{
+		if (!file.isFile())
+		{
+			return new UnremarkableFilter(rules, gameModes, nowMillis);
+		}
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file))))
+		{
+			if (in.readInt() != FILE_MAGIC
+					|| in.readInt() != FORMAT_VERSION
+					|| in.readInt() != BIT_COUNT
+					|| in.readInt() != HASH_COUNT)
+			{
+				log.info("Discarding incompatible unremarkable player filter {}", file);
+				return new UnremarkableFilter(rules, gameModes, nowMillis);
+			}
+
+			final AlertRules savedRules = AlertRules.read(in);
+			if (savedRules == null)
+			{
+				log.info("Discarding unremarkable player filter {} saved for other hiscores categories", file);
+				return new UnremarkableFilter(rules, gameModes, nowMillis);
+			}
+
+			final UnremarkableFilter filter = new UnremarkableFilter(savedRules, in.readInt(), in.readLong());
+			filter.currentCount = in.readInt();
+			filter.previousCount = in.readInt();
+			for (int i = 0; i < filter.current.length; i++)
+			{
+				filter.current[i] = in.readLong();
+			}
+			for (int i = 0; i < filter.previous.length; i++)
+			{
+				filter.previous[i] = in.readLong();
+			}
+
+			// Catch up on the epochs that passed while the client was closed
+			if (nowMillis - filter.epochStartedAtMillis >= 2 * EPOCH_MS)
+			{
+				filter.rotate(nowMillis);
+				filter.rotate(nowMillis);
+			}
+			filter.rotateIfDue(nowMillis);
+			return filter;
+		}
+	}
+
+	private void rotate(long nowMillis)
+	{
+		final long[] recycled = previous;
+		previous = current;
+		previousCount = currentCount;
+		Arrays.fill(recycled, 0);
+		current = recycled;
+		currentCount = 0;
+		epochStartedAtMillis = nowMillis;
+		dirty = true;
+		log.debug("Rotated the unremarkable player filter, {} players carried over", previousCount);
+	}
+
+	private static boolean test(long[] bits, long key)
+	{
+		final long h1 = mix(key);
+		final long h2 = mix(h1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++)
+		{
+			final int bit = bitOf(h1 + i * h2);
+			if ((bits[bit >>> 6] & 1L << bit) == 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static double falsePositiveRate(long[] bits)
+	{
+		long set = 0;
+		for (long word : bits)
+		{
+			set += Long.bitCount(word);
+		}
+		return Math.pow(set / (double) BIT_COUNT, HASH_COUNT);
+	}
+
+	private static int bitOf(long hash)
+	{
+		return (int) Long.remainderUnsigned(hash, BIT_COUNT);
+	}
+
+	/**
+	 * The finalizer of SplitMix64, so that names differing in one character land far apart.
+	 */
+	private static long mix(long value)
+	{
+		long h = value;
+		h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+		h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+		return h ^ (h >>> 31);
+	}
+}
@@ -0,0 +1,183 @@
+package com.hiscoreswatch;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveRateLimiterTest
+{
+	private static final double DELTA = 1e-9;
+
+	private long nowNanos = TimeUnit.DAYS.toNanos(1);
+
+	private final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(2, 0.25, 4, 3, () -> nowNanos);
+
+	@Test
+	public void throttleHalvesTheRateAndPauses()
+	{
+		assertTrue(limiter.tryAcquire());
+
+		limiter.onThrottled(-1, "HTTP 429");
+		assertEquals(1, limiter.getRate(), DELTA);
+		assertEquals(AdaptiveRateLimiter.State.BACKING_OFF, limiter.getState());
+		assertEquals(2000, limiter.getBackoffRemainingMillis());
+
+		advanceMillis(1999);
+		assertFalse(limiter.tryAcquire());
+
+		// Two seconds at the halved rate refilled two tokens
+		advanceMillis(1);
+		assertTrue(limiter.tryAcquire());
+		assertEquals(AdaptiveRateLimiter.State.HEALTHY, limiter.getState());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+	}
+
+	@Test
+	public void rateNeverDropsBelowTheMinimum()
+	{
+		for (int i = 0; i < 10; i++)
+		{
+			limiter.onThrottled(-1, "HTTP 503");
+			advanceMillis(limiter.getBackoffRemainingMillis());
+		}
+		assertEquals(0.25, limiter.getRate(), DELTA);
+
+		limiter.onSuccess(5000);
+		assertEquals(0.25, limiter.getRate(), DELTA);
+	}
+
+	@Test
+	public void backoffDoublesUpToTheCap()
+	{
+		final long[] expected = {2000, 4000, 8000, 16_000, 32_000, 64_000, 120_000, 120_000, 120_000};
+		for (long backoffMillis : expected)
+		{
+			limiter.onThrottled(-1, "network failure");
+			assertEquals(backoffMillis, limiter.getBackoffRemainingMillis());
+			advanceMillis(backoffMillis);
+		}
+	}
+
+	@Test
+	public void successResetsTheBackoff()
+	{
+		limiter.onThrottled(-1, "HTTP 429");
+		limiter.onThrottled(-1, "HTTP 429");
+		assertEquals(4000, limiter.getBackoffRemainingMillis());
+		advanceMillis(4000);
+
+		assertTrue(limiter.tryAcquire());
+		limiter.onSuccess(100);
+		limiter.onThrottled(-1, "HTTP 429");
+		assertEquals(2000, limiter.getBackoffRemainingMillis());
+	}
+
+	@Test
+	public void successDuringBackoffKeepsTheRate()
+	{
+		limiter.onThrottled(-1, "HTTP 429");
+		limiter.onSuccess(100);
+		assertEquals(1, limiter.getRate(), DELTA);
+		assertEquals(AdaptiveRateLimiter.State.BACKING_OFF, limiter.getState());
+	}
+
+	@Test
+	public void retryAfterLongerThanTheBackoffIsHonoured()
+	{
+		limiter.onThrottled(30_000, "HTTP 429");
+		assertEquals(30_000, limiter.getBackoffRemainingMillis());
+
+		advanceMillis(29_999);
+		assertFalse(limiter.tryAcquire());
+		advanceMillis(1);
+		assertTrue(limiter.tryAcquire());
+	}
+
+	@Test
+	public void retryAfterShorterThanTheBackoffIsRaised()
+	{
+		limiter.onThrottled(500, "HTTP 429");
+		assertEquals(2000, limiter.getBackoffRemainingMillis());
+	}
+
+	@Test
+	public void lateFailureDoesNotShortenTheBackoff()
+	{
+		limiter.onThrottled(60_000, "HTTP 429");
+		advanceMillis(1000);
+		limiter.onThrottled(-1, "network failure");
+		assertEquals(59_000, limiter.getBackoffRemainingMillis());
+	}
+
+	@Test
+	public void fastResponsesRaiseTheRateUpToTheMaximum()
+	{
+		limiter.onSuccess(100);
+		assertEquals(2.05, limiter.getRate(), DELTA);
+		for (int i = 0; i < 100; i++)
+		{
+			limiter.onSuccess(100);
+		}
+		assertEquals(4, limiter.getRate(), DELTA);
+		assertEquals(AdaptiveRateLimiter.State.HEALTHY, limiter.getState());
+	}
+
+	@Test
+	public void slowResponsesLowerTheRate()
+	{
+		limiter.onSuccess(2000);
+		assertEquals(1.8, limiter.getRate(), DELTA);
+		assertEquals(AdaptiveRateLimiter.State.SLOW, limiter.getState());
+	}
+
+	@Test
+	public void tokensAreCappedAtTheBurst()
+	{
+		advanceMillis(60_000);
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(limiter.tryAcquire());
+		}
+		assertFalse(limiter.tryAcquire());
+
+		limiter.release();
+		assertTrue(limiter.tryAcquire());
+	}
+
+	@Test
+	public void parsesRetryAfterSeconds()
+	{
+		assertEquals(120_000, AdaptiveRateLimiter.parseRetryAfterMillis("120", 0));
+		assertEquals(5000, AdaptiveRateLimiter.parseRetryAfterMillis(" 5 ", 0));
+		assertEquals(0, AdaptiveRateLimiter.parseRetryAfterMillis("-3", 0));
+	}
+
+	@Test
+	public void parsesRetryAfterDates()
+	{
+		final long nowMillis = 1_700_000_000_000L;
+		final String later = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(nowMillis + 30_000).atZone(ZoneOffset.UTC));
+		final String earlier = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(nowMillis - 30_000).atZone(ZoneOffset.UTC));
+		assertEquals(30_000, AdaptiveRateLimiter.parseRetryAfterMillis(later, nowMillis));
+		assertEquals(0, AdaptiveRateLimiter.parseRetryAfterMillis(earlier, nowMillis));
+	}
+
+	@Test
+	public void rejectsInvalidRetryAfter()
+	{
+		assertEquals(-1, AdaptiveRateLimiter.parseRetryAfterMillis(null, 0));
+		assertEquals(-1, AdaptiveRateLimiter.parseRetryAfterMillis("", 0));
+		assertEquals(-1, AdaptiveRateLimiter.parseRetryAfterMillis("soon", 0));
+	}
+
+	private void advanceMillis(long millis)
+	{
+		nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -0,0 +1,149 @@
+package com.hiscoreswatch;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CircuitBreakerTest
+{
+	private long nowNanos = TimeUnit.DAYS.toNanos(1);
+
+	private final CircuitBreaker breaker = new CircuitBreaker(() -> nowNanos);
+
+	@Test
+	public void staysClosedBelowTheThreshold()
+	{
+		fail(CircuitBreaker.FAILURE_THRESHOLD - 1);
+		breaker.onSuccess();
+		fail(CircuitBreaker.FAILURE_THRESHOLD - 1);
+
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertEquals(0, breaker.getTripCount());
+	}
+
+	@Test
+	public void opensAfterFailuresInARow()
+	{
+		fail(CircuitBreaker.FAILURE_THRESHOLD);
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(1, breaker.getTripCount());
+		assertFalse(breaker.tryAcquire());
+
+		advanceMillis(CircuitBreaker.BASE_OPEN_MS - 1);
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	public void halfOpenAllowsASingleProbe()
+	{
+		trip();
+
+		assertTrue(breaker.tryAcquire());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	@Test
+	public void successfulProbeCloses()
+	{
+		trip();
+		assertTrue(breaker.tryAcquire());
+
+		breaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+		assertTrue(breaker.tryAcquire());
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	public void failedProbeReopensForLonger()
+	{
+		trip();
+		assertTrue(breaker.tryAcquire());
+
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertEquals(2, breaker.getTripCount());
+
+		advanceMillis(CircuitBreaker.BASE_OPEN_MS);
+		assertFalse(breaker.tryAcquire());
+		advanceMillis(CircuitBreaker.BASE_OPEN_MS);
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	public void cooldownIsCapped()
+	{
+		fail(CircuitBreaker.FAILURE_THRESHOLD);
+		final long[] expected = {30_000, 60_000, 120_000, 240_000, 300_000, 300_000};
+		for (long openMillis : expected)
+		{
+			advanceMillis(openMillis - 1);
+			assertFalse(breaker.tryAcquire());
+			advanceMillis(1);
+			assertTrue(breaker.tryAcquire());
+			breaker.onFailure();
+		}
+	}
+
+	@Test
+	public void closingResetsTheCooldown()
+	{
+		trip();
+		assertTrue(breaker.tryAcquire());
+		breaker.onFailure();
+		advanceMillis(2 * CircuitBreaker.BASE_OPEN_MS);
+		assertTrue(breaker.tryAcquire());
+		breaker.onSuccess();
+
+		trip();
+		assertTrue(breaker.tryAcquire());
+	}
+
+	@Test
+	public void refusedProbeIsReleased()
+	{
+		final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(1, 1, 1, 1, () -> nowNanos);
+		assertTrue(limiter.tryAcquire());
+		trip();
+
+		// The breaker lets the probe through but the rate limiter has no token for it, as in tryAcquireRequest
+		limiter.onThrottled(TimeUnit.MINUTES.toMillis(1), "HTTP 429");
+		assertTrue(breaker.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+		breaker.release();
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+		// The next attempt gets the probe again instead of waiting for a response that never comes
+		advanceMillis(TimeUnit.MINUTES.toMillis(1));
+		assertTrue(breaker.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+	}
+
+	/**
+	 * Opens the breaker and waits out its first cooldown.
+	 */
+	private void trip()
+	{
+		fail(CircuitBreaker.FAILURE_THRESHOLD);
+		advanceMillis(CircuitBreaker.BASE_OPEN_MS);
+	}
+
+	private void fail(int times)
+	{
+		for (int i = 0; i < times; i++)
+		{
+			breaker.onFailure();
+		}
+	}
+
+	private void advanceMillis(long millis)
+	{
+		nowNanos += TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -0,0 +1,251 @@
+package com.hiscoreswatch;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import okio.Buffer;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link HiscoresParser} reads every response, well formed or not, into the same snapshot as splitting the
+ * response and calling {@link Integer#parseInt(String)} and {@link Long#parseLong(String)}, the way responses were read
+ * before the parser.
+ */
+public class HiscoresParserTest
+{
+	private static final Hiscores[] HISCORES = Hiscores.values();
+	private static final int LINE_COUNT;
+
+	static
+	{
+		int maxIndex = 0;
+		for (Hiscores hiscore : HISCORES)
+		{
+			maxIndex = Math.max(maxIndex, hiscore.getApiIndex());
+		}
+		LINE_COUNT = maxIndex + 1;
+	}
+
+	@Test
+	public void wellFormedResponse() throws IOException
+	{
+		assertParity(response(new Random(1)));
+		assertParity(response(new Random(2)) + "\n");
+	}
+
+	@Test
+	public void emptyBody() throws IOException
+	{
+		assertParity("");
+		assertParity("\n");
+		assertParity("\n\n\n");
+	}
+
+	@Test
+	public void missingTrailingLines() throws IOException
+	{
+		final String[] lines = response(new Random(3)).split("\n");
+		for (int count = 1; count < lines.length; count++)
+		{
+			final String truncated = String.join("\n", Arrays.copyOf(lines, count));
+			assertParity(truncated);
+			assertParity(truncated + "\n");
+			assertParity(truncated + "\n\n");
+		}
+	}
+
+	@Test
+	public void shortRows() throws IOException
+	{
+		for (String row : new String[]{"5", "5,", ",", ",,", "5,99,", "5,,13034431", ",99,13034431", "-1,-1"})
+		{
+			assertParity(withRow(Hiscores.ATTACK, row));
+			assertParity(withRow(Hiscores.ZULRAH, row));
+		}
+	}
+
+	@Test
+	public void nonNumericFields() throws IOException
+	{
+		for (String row : new String[]{
+			"abc,99,13034431", "1,abc,13034431", "1,99,abc", "1, 99,13034431", "1,99,13034431 ", "1,99,13034431\r",
+			"12a,99,13034431", "+1,+99,+13034431", "--1,99,1", "-,99,1", "1,99,-", "1.5,99,1", "1,99,1e3",
+			"2147483647,2147483647,9223372036854775807", "2147483648,99,1", "1,-2147483649,1",
+			"1,99,9223372036854775808", "1,99,-9223372036854775808", "1,99,-9223372036854775809"})
+		{
+			assertParity(withRow(Hiscores.ATTACK, row));
+			assertParity(withRow(Hiscores.CLUE_SCROLL_ALL, row));
+		}
+	}
+
+	@Test
+	public void extraRowsAndColumns() throws IOException
+	{
+		final String response = response(new Random(4));
+		assertParity(response + "\n1,2,3\n4,5\n");
+		assertParity(response + "\n\n\n1,2\n");
+		assertParity(withRow(Hiscores.ATTACK, "1,99,13034431,7"));
+		assertParity(withRow(Hiscores.ATTACK, "1,99,13034431,abc,"));
+		assertParity(withRow(Hiscores.ZULRAH, "1,2500,13034431"));
+	}
+
+	@Test
+	public void singleLine() throws IOException
+	{
+		assertParity("1,99,13034431");
+		assertParity("1,99");
+		assertParity("junk");
+	}
+
+	@Test
+	public void randomResponses() throws IOException
+	{
+		final String[] fields = {"", "0", "1", "-1", "99", "13034431", "200000000", "2147483648", "abc", " 1", "+5", "-"};
+		final Random random = new Random(5);
+		for (int i = 0; i < 2000; i++)
+		{
+			final StringBuilder body = new StringBuilder();
+			final int lines = random.nextInt(LINE_COUNT + 4);
+			for (int line = 0; line < lines; line++)
+			{
+				final int columns = random.nextInt(5);
+				for (int column = 0; column < columns; column++)
+				{
+					if (column > 0)
+					{
+						body.append(',');
+					}
+					body.append(fields[random.nextInt(fields.length)]);
+				}
+				if (line < lines - 1 || random.nextBoolean())
+				{
+					body.append('\n');
+				}
+			}
+			assertParity(body.toString());
+		}
+	}
+
+	/**
+	 * @return A response with a line for every index, ranked in every category.
+	 */
+	private static String response(Random random)
+	{
+		final StringBuilder body = new StringBuilder();
+		for (int index = 0; index < LINE_COUNT; index++)
+		{
+			if (index > 0)
+			{
+				body.append('\n');
+			}
+			final Hiscores hiscore = hiscoreAt(index);
+			body.append(1 + random.nextInt(2_000_000)).append(',');
+			if (hiscore != null && hiscore.isSkill())
+			{
+				body.append(1 + random.nextInt(99)).append(',').append(random.nextInt(200_000_001));
+			}
+			else
+			{
+				body.append(random.nextInt(10_000));
+			}
+		}
+		return body.toString();
+	}
+
+	/**
+	 * @return A well formed response with the line of one category replaced.
+	 */
+	private static String withRow(Hiscores hiscore, String row)
+	{
+		final String[] lines = response(new Random(hiscore.ordinal())).split("\n");
+		lines[hiscore.getApiIndex()] = row;
+		return String.join("\n", lines);
+	}
+
+	private static Hiscores hiscoreAt(int index)
+	{
+		for (Hiscores hiscore : HISCORES)
+		{
+			if (hiscore.getApiIndex() == index)
+			{
+				return hiscore;
+			}
+		}
+		return null;
+	}
+
+	private static void assertParity(String body) throws IOException
+	{
+		final HiscoresSnapshot expected = splitAndParse(body);
+		final HiscoresSnapshot actual = HiscoresParser.parse(new Buffer().writeUtf8(body));
+
+		final String context = " of " + body.replace("\n", "\\n").replace("\r", "\\r");
+		assertEquals("Row count" + context, expected.getRowCount(), actual.getRowCount());
+		for (Hiscores hiscore : HISCORES)
+		{
+			final int ordinal = hiscore.ordinal();
+			final String category = hiscore.getName() + context;
+			assertEquals("Flags of " + category, expected.flagsAt(ordinal), actual.flagsAt(ordinal));
+			assertEquals("Rank of " + category, expected.rankAt(ordinal), actual.rankAt(ordinal));
+			assertEquals("Score of " + category, expected.scoreAt(ordinal), actual.scoreAt(ordinal));
+			assertEquals("Xp of " + category, expected.xpAt(ordinal), actual.xpAt(ordinal));
+		}
+	}
+
+	/**
+	 * Reads a response the way it was read before {@link HiscoresParser}: split into lines, lines without a comma
+	 * skipped, a row dropped as malformed when its rank or score does not parse, and its xp column malformed when
+	 * present but not a long. Xp is read for every category, as it was for skills with 200m alerts on.
+	 */
+	private static HiscoresSnapshot splitAndParse(String body)
+	{
+		final HiscoresSnapshot snapshot = new HiscoresSnapshot();
+		final String[] stats = body.split("\n");
+		snapshot.setRowCount(stats.length);
+		for (Hiscores hiscore : HISCORES)
+		{
+			if (stats.length <= hiscore.getApiIndex())
+			{
+				break;
+			}
+
+			final String line = stats[hiscore.getApiIndex()];
+			if (line.isEmpty() || !line.contains(","))
+			{
+				continue;
+			}
+
+			final String[] columns = line.split(",");
+			final int rank;
+			final int score;
+			try
+			{
+				rank = Integer.parseInt(columns[0]);
+				score = Integer.parseInt(columns[1]);
+			}
+			catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+			{
+				snapshot.set(hiscore.ordinal(), 0, 0, 0, HiscoresSnapshot.FLAG_MALFORMED);
+				continue;
+			}
+
+			byte flags = HiscoresSnapshot.FLAG_VALID;
+			long xp = 0;
+			if (columns.length > 2)
+			{
+				try
+				{
+					xp = Long.parseLong(columns[2]);
+					flags |= HiscoresSnapshot.FLAG_XP;
+				}
+				catch (NumberFormatException e)
+				{
+					flags |= HiscoresSnapshot.FLAG_MALFORMED;
+				}
+			}
+			snapshot.set(hiscore.ordinal(), rank, score, xp, flags);
+		}
+		return snapshot;
+	}
+}
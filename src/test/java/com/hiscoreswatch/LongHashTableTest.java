@@ -0,0 +1,304 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that removals shift back the keys that probed past the removed one, so that every remaining key is still
+ * found, including in clusters that wrap around the end of the table.
+ */
+public class LongHashTableTest
+{
+	/**
+	 * The capacity of a table created without an expected size.
+	 */
+	private static final int CAPACITY = 16;
+
+	@Test
+	public void removalKeepsEveryKeyOfAClusterFound()
+	{
+		final long[] cluster = cluster(CAPACITY - 5, 3, 2);
+		for (long removed : cluster)
+		{
+			final LongHashSet set = new LongHashSet();
+			for (long key : cluster)
+			{
+				set.add(key);
+			}
+
+			assertTrue(set.remove(removed));
+			assertFalse(set.contains(removed));
+			assertFalse(set.remove(removed));
+			assertEquals(cluster.length - 1, set.size());
+			for (long key : cluster)
+			{
+				assertEquals(key != removed, set.contains(key));
+			}
+			assertProbeChainsIntact(set);
+		}
+	}
+
+	@Test
+	public void removalKeepsEveryKeyOfAWrappedClusterFound()
+	{
+		// Keys at home in the last slot followed by keys at home in the first, so the cluster wraps around the end
+		for (int[] shape : new int[][]{{3, 2}, {1, 3}, {2, 1}})
+		{
+			final long[] cluster = cluster(CAPACITY - 1, shape[0], shape[1]);
+			for (long removed : cluster)
+			{
+				final LongHashMap<String> map = new LongHashMap<>();
+				for (long key : cluster)
+				{
+					map.put(key, Long.toString(key));
+				}
+				assertEquals(CAPACITY, map.capacity());
+
+				assertEquals(Long.toString(removed), map.remove(removed));
+				assertNull(map.get(removed));
+				for (long key : cluster)
+				{
+					if (key != removed)
+					{
+						assertEquals(Long.toString(key), map.get(key));
+					}
+				}
+				assertProbeChainsIntact(map);
+			}
+		}
+	}
+
+	@Test
+	public void removingTheWholeClusterEmptiesTheTable()
+	{
+		final long[] cluster = cluster(CAPACITY - 1, 3, 2);
+		final LongHashSet set = new LongHashSet();
+		for (long key : cluster)
+		{
+			set.add(key);
+		}
+		for (int i = cluster.length - 1; i >= 0; i--)
+		{
+			assertTrue(set.remove(cluster[i]));
+		}
+
+		assertTrue(set.isEmpty());
+		for (int slot = 0; slot < set.capacity(); slot++)
+		{
+			assertEquals(0, set.keyAt(slot));
+		}
+	}
+
+	@Test
+	public void removeOnlyTheGivenValue()
+	{
+		final LongHashMap<String> map = new LongHashMap<>();
+		final String value = "value";
+		map.put(7, value);
+
+		assertFalse(map.remove(7, new String(value)));
+		assertSame(value, map.get(7));
+		assertTrue(map.remove(7, value));
+		assertTrue(map.isEmpty());
+	}
+
+	@Test
+	public void intMapKeepsItsValuesThroughGrowth()
+	{
+		final LongIntHashMap map = new LongIntHashMap();
+		for (long key = 1; key <= 1000; key++)
+		{
+			map.put(key, (int) key * 3);
+		}
+		map.put(500, -1);
+
+		assertEquals(1000, map.size());
+		assertTrue(map.capacity() > CAPACITY);
+		for (long key = 1; key <= 1000; key++)
+		{
+			assertTrue(map.containsKey(key));
+			assertEquals(key == 500 ? -1 : (int) key * 3, map.get(key, Integer.MIN_VALUE));
+		}
+		assertFalse(map.containsKey(1001));
+		assertEquals(Integer.MIN_VALUE, map.get(1001, Integer.MIN_VALUE));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroCannotBeStored()
+	{
+		new LongHashSet().add(0);
+	}
+
+	@Test
+	public void setMatchesHashSet()
+	{
+		final Random random = new Random(1);
+		final long[] pool = pool(random, 12);
+		final LongHashSet set = new LongHashSet();
+		final Set<Long> expected = new HashSet<>();
+		for (int i = 0; i < 200_000; i++)
+		{
+			final long key = pool[random.nextInt(pool.length)];
+			switch (random.nextInt(3))
+			{
+				case 0:
+					assertEquals(expected.add(key), set.add(key));
+					break;
+				case 1:
+					assertEquals(expected.remove(key), set.remove(key));
+					break;
+				default:
+					assertEquals(expected.contains(key), set.contains(key));
+					break;
+			}
+
+			if (i % 1000 == 0)
+			{
+				assertEquals(expected, keysOf(set));
+			}
+		}
+		assertEquals(expected, keysOf(set));
+	}
+
+	@Test
+	public void mapMatchesHashMap()
+	{
+		final Random random = new Random(2);
+		final long[] pool = pool(random, 300);
+		final LongHashMap<Integer> map = new LongHashMap<>();
+		final Map<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 200_000; i++)
+		{
+			final long key = pool[random.nextInt(pool.length)];
+			switch (random.nextInt(4))
+			{
+				case 0:
+					assertEquals(expected.put(key, i), map.put(key, i));
+					break;
+				case 1:
+					assertEquals(expected.remove(key), map.remove(key));
+					break;
+				case 2:
+					if (random.nextInt(100) == 0)
+					{
+						expected.clear();
+						map.clear();
+					}
+					break;
+				default:
+					assertEquals(expected.get(key), map.get(key));
+					break;
+			}
+
+			if (i % 1000 == 0)
+			{
+				assertEquals(expected, entriesOf(map));
+			}
+		}
+		assertEquals(expected, entriesOf(map));
+	}
+
+	/**
+	 * @return Keys at home in the given slot of a table of {@link #CAPACITY} slots, followed by keys at home in the
+	 * slot after it.
+	 */
+	private static long[] cluster(int home, int atHome, int atNext)
+	{
+		final List<Long> keys = new ArrayList<>();
+		keys.addAll(keysAtHome(home, atHome));
+		keys.addAll(keysAtHome((home + 1) % CAPACITY, atNext));
+		return keys.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	private static List<Long> keysAtHome(int home, int count)
+	{
+		final List<Long> keys = new ArrayList<>();
+		for (long key = 1; keys.size() < count; key++)
+		{
+			if ((LongHashTable.hash(key) & (CAPACITY - 1)) == home)
+			{
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @return Distinct random keys. Few of them keep the table small, so clusters often wrap around its end.
+	 */
+	private static long[] pool(Random random, int size)
+	{
+		final Set<Long> keys = new HashSet<>();
+		while (keys.size() < size)
+		{
+			final long key = random.nextLong();
+			if (key != 0)
+			{
+				keys.add(key);
+			}
+		}
+		return keys.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Checks that no key is separated from its home slot by an empty slot, where a lookup would stop short of it.
+	 */
+	private static void assertProbeChainsIntact(LongHashTable table)
+	{
+		final int mask = table.capacity() - 1;
+		for (int slot = 0; slot < table.capacity(); slot++)
+		{
+			final long key = table.keyAt(slot);
+			if (key == 0)
+			{
+				continue;
+			}
+
+			for (int probe = LongHashTable.hash(key) & mask; probe != slot; probe = (probe + 1) & mask)
+			{
+				assertTrue("Gap before " + key + " in slot " + slot, table.keyAt(probe) != 0);
+			}
+		}
+	}
+
+	private static Set<Long> keysOf(LongHashTable table)
+	{
+		assertProbeChainsIntact(table);
+		final Set<Long> keys = new HashSet<>();
+		for (int slot = 0; slot < table.capacity(); slot++)
+		{
+			if (table.keyAt(slot) != 0)
+			{
+				keys.add(table.keyAt(slot));
+			}
+		}
+		assertEquals(keys.size(), table.size());
+		return keys;
+	}
+
+	private static Map<Long, Integer> entriesOf(LongHashMap<Integer> map)
+	{
+		assertProbeChainsIntact(map);
+		final Map<Long, Integer> entries = new HashMap<>();
+		for (int slot = 0; slot < map.capacity(); slot++)
+		{
+			if (map.keyAt(slot) != 0)
+			{
+				entries.put(map.keyAt(slot), map.valueAt(slot));
+			}
+		}
+		assertEquals(entries.size(), map.size());
+		return entries;
+	}
+}
@@ -0,0 +1,88 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LookupSchedulerTest
+{
+	private static final long START_MILLIS = 1_700_000_000_000L;
+
+	private final List<HiscoresWatchPlugin.PlayerCheck> shed = new ArrayList<>();
+	private final LookupScheduler scheduler = new LookupScheduler(shed::add);
+
+	@Test
+	public void promotedCheckGetsTheDeadlineOfItsNewSource()
+	{
+		final HiscoresWatchPlugin.PlayerCheck rosterCheck = check("Roster member", HiscoresWatchPlugin.DetectionSource.CLAN_ROSTER);
+		scheduler.add(rosterCheck);
+
+		// Waited longer than a live join may, then joins live
+		final long joinMillis = START_MILLIS + HiscoresWatchPlugin.DetectionSource.CLAN_CHAT.getQueueDeadlineMs() + TimeUnit.MINUTES.toMillis(2);
+		assertTrue(scheduler.promote(rosterCheck.getKey(), HiscoresWatchPlugin.DetectionSource.CLAN_CHAT, joinMillis));
+
+		final long pollMillis = joinMillis + 1000;
+		scheduler.expire(pollMillis);
+		final HiscoresWatchPlugin.PlayerCheck polled = scheduler.poll(pollMillis);
+		assertTrue(shed.isEmpty());
+		assertEquals(rosterCheck.getKey(), polled.getKey());
+		assertEquals(HiscoresWatchPlugin.DetectionSource.CLAN_CHAT, polled.getSource());
+		// The latency is still measured from the first time the player was queued
+		assertEquals(START_MILLIS, polled.getEnqueuedAtMillis());
+	}
+
+	@Test
+	public void promotedCheckIsShedPastTheDeadlineOfItsNewSource()
+	{
+		final HiscoresWatchPlugin.PlayerCheck nearbyCheck = check("Passer by", HiscoresWatchPlugin.DetectionSource.NEARBY);
+		scheduler.add(nearbyCheck);
+
+		final long joinMillis = START_MILLIS + TimeUnit.SECONDS.toMillis(30);
+		assertTrue(scheduler.promote(nearbyCheck.getKey(), HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT, joinMillis));
+
+		final long lateMillis = joinMillis + HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT.getQueueDeadlineMs() + 1;
+		assertNull(scheduler.poll(lateMillis));
+		assertEquals(1, shed.size());
+		assertEquals(1, scheduler.getShedForDeadline(HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT));
+	}
+
+	@Test
+	public void promotedCheckKeepsItsLookupState()
+	{
+		final HiscoresWatchPlugin.PlayerCheck rosterCheck = check("Roster member", HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT_ROSTER);
+		rosterCheck.setStaleAlerted(true);
+		rosterCheck.setRetries(2);
+		scheduler.add(rosterCheck);
+		scheduler.add(check("Live joiner", HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT));
+
+		assertTrue(scheduler.promote(rosterCheck.getKey(), HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT, START_MILLIS + 1000));
+		assertEquals(0, scheduler.size(HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT_ROSTER));
+		assertEquals(2, scheduler.size(HiscoresWatchPlugin.DetectionSource.FRIENDS_CHAT));
+
+		// Served newest first, like every other live join
+		final HiscoresWatchPlugin.PlayerCheck polled = scheduler.poll(START_MILLIS + 2000);
+		assertEquals(rosterCheck.getKey(), polled.getKey());
+		assertTrue(polled.isStaleAlerted());
+		assertEquals(2, polled.getRetries());
+		assertSame(rosterCheck.getMode(), polled.getMode());
+	}
+
+	@Test
+	public void unqueuedPlayersAreNotPromoted()
+	{
+		scheduler.add(check("Someone else", HiscoresWatchPlugin.DetectionSource.NEARBY));
+		assertFalse(scheduler.promote(NameCodec.encode("Nobody"), HiscoresWatchPlugin.DetectionSource.CLAN_CHAT, START_MILLIS));
+		assertEquals(1, scheduler.size());
+	}
+
+	private static HiscoresWatchPlugin.PlayerCheck check(String name, HiscoresWatchPlugin.DetectionSource source)
+	{
+		return new HiscoresWatchPlugin.PlayerCheck(name, NameCodec.encode(name), source, null, START_MILLIS);
+	}
+}
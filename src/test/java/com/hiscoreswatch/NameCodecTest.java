@@ -0,0 +1,91 @@
+package com.hiscoreswatch;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NameCodecTest
+{
+	private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	@Test
+	public void separatorsEncodeTheSame()
+	{
+		final long encoded = NameCodec.encode("Iron Man 99");
+		assertTrue(encoded > 0);
+		assertEquals(encoded, NameCodec.encode("Iron_Man_99"));
+		assertEquals(encoded, NameCodec.encode("Iron-Man-99"));
+		assertEquals(encoded, NameCodec.encode("Iron\u00A0Man\u00A099"));
+		assertEquals(encoded, NameCodec.encode("iron_Man-99"));
+	}
+
+	@Test
+	public void caseIsIgnored()
+	{
+		assertEquals(NameCodec.encode("zezima"), NameCodec.encode("ZEZIMA"));
+		assertEquals(NameCodec.encode("zezima"), NameCodec.encode("ZeZiMa"));
+	}
+
+	@Test
+	public void leadingAndTrailingSeparatorsAreDropped()
+	{
+		final long encoded = NameCodec.encode("Zezima");
+		assertEquals(encoded, NameCodec.encode(" Zezima"));
+		assertEquals(encoded, NameCodec.encode("_-Zezima\u00A0 "));
+		assertNotEquals(encoded, NameCodec.encode("Zez ima"));
+		assertNotEquals(NameCodec.encode("a b"), NameCodec.encode("a  b"));
+	}
+
+	@Test
+	public void namesAreAtMostTwelveCharacters()
+	{
+		assertTrue(NameCodec.encode("abcdefghijkl") > 0);
+		assertTrue(NameCodec.encode("999999999999") > 0);
+		assertEquals(NameCodec.INVALID, NameCodec.encode("abcdefghijklm"));
+
+		// Separators inside the name count, those around it do not
+		assertEquals(NameCodec.INVALID, NameCodec.encode("abcdef ghijkl"));
+		assertEquals(NameCodec.encode("abcdefghijkl"), NameCodec.encode("  abcdefghijkl  "));
+	}
+
+	@Test
+	public void invalidNames()
+	{
+		for (String name : new String[]{"", " ", "__-", "Zez!ma", "a.b", "name\t", "\u00E9clair", "\u540D\u524D"})
+		{
+			assertEquals(name, NameCodec.INVALID, NameCodec.encode(name));
+		}
+		assertNull(NameCodec.decode(NameCodec.INVALID));
+		assertNull(NameCodec.decode(-1));
+	}
+
+	@Test
+	public void decodesToTheLowerCaseName()
+	{
+		assertEquals("zezima", NameCodec.decode(NameCodec.encode("Zezima")));
+		assertEquals("iron man 99", NameCodec.decode(NameCodec.encode("_Iron-Man\u00A099 ")));
+		assertEquals("abcdefghijkl", NameCodec.decode(NameCodec.encode("ABCDEFGHIJKL")));
+	}
+
+	@Test
+	public void randomNamesRoundTrip()
+	{
+		final Random random = new Random(1);
+		for (int i = 0; i < 10_000; i++)
+		{
+			final char[] name = new char[1 + random.nextInt(NameCodec.MAX_LENGTH)];
+			for (int c = 0; c < name.length; c++)
+			{
+				final boolean separator = c > 0 && c < name.length - 1 && random.nextInt(6) == 0;
+				name[c] = separator ? ' ' : CHARACTERS.charAt(random.nextInt(CHARACTERS.length()));
+			}
+
+			final long encoded = NameCodec.encode(new String(name));
+			assertTrue(encoded > 0);
+			assertEquals(new String(name), NameCodec.decode(encoded));
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.hiscoreswatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SnapshotCacheTest
+{
+	private static final HiscoresWatchPlugin.DetectionSource SOURCE = HiscoresWatchPlugin.DetectionSource.NEARBY;
+
+	private long now = 1_700_000_000_000L;
+
+	@Test
+	public void entriesExpireByTheirOwnTimeToLive()
+	{
+		final SnapshotCache cache = new SnapshotCache(100, () -> now);
+		cache.putError(1, "Failed", SOURCE);
+		cache.putNotFound(2, "Unknown", SOURCE);
+
+		now += SnapshotCache.ERROR_TTL_MS;
+		assertNull(cache.get(1));
+		assertNotNull(cache.get(2));
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void pendingPlayersAreNotQueuedTwice()
+	{
+		final SnapshotCache cache = new SnapshotCache(100, () -> now);
+		assertTrue(cache.markPending(1, "Queued", SOURCE));
+		assertFalse(cache.markPending(1, "Queued", SOURCE));
+
+		now += SnapshotCache.PENDING_TTL_MS;
+		assertTrue(cache.markPending(1, "Queued", SOURCE));
+
+		cache.invalidatePending(1);
+		assertNull(cache.get(1));
+	}
+
+	@Test
+	public void fullCacheDropsExpiredEntriesFirst()
+	{
+		final SnapshotCache cache = new SnapshotCache(4, () -> now);
+		cache.putError(1, "Failed", SOURCE);
+		cache.putError(2, "Failed", SOURCE);
+		now += 1;
+		cache.putNotFound(3, "Unknown", SOURCE);
+		cache.putNotFound(4, "Unknown", SOURCE);
+
+		now += SnapshotCache.ERROR_TTL_MS;
+		cache.putNotFound(5, "Unknown", SOURCE);
+		assertEquals(3, cache.size());
+		assertEquals(2, cache.getEvictionCount());
+		assertNull(cache.get(1));
+		assertNotNull(cache.get(3));
+		assertNotNull(cache.get(5));
+	}
+
+	@Test
+	public void fullCacheOfLiveEntriesDropsTheSoonestToExpire()
+	{
+		final SnapshotCache cache = new SnapshotCache(16, () -> now);
+		for (long key = 1; key <= 16; key++)
+		{
+			now += 1;
+			cache.putNotFound(key, "Unknown", SOURCE);
+		}
+
+		cache.putNotFound(17, "Unknown", SOURCE);
+		assertEquals(15, cache.size());
+		assertNull(cache.get(1));
+		assertNull(cache.get(2));
+		assertNotNull(cache.get(3));
+		assertNotNull(cache.get(17));
+	}
+
+	@Test
+	public void invalidateFilteredKeepsOtherEntries()
+	{
+		final SnapshotCache cache = new SnapshotCache(100, () -> now);
+		for (long key = 1; key <= 50; key++)
+		{
+			if (key % 2 == 0)
+			{
+				cache.putFiltered(key, "Filtered", SOURCE);
+			}
+			else
+			{
+				cache.putNotFound(key, "Unknown", SOURCE);
+			}
+		}
+
+		cache.invalidateFiltered();
+		assertEquals(25, cache.size());
+		for (long key = 1; key <= 50; key++)
+		{
+			assertEquals(key % 2 != 0, cache.get(key) != null);
+		}
+	}
+
+	@Test
+	public void forEachFoundMayUseTheCache()
+	{
+		final SnapshotCache cache = new SnapshotCache(100, () -> now);
+		cache.putFound(1, "Found", SOURCE, (HiscoresSnapshot) null);
+		cache.putNotFound(2, "Unknown", SOURCE);
+
+		final List<String> names = new ArrayList<>();
+		cache.forEachFound(entry ->
+		{
+			names.add(entry.getPlayerName());
+			cache.invalidate(1);
+		});
+		assertEquals(1, names.size());
+		assertNull(cache.get(1));
+
+		cache.putFound(3, "Found", SOURCE, (HiscoresSnapshot) null);
+		now += SnapshotCache.FOUND_TTL_MS;
+		cache.forEachFound(entry -> names.add(entry.getPlayerName()));
+		assertEquals(1, names.size());
+	}
+}
@@ -0,0 +1,214 @@
+package com.hiscoreswatch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Crawls the top rank index from fixture ranking pages served by a local stand-in for the hiscores website, the same
+ * way the plugin does: categories the server has no page for answer 404 and are skipped.
+ */
+public class TopRankIndexTest
+{
+	private static final String FIXTURES = "/com/hiscoreswatch/ranking/";
+	private static final int RANK_THRESHOLD = 50;
+	private static final long START_MILLIS = 1_700_000_000_000L;
+
+	private final OkHttpClient okHttpClient = new OkHttpClient();
+	/**
+	 * The fixture served for the query of every ranking page the stand-in server knows.
+	 */
+	private final Map<String, String> pages = new ConcurrentHashMap<>();
+	private final AlertRules rules = AlertRules.uniform(RANK_THRESHOLD, false);
+	private HttpServer server;
+	private HttpUrl baseUrl;
+
+	@Before
+	public void startServer() throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", this::handle);
+		server.start();
+		baseUrl = HttpUrl.parse("http://127.0.0.1:" + server.getAddress().getPort() + "/m=hiscore_oldschool/");
+
+		serve(Hiscores.ATTACK, 1, "attack-1.html");
+		serve(Hiscores.ATTACK, 2, "attack-2.html");
+		serve(Hiscores.ZULRAH, 1, "zulrah-1.html");
+		serve(Hiscores.ZULRAH, 2, "zulrah-2.html");
+	}
+
+	@After
+	public void stopServer()
+	{
+		server.stop(0);
+	}
+
+	@Test
+	public void indexesTheCrawledCategories() throws IOException
+	{
+		final TopRankIndex index = new TopRankIndex();
+		crawl(index, START_MILLIS);
+
+		final HiscoresSnapshot top = index.match(NameCodec.encode("Attacker 1"), rules, START_MILLIS);
+		assertNotNull(top);
+		assertEquals(1, top.getRank(Hiscores.ATTACK));
+		assertEquals(99, top.getScore(Hiscores.ATTACK));
+		assertEquals(200_000_000L, top.getXp(Hiscores.ATTACK));
+
+		// Ranks from the second page
+		final HiscoresSnapshot deep = index.match(NameCodec.encode("Attacker 50"), rules, START_MILLIS);
+		assertNotNull(deep);
+		assertEquals(50, deep.getRank(Hiscores.ATTACK));
+
+		// A short page ends the crawl of its category
+		final HiscoresSnapshot boss = index.match(NameCodec.encode("Snakeling 33"), rules, START_MILLIS);
+		assertNotNull(boss);
+		assertEquals(33, boss.getRank(Hiscores.ZULRAH));
+		assertFalse(boss.hasXp(Hiscores.ZULRAH));
+
+		assertNull(index.match(NameCodec.encode("Snakeling 34"), rules, START_MILLIS));
+		assertEquals(50 + 33, index.size());
+	}
+
+	@Test
+	public void skipsPagesHeadedWithAnotherCategory() throws IOException
+	{
+		// The table number of TzTok-Jad pointing at the Zulrah table, as if the website had renumbered its tables
+		serve(Hiscores.TZTOK_JAD, 1, "zulrah-1.html");
+		serve(Hiscores.TZTOK_JAD, 2, "zulrah-2.html");
+
+		final TopRankIndex index = new TopRankIndex();
+		crawl(index, START_MILLIS);
+
+		final HiscoresSnapshot snapshot = index.match(NameCodec.encode("Snakeling 1"), rules, START_MILLIS);
+		assertNotNull(snapshot);
+		assertTrue(snapshot.isValid(Hiscores.ZULRAH));
+		assertFalse(snapshot.isValid(Hiscores.TZTOK_JAD));
+		assertNull(index.nextPage(rules, START_MILLIS));
+	}
+
+	@Test
+	public void recrawlMovesAndRemovesRanks() throws IOException
+	{
+		final TopRankIndex index = new TopRankIndex();
+		crawl(index, START_MILLIS);
+
+		// The top two swapped places and the table shrank to 12 ranks
+		serve(Hiscores.ATTACK, 1, "attack-recrawl.html");
+		final long recrawlMillis = START_MILLIS + TopRankIndex.RECRAWL_AFTER_MS + 1;
+		crawl(index, recrawlMillis);
+
+		assertEquals(2, index.match(NameCodec.encode("Attacker 1"), rules, recrawlMillis).getRank(Hiscores.ATTACK));
+		assertEquals(1, index.match(NameCodec.encode("Attacker 2"), rules, recrawlMillis).getRank(Hiscores.ATTACK));
+		assertEquals(12, index.match(NameCodec.encode("Attacker 12"), rules, recrawlMillis).getRank(Hiscores.ATTACK));
+		assertNull(index.match(NameCodec.encode("Attacker 13"), rules, recrawlMillis));
+		assertNull(index.match(NameCodec.encode("Attacker 50"), rules, recrawlMillis));
+		assertEquals(12 + 33, index.size());
+	}
+
+	@Test
+	public void staleCategoriesAreNotMatched() throws IOException
+	{
+		final TopRankIndex index = new TopRankIndex();
+		crawl(index, START_MILLIS);
+
+		assertNull(index.match(NameCodec.encode("Attacker 1"), rules, START_MILLIS + TopRankIndex.FRESH_MS + 1));
+	}
+
+	@Test
+	public void savedIndexLoadsTheSameRanks() throws IOException
+	{
+		final TopRankIndex index = new TopRankIndex();
+		crawl(index, START_MILLIS);
+
+		final File file = Files.createTempFile("topranks", ".dat").toFile();
+		try
+		{
+			index.save(file);
+			final TopRankIndex loaded = TopRankIndex.load(file);
+			assertEquals(index.size(), loaded.size());
+			assertEquals(25, loaded.match(NameCodec.encode("Attacker 25"), rules, START_MILLIS).getRank(Hiscores.ATTACK));
+			assertEquals(7, loaded.match(NameCodec.encode("Snakeling 7"), rules, START_MILLIS).getRank(Hiscores.ZULRAH));
+		}
+		finally
+		{
+			Files.deleteIfExists(file.toPath());
+		}
+	}
+
+	/**
+	 * Crawls every category due at the given time, page after page, as the plugin does.
+	 */
+	private void crawl(TopRankIndex index, long nowMillis) throws IOException
+	{
+		final RankingPageParser.Rows rows = new RankingPageParser.Rows(TopRankIndex.PAGE_SIZE);
+		TopRankIndex.Page page;
+		while ((page = index.nextPage(rules, nowMillis)) != null)
+		{
+			final Request request = new Request.Builder().url(baseUrl.resolve(page.query())).build();
+			try (Response response = okHttpClient.newCall(request).execute())
+			{
+				final ResponseBody body = response.body();
+				if (!response.isSuccessful() || body == null)
+				{
+					index.skipCategory(page, nowMillis);
+					continue;
+				}
+
+				RankingPageParser.parse(body.string(), rows);
+				index.onPageCrawled(page, rows, nowMillis);
+			}
+		}
+	}
+
+	private void serve(Hiscores hiscore, int number, String fixture)
+	{
+		pages.put(new TopRankIndex.Page(hiscore, number).query(), fixture);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException
+	{
+		final String path = exchange.getRequestURI().getPath();
+		final String query = exchange.getRequestURI().getQuery();
+		final String fixture = path.endsWith("/overall") ? pages.get("overall?" + query) : null;
+		if (fixture == null)
+		{
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+
+		final byte[] page;
+		try (InputStream in = TopRankIndexTest.class.getResourceAsStream(FIXTURES + fixture))
+		{
+			page = in.readAllBytes();
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+		exchange.sendResponseHeaders(200, page.length);
+		try (OutputStream out = exchange.getResponseBody())
+		{
+			out.write(page);
+		}
+	}
+}